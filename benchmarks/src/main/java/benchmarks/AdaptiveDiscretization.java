@@ -0,0 +1,177 @@
+package benchmarks;
+
+import mdp.AdaptiveQLearning;
+import mdp.QLearning;
+import mdp.SteerControl;
+import torcs.Constants.ControlSystems;
+import torcs.PrimitiveSensorModel;
+
+import java.util.Random;
+
+/**
+ * The AdaptiveDiscretization class compares the steering learned over the fixed states of {@link SteerControl} with
+ * the steering learned by {@link AdaptiveQLearning}, for the same number of training ticks, on the lane-keeping task
+ * of {@link TraceConvergence}.
+ * <p>
+ * The fixed states only see the track position, while the adaptive ones may also split on the angle to the track
+ * axis, which here follows the sideways speed of the car. The adaptive learner is run with as many states as the
+ * fixed table, and with more. After every training budget, each greedy policy drives the evaluation roads and the
+ * program prints its mean reward per tick, a car leaving the road earning nothing for the rest of the lap, with the
+ * number of states the adaptive learner ended up with.
+ * <p>
+ * This is a plain program rather than a JMH benchmark, since it measures policies and not time. Run it with
+ * {@code java -cp benchmarks.jar benchmarks.AdaptiveDiscretization [runs]}.
+ */
+public class AdaptiveDiscretization {
+
+    private static final double DT = 0.02; // The duration of a tick, in seconds
+    private static final double STEER_GAIN = 4.0; // Track widths per s^2 per unit of steering
+    private static final double DAMPING = 3.0; // How fast the sideways speed settles, per second
+    private static final double MAX_DRIFT = 0.5; // The largest sideways push of the curvature, in track widths per s^2
+    private static final double DRIFT_CHANGE = 0.03; // The standard deviation of the curvature change per tick
+    private static final double ANGLE_PER_SPEED = 0.25; // The angle to the track axis per track width per second
+    private static final int LAP_TICKS = 3000; // The length of a lap, in ticks
+    private static final int EVALUATION_ROADS = 5;
+    private static final long[] BUDGETS = {10_000, 30_000, 100_000, 300_000};
+    private static final double EPSILON = 0.1;
+    private static final int[] ADAPTIVE_STATES = {6, 24};
+    private static final double SPLIT_VARIANCE = 0.05;
+    private static final long SPLIT_VISITS = 5_000;
+    private static final double MERGE_TOLERANCE = 0.05;
+
+    private final PrimitiveSensorModel sensors = new PrimitiveSensorModel();
+    private final SteerControl.Encoder encoder = new SteerControl.Encoder();
+
+    /**
+     * The main entry point of the experiment.
+     *
+     * @param args The number of runs per learner.
+     */
+    public static void main(String[] args) {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        AdaptiveDiscretization experiment = new AdaptiveDiscretization();
+        QLearning<SteerControl.States, SteerControl.Actions> fixed = new QLearning<>(
+                ControlSystems.STEERING_CONTROL_SYSTEM, SteerControl.States.class, SteerControl.Actions.class, true);
+
+        StringBuilder header = new StringBuilder("ticks      fixed (6 states)");
+        for (int states : ADAPTIVE_STATES)
+            header.append(String.format("   adaptive (max %d states)", states));
+        System.out.println(header);
+        for (long budget : BUDGETS) {
+            double fixedReward = 0;
+            double[] adaptiveRewards = new double[ADAPTIVE_STATES.length];
+            double[] adaptiveStates = new double[ADAPTIVE_STATES.length];
+            for (int run = 0; run < runs; run++) {
+                fixed.clear();
+                fixed.setEpsilon(EPSILON);
+                fixedReward += experiment.trainFixed(fixed, budget, run);
+                for (int i = 0; i < ADAPTIVE_STATES.length; i++) {
+                    AdaptiveQLearning<SteerControl.Actions> adaptive = new AdaptiveQLearning<>(
+                            ControlSystems.STEERING_CONTROL_SYSTEM.name(),
+                            SteerControl.newAdaptiveDiscretizer(ADAPTIVE_STATES[i]), SteerControl.Actions.class, null,
+                            SPLIT_VARIANCE, SPLIT_VISITS, MERGE_TOLERANCE);
+                    adaptive.setEpsilon(EPSILON);
+                    adaptiveRewards[i] += experiment.trainAdaptive(adaptive, budget, run);
+                    adaptiveStates[i] += adaptive.getDiscretizer().getLeafCount();
+                }
+            }
+            StringBuilder line = new StringBuilder(String.format("%-10d %-16.3f", budget, fixedReward / runs));
+            for (int i = 0; i < ADAPTIVE_STATES.length; i++)
+                line.append(String.format("   %.3f (%4.1f states)        ", adaptiveRewards[i] / runs,
+                        adaptiveStates[i] / runs));
+            System.out.println(line);
+        }
+    }
+
+    private double trainFixed(QLearning<SteerControl.States, SteerControl.Actions> learner, long budget, long seed) {
+        Road road = new Road(new Random(seed));
+        int lapTicks = 0;
+        SteerControl.States previous = null;
+        SteerControl.Actions action = SteerControl.Actions.TURN_C;
+        for (long ticks = 0; ticks < budget; ticks++) {
+            road.sense(sensors);
+            if (Math.abs(road.position) >= 1 || lapTicks >= LAP_TICKS) {
+                learner.endEpisode();
+                road.reset();
+                lapTicks = 0;
+                previous = null;
+                continue;
+            }
+            SteerControl.States state = encoder.encode(sensors);
+            action = learner.update(previous, state, action, encoder.reward(action));
+            previous = state;
+            road.step(action.getAngle());
+            lapTicks++;
+        }
+        double reward = 0;
+        for (int i = 0; i < EVALUATION_ROADS; i++) {
+            Road evaluation = new Road(new Random(-1 - i));
+            for (int tick = 0; tick < LAP_TICKS && Math.abs(evaluation.position) < 1; tick++) {
+                evaluation.sense(sensors);
+                evaluation.step(learner.nextOnlyBestAction(encoder.encode(sensors)).getAngle());
+                reward += Math.max(0, 1 - Math.abs(evaluation.position));
+            }
+        }
+        return reward / (EVALUATION_ROADS * LAP_TICKS);
+    }
+
+    private double trainAdaptive(AdaptiveQLearning<SteerControl.Actions> learner, long budget, long seed) {
+        Road road = new Road(new Random(seed));
+        int lapTicks = 0;
+        SteerControl.Actions action = SteerControl.Actions.TURN_C;
+        for (long ticks = 0; ticks < budget; ticks++) {
+            road.sense(sensors);
+            if (Math.abs(road.position) >= 1 || lapTicks >= LAP_TICKS) {
+                learner.endEpisode();
+                road.reset();
+                lapTicks = 0;
+                continue;
+            }
+            action = learner.update(sensors, action, 1 - Math.abs(road.position));
+            road.step(action.getAngle());
+            lapTicks++;
+        }
+        double reward = 0;
+        for (int i = 0; i < EVALUATION_ROADS; i++) {
+            Road evaluation = new Road(new Random(-1 - i));
+            for (int tick = 0; tick < LAP_TICKS && Math.abs(evaluation.position) < 1; tick++) {
+                evaluation.sense(sensors);
+                evaluation.step(learner.nextOnlyBestAction(sensors).getAngle());
+                reward += Math.max(0, 1 - Math.abs(evaluation.position));
+            }
+        }
+        return reward / (EVALUATION_ROADS * LAP_TICKS);
+    }
+
+    /**
+     * The position of the car across a road with drifting curvature.
+     */
+    private static final class Road {
+        private final Random random;
+        double position; // 0 on the center line, 1 on the left edge and -1 on the right edge
+        double speed; // The sideways speed, in track widths per second
+        double drift; // The sideways push of the curvature, in track widths per s^2
+
+        Road(Random random) {
+            this.random = random;
+            reset();
+        }
+
+        void reset() {
+            position = 0;
+            speed = 0;
+            drift = (random.nextDouble() * 2 - 1) * MAX_DRIFT;
+        }
+
+        void step(double steering) {
+            drift = Math.max(-MAX_DRIFT, Math.min(MAX_DRIFT, drift + random.nextGaussian() * DRIFT_CHANGE));
+            speed += (steering * STEER_GAIN + drift - DAMPING * speed) * DT;
+            position += speed * DT;
+        }
+
+        void sense(PrimitiveSensorModel sensors) {
+            sensors.trackPos = position;
+            sensors.angle = speed * ANGLE_PER_SPEED;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The BenchmarkMain class runs the benchmarks with the GC profiler always enabled, so every result reports the
+ * allocation rate ({@code gc.alloc.rate.norm}, in bytes per operation) next to the time per operation.
+ * Any regular JMH command-line option can be passed, for instance a regular expression selecting the benchmarks.
+ */
+public class BenchmarkMain {
+
+    /**
+     * The main entry point of the benchmarks.
+     *
+     * @param args The JMH command-line options.
+     *
+     * @throws Exception If the options are invalid or a benchmark fails.
+     */
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
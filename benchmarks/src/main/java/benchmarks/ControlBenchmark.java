@@ -0,0 +1,81 @@
+package benchmarks;
+
+import drivers.AutomaticTrainer;
+import drivers.SimpleDriver;
+import mdp.AccelControl;
+import mdp.QLearning;
+import mdp.SteerControl;
+import org.openjdk.jmh.annotations.*;
+import torcs.Action;
+import torcs.Constants.ControlSystems;
+import torcs.MessageBasedSensorModel;
+import torcs.SensorModel;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ControlBenchmark class measures the controllers, both on already decoded sensors and as a full tick of the
+ * original client: decoding the packet, computing the action and building the reply string.
+ * <p>
+ * The trainer learns into empty in-memory tables and keeps no statistics, so it neither reads nor writes any file and
+ * starts no checkpoint thread.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ControlBenchmark {
+
+    @Param({"start", "straight", "corner"})
+    public String packet;
+
+    private String message;
+    private SensorModel sensors;
+    private SimpleDriver simpleDriver;
+    private AutomaticTrainer automaticTrainer;
+
+    @Setup
+    public void setup() {
+        message = SensorPackets.get(packet);
+        sensors = new MessageBasedSensorModel(message);
+        simpleDriver = new SimpleDriver();
+        automaticTrainer = new AutomaticTrainer(
+                QLearning.inMemory(ControlSystems.STEERING_CONTROL_SYSTEM, SteerControl.States.class,
+                        SteerControl.Actions.class, true),
+                QLearning.inMemory(ControlSystems.ACCELERATION_CONTROL_SYSTEM, AccelControl.States.class,
+                        AccelControl.Actions.class, true),
+                null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        automaticTrainer.shutdown();
+    }
+
+    @Benchmark
+    public AccelControl.States evaluateAccelState() {
+        return AccelControl.evaluateAccelState(sensors);
+    }
+
+    @Benchmark
+    public Action simpleDriverControl() {
+        return simpleDriver.control(sensors);
+    }
+
+    @Benchmark
+    public Action automaticTrainerControl() {
+        return automaticTrainer.control(sensors);
+    }
+
+    @Benchmark
+    public String simpleDriverTick() {
+        return simpleDriver.control(new MessageBasedSensorModel(message)).toString();
+    }
+
+    @Benchmark
+    public String automaticTrainerTick() {
+        return automaticTrainer.control(new MessageBasedSensorModel(message)).toString();
+    }
+}
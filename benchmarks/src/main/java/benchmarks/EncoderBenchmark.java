@@ -0,0 +1,87 @@
+package benchmarks;
+
+import mdp.AccelControl;
+import mdp.GearControl;
+import mdp.SteerControl;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import torcs.Constants;
+import torcs.MessageBasedSensorModel;
+import torcs.SensorModel;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The EncoderBenchmark class measures the per-tick cost of turning sensors into states and rewards, through the
+ * static evaluate and reward methods and through the fused state encoders, and the cost of rounding a Q-value.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EncoderBenchmark {
+
+    @Param({"start", "straight", "corner"})
+    public String packet;
+
+    private SensorModel sensors;
+    private final SteerControl.Encoder steerEncoder = new SteerControl.Encoder();
+    private final AccelControl.Encoder accelEncoder = new AccelControl.Encoder();
+    private final GearControl.Encoder gearEncoder = new GearControl.Encoder();
+    private double qValue = 0.123456789123;
+
+    @Setup
+    public void setup() {
+        sensors = new MessageBasedSensorModel(SensorPackets.get(packet));
+    }
+
+    @Benchmark
+    public void steerStatic(Blackhole bh) {
+        bh.consume(SteerControl.evaluateSteerState(sensors));
+        bh.consume(SteerControl.calculateReward(sensors));
+    }
+
+    @Benchmark
+    public void steerEncoder(Blackhole bh) {
+        bh.consume(steerEncoder.encode(sensors));
+        bh.consume(steerEncoder.reward(SteerControl.Actions.TURN_C));
+    }
+
+    @Benchmark
+    public void accelStatic(Blackhole bh) {
+        bh.consume(AccelControl.evaluateAccelState(sensors));
+        bh.consume(AccelControl.calculateReward(sensors, AccelControl.Actions.ACCEL));
+    }
+
+    @Benchmark
+    public void accelEncoder(Blackhole bh) {
+        bh.consume(accelEncoder.encode(sensors));
+        bh.consume(accelEncoder.reward(AccelControl.Actions.ACCEL));
+    }
+
+    @Benchmark
+    public void gearStatic(Blackhole bh) {
+        bh.consume(GearControl.evaluateGearState(sensors));
+        bh.consume(GearControl.calculateReward(sensors, sensors));
+    }
+
+    @Benchmark
+    public void gearEncoder(Blackhole bh) {
+        bh.consume(gearEncoder.encode(sensors));
+        bh.consume(gearEncoder.reward(GearControl.Actions.KEEP_GEAR));
+    }
+
+    @Benchmark
+    public double roundBigDecimal() {
+        qValue += 1e-9;
+        return Constants.round(qValue, 8);
+    }
+
+    @Benchmark
+    public double roundArithmetic() {
+        qValue += 1e-9;
+        return Constants.fastRound(qValue, 8);
+    }
+}
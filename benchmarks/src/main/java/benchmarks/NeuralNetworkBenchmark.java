@@ -0,0 +1,74 @@
+package benchmarks;
+
+import mdp.Kernels;
+import mdp.NeuralNetwork;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The NeuralNetworkBenchmark class measures one inference of the network of {@code NeuralTrainer}, 22 inputs, two
+ * hidden layers and 10 outputs, and one SGD step on a minibatch of 32 samples, with the scalar and the vector
+ * kernels. The forks run with {@code --add-modules jdk.incubator.vector}, without which the vector kernels are
+ * skipped.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class NeuralNetworkBenchmark {
+
+    private static final int INPUTS = 22;
+    private static final int OUTPUTS = 10;
+    private static final int BATCH_SIZE = 32;
+    private static final int SAMPLES = 1024; // Distinct inputs cycled through, so the branches are not learned
+
+    @Param({"scalar", "vector"})
+    public String kernels;
+
+    @Param({"32", "64", "128"})
+    public int hiddenUnits;
+
+    private NeuralNetwork network;
+    private float[][] inputs;
+    private int[] actions;
+    private float[] targets;
+    private int step; // Position in the cycle of inputs
+
+    @Setup
+    public void setup() {
+        Kernels selected = kernels.equals("vector") ? Kernels.vector() : Kernels.scalar();
+        if (selected == null)
+            throw new IllegalStateException("The Vector API is not available, run with "
+                    + "--add-modules jdk.incubator.vector");
+        network = new NeuralNetwork(new int[]{INPUTS, hiddenUnits, hiddenUnits, OUTPUTS}, 42, selected);
+        Random random = new Random(42);
+        inputs = new float[SAMPLES][INPUTS];
+        actions = new int[SAMPLES];
+        targets = new float[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            for (int j = 0; j < INPUTS; j++)
+                inputs[i][j] = random.nextFloat() * 2 - 1;
+            actions[i] = random.nextInt(OUTPUTS);
+            targets[i] = random.nextFloat() * 20;
+        }
+    }
+
+    @Benchmark
+    public int inference() {
+        float[] outputs = network.forward(inputs[step++ & (SAMPLES - 1)]);
+        return network.argMax(outputs);
+    }
+
+    @Benchmark
+    public void trainBatch() {
+        for (int b = 0; b < BATCH_SIZE; b++) {
+            int i = step++ & (SAMPLES - 1);
+            network.accumulate(inputs[i], actions[i], targets[i]);
+        }
+        network.step(1e-4f);
+    }
+}
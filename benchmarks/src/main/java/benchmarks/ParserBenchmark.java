@@ -0,0 +1,111 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import torcs.Action;
+import torcs.ActionEncoder;
+import torcs.MessageBasedSensorModel;
+import torcs.MessageParser;
+import torcs.PrimitiveSensorModel;
+import torcs.SensorModel;
+import torcs.SensorPacketParser;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ParserBenchmark class measures the decoding of sensor packets and the encoding of actions, with both the
+ * original string based classes and the byte based ones used by the client.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParserBenchmark {
+
+    @Param({"start", "straight", "corner"})
+    public String packet;
+
+    private String message; // The packet as received by the original client
+    private byte[] data; // The packet as received by the byte based client
+    private MessageBasedSensorModel messageSensors;
+    private final SensorPacketParser parser = new SensorPacketParser();
+    private final PrimitiveSensorModel primitiveSensors = new PrimitiveSensorModel();
+    private final ActionEncoder encoder = new ActionEncoder();
+    private final byte[] outBuffer = new byte[1024];
+    private Action action;
+
+    @Setup
+    public void setup() {
+        message = SensorPackets.get(packet);
+        data = message.getBytes(StandardCharsets.US_ASCII);
+        messageSensors = new MessageBasedSensorModel(message);
+        primitiveSensors.decode(parser, data, 0, data.length);
+        action = new Action();
+        action.accelerate = 0.8731;
+        action.brake = 0;
+        action.clutch = 0.05;
+        action.gear = 4;
+        action.steering = -0.0318;
+    }
+
+    @Benchmark
+    public MessageParser messageParser() {
+        return new MessageParser(message);
+    }
+
+    @Benchmark
+    public MessageBasedSensorModel messageSensorModel() {
+        return new MessageBasedSensorModel(message);
+    }
+
+    @Benchmark
+    public void messageGetters(Blackhole bh) {
+        consumeGetters(messageSensors, bh);
+    }
+
+    @Benchmark
+    public PrimitiveSensorModel primitiveDecode() {
+        primitiveSensors.decode(parser, data, 0, data.length);
+        return primitiveSensors;
+    }
+
+    @Benchmark
+    public void primitiveGetters(Blackhole bh) {
+        consumeGetters(primitiveSensors, bh);
+    }
+
+    @Benchmark
+    public String actionToString() {
+        return action.toString();
+    }
+
+    @Benchmark
+    public int actionEncode() {
+        return encoder.encode(action, outBuffer, 0);
+    }
+
+    private static void consumeGetters(SensorModel sensors, Blackhole bh) {
+        bh.consume(sensors.getSpeed());
+        bh.consume(sensors.getAngleToTrackAxis());
+        bh.consume(sensors.getTrackEdgeSensors());
+        bh.consume(sensors.getFocusSensors());
+        bh.consume(sensors.getTrackPosition());
+        bh.consume(sensors.getGear());
+        bh.consume(sensors.getOpponentSensors());
+        bh.consume(sensors.getRacePosition());
+        bh.consume(sensors.getLateralSpeed());
+        bh.consume(sensors.getCurrentLapTime());
+        bh.consume(sensors.getDamage());
+        bh.consume(sensors.getDistanceFromStartLine());
+        bh.consume(sensors.getDistanceRaced());
+        bh.consume(sensors.getFuelLevel());
+        bh.consume(sensors.getLastLapTime());
+        bh.consume(sensors.getRPM());
+        bh.consume(sensors.getWheelSpinVelocity());
+        bh.consume(sensors.getZSpeed());
+        bh.consume(sensors.getZ());
+    }
+}
@@ -0,0 +1,93 @@
+package benchmarks;
+
+import mdp.AccelControl;
+import mdp.GearControl;
+import mdp.QLearning;
+import mdp.SteerControl;
+import org.openjdk.jmh.annotations.*;
+import torcs.Constants.ControlSystems;
+import torcs.Constants.QValuePrecision;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The QLearningBenchmark class measures one Q-learning step of each control system, cycling through every state and
+ * action so that the whole table is touched, with and without the best-action cache, for every precision of the
+ * stored values. {@link QValuePrecisionAccuracy} measures what the smaller precisions cost in accuracy.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class QLearningBenchmark {
+
+    @Param({"STEERING_CONTROL_SYSTEM", "ACCELERATION_CONTROL_SYSTEM", "GEAR_CONTROL_SYSTEM"})
+    public ControlSystems system;
+
+    @Param({"false", "true"})
+    public boolean cacheBestActions;
+
+    @Param({"DOUBLE", "FLOAT", "INT16"})
+    public QValuePrecision precision;
+
+    private Cycle<?, ?> cycle;
+
+    @Setup
+    public void setup() {
+        switch (system) {
+            case STEERING_CONTROL_SYSTEM:
+                cycle = new Cycle<>(system, SteerControl.States.class, SteerControl.Actions.class, cacheBestActions,
+                        precision);
+                break;
+            case ACCELERATION_CONTROL_SYSTEM:
+                cycle = new Cycle<>(system, AccelControl.States.class, AccelControl.Actions.class, cacheBestActions,
+                        precision);
+                break;
+            case GEAR_CONTROL_SYSTEM:
+                cycle = new Cycle<>(system, GearControl.States.class, GearControl.Actions.class, cacheBestActions,
+                        precision);
+                break;
+        }
+    }
+
+    @Benchmark
+    public Object update() {
+        return cycle.update();
+    }
+
+    @Benchmark
+    public Object nextAction() {
+        return cycle.nextAction();
+    }
+
+    /**
+     * Steps through every state and action of one control system.
+     */
+    private static final class Cycle<S extends Enum<S>, A extends Enum<A>> {
+
+        private final QLearning<S, A> qLearning;
+        private final S[] states;
+        private final A[] actions;
+        private int step; // Position in the cycle of states and actions
+
+        Cycle(ControlSystems system, Class<S> stateType, Class<A> actionType, boolean cacheBestActions,
+              QValuePrecision precision) {
+            this.qLearning = new QLearning<>(system, stateType, actionType, cacheBestActions, precision);
+            this.states = stateType.getEnumConstants();
+            this.actions = actionType.getEnumConstants();
+        }
+
+        A update() {
+            int i = step++;
+            S previous = states[i % states.length];
+            S current = states[(i + 1) % states.length];
+            return qLearning.update(previous, current, actions[i % actions.length], (i & 1) == 0 ? 1.0 : -10.0);
+        }
+
+        A nextAction() {
+            return qLearning.nextAction(states[step++ % states.length]);
+        }
+    }
+}
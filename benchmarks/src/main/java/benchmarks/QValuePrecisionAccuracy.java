@@ -0,0 +1,120 @@
+package benchmarks;
+
+import mdp.AccelControl;
+import mdp.GearControl;
+import mdp.QLearning;
+import mdp.SteerControl;
+import torcs.Constants.ControlSystems;
+import torcs.Constants.QValuePrecision;
+
+import java.util.Random;
+
+/**
+ * The QValuePrecisionAccuracy class measures how far Q-tables stored as floats and 16-bit integers drift from the same
+ * table stored as doubles, when all of them learn from the same transitions.
+ * <p>
+ * Each control system gets a random environment over its own states and actions: every state and action has a fixed
+ * reward drawn from the range of the rewards of the system and a usual next state, replaced by a random one 30% of
+ * the time. After every report interval, the program prints the mean absolute and the mean signed difference of the
+ * values from the double table, in units of the largest reward, and the share of states whose greedy action agrees.
+ * A signed difference that stays near 0 shows that the stochastic rounding does not bias the values.
+ * <p>
+ * This is a plain program rather than a JMH benchmark, since it measures accuracy and not time; the speed of every
+ * precision is measured by {@link QLearningBenchmark}. Run it with
+ * {@code java -cp benchmarks.jar benchmarks.QValuePrecisionAccuracy [transitions] [seed]}.
+ */
+public class QValuePrecisionAccuracy {
+
+    private static final int REPORTS = 5;
+    private static final double RANDOM_NEXT_STATE = 0.3;
+
+    /**
+     * The main entry point of the experiment.
+     *
+     * @param args The number of transitions per control system, then the seed of the environments.
+     */
+    public static void main(String[] args) {
+        long transitions = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+        compare(ControlSystems.STEERING_CONTROL_SYSTEM, SteerControl.States.class, SteerControl.Actions.class,
+                0.0, 1.0, transitions, seed);
+        compare(ControlSystems.ACCELERATION_CONTROL_SYSTEM, AccelControl.States.class, AccelControl.Actions.class,
+                -10.0, 1.0, transitions, seed);
+        compare(ControlSystems.GEAR_CONTROL_SYSTEM, GearControl.States.class, GearControl.Actions.class,
+                -100.0, 100.0, transitions, seed);
+    }
+
+    private static <S extends Enum<S>, A extends Enum<A>> void compare(ControlSystems system, Class<S> stateType,
+                                                                       Class<A> actionType, double minReward,
+                                                                       double maxReward, long transitions, long seed) {
+        QValuePrecision[] precisions = QValuePrecision.values();
+        @SuppressWarnings("unchecked")
+        QLearning<S, A>[] learners = new QLearning[precisions.length];
+        for (int i = 0; i < precisions.length; i++) {
+            learners[i] = new QLearning<>(system, stateType, actionType, false, precisions[i]);
+            learners[i].clear(); // Start from 0 even if a table has been saved
+        }
+
+        int states = learners[0].getStateCount();
+        int actions = learners[0].getActionCount();
+        Random random = new Random(seed);
+        double[] rewards = new double[states * actions];
+        int[] nextStates = new int[states * actions];
+        for (int cell = 0; cell < rewards.length; cell++) {
+            rewards[cell] = minReward + (maxReward - minReward) * random.nextDouble();
+            nextStates[cell] = random.nextInt(states);
+        }
+
+        double rewardScale = Math.max(Math.abs(minReward), Math.abs(maxReward));
+        System.out.println(system + ": " + states + " states, " + actions + " actions");
+        int state = 0;
+        for (long t = 1; t <= transitions; t++) {
+            int action = random.nextInt(actions);
+            int cell = state * actions + action;
+            int next = random.nextDouble() < RANDOM_NEXT_STATE ? random.nextInt(states) : nextStates[cell];
+            for (QLearning<S, A> learner : learners)
+                learner.learn(state, action, rewards[cell], next, false);
+            state = next;
+            if (t % Math.max(1, transitions / REPORTS) == 0)
+                report(t, precisions, learners, rewardScale);
+        }
+    }
+
+    private static void report(long transitions, QValuePrecision[] precisions, QLearning<?, ?>[] learners,
+                               double rewardScale) {
+        int states = learners[0].getStateCount();
+        int actions = learners[0].getActionCount();
+        double[] reference = new double[states * actions];
+        learners[0].snapshot(reference, new long[reference.length]);
+        StringBuilder line = new StringBuilder(String.format("  %,d transitions:", transitions));
+        double[] values = new double[reference.length];
+        for (int i = 1; i < learners.length; i++) {
+            learners[i].snapshot(values, new long[values.length]);
+            double absolute = 0;
+            double signed = 0;
+            int agreements = 0;
+            for (int s = 0; s < states; s++) {
+                for (int a = 0; a < actions; a++) {
+                    double difference = values[s * actions + a] - reference[s * actions + a];
+                    absolute += Math.abs(difference);
+                    signed += difference;
+                }
+                if (greedy(values, s, actions) == greedy(reference, s, actions))
+                    agreements++;
+            }
+            line.append(String.format(" %s mean |error| %.2e, mean error %+.2e, greedy %d/%d;", precisions[i],
+                    absolute / values.length / rewardScale, signed / values.length / rewardScale, agreements,
+                    states));
+        }
+        System.out.println(line);
+    }
+
+    private static int greedy(double[] values, int state, int actions) {
+        int best = 0;
+        for (int a = 1; a < actions; a++) {
+            if (values[state * actions + a] > values[state * actions + best])
+                best = a;
+        }
+        return best;
+    }
+}
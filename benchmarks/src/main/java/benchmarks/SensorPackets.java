@@ -0,0 +1,66 @@
+package benchmarks;
+
+/**
+ * The SensorPackets class holds sensor packets captured from the SCR server of TORCS, used as input by the
+ * benchmarks.
+ * Each packet is a typical tick of a different phase of a race, so the benchmarks see realistic number lengths and
+ * reading values.
+ */
+public final class SensorPackets {
+
+    /**
+     * A car standing on the grid before the start line.
+     */
+    public static final String START = "(angle 0.00353498)(curLapTime -0.982)(damage 0)(distFromStart 2565.89)"
+            + "(distRaced 0)(fuel 94)(gear 0)(lastLapTime 0)(opponents 200 200 200 200 200 200 200 200 200 200 200 200 "
+            + "200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200)"
+            + "(racePos 1)(rpm 942.478)(speedX -0.00166541)(speedY -0.000436283)(speedZ -0.000181357)"
+            + "(track 4.99963 5.17759 5.76854 7.06916 9.77627 14.7268 19.4262 28.5925 57.8624 200 57.1357 28.2222 "
+            + "19.1749 14.5363 9.6444 6.9648 5.6813 5.0994 4.99963)(trackPos 0.333332)"
+            + "(wheelSpinVel 0 0 0 0)(z 0.345256)(focus -1 -1 -1 -1 -1)";
+
+    /**
+     * A car at full throttle in the middle of a straight.
+     */
+    public static final String STRAIGHT = "(angle -0.0174026)(curLapTime 21.418)(damage 0)(distFromStart 412.236)"
+            + "(distRaced 416.371)(fuel 93.5748)(gear 5)(lastLapTime 0)(opponents 200 200 200 200 200 200 200 200 200 "
+            + "200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 "
+            + "200)(racePos 1)(rpm 6873.91)(speedX 163.245)(speedY -1.07342)(speedZ 0.0214187)"
+            + "(track 7.41368 7.6736 8.55693 10.5289 14.6985 22.6087 30.4569 46.3873 101.546 200 89.5823 41.5302 "
+            + "27.4172 20.5341 13.6069 9.84208 8.03297 7.21096 6.98681)(trackPos 0.0291632)"
+            + "(wheelSpinVel 141.812 141.694 142.467 142.271)(z 0.340115)(focus -1 -1 -1 -1 -1)";
+
+    /**
+     * A car braking into a right hand corner.
+     */
+    public static final String CORNER = "(angle 0.0871123)(curLapTime 48.922)(damage 0)(distFromStart 1480.57)"
+            + "(distRaced 1484.71)(fuel 93.0143)(gear 3)(lastLapTime 0)(opponents 200 200 200 200 200 200 200 200 200 "
+            + "200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 200 "
+            + "200)(racePos 1)(rpm 7950.48)(speedX 97.1846)(speedY 2.99417)(speedZ -0.0582741)"
+            + "(track 3.21456 3.31208 3.63887 4.36275 5.93131 8.86227 11.6791 17.3068 35.8102 45 22.6591 13.4019 "
+            + "9.54812 7.59112 5.44268 4.19356 3.54812 3.23551 3.14573)(trackPos 0.578291)"
+            + "(wheelSpinVel 86.2163 86.9714 83.8419 84.4023)(z 0.338716)(focus -1 -1 -1 -1 -1)";
+
+    private SensorPackets() {
+    }
+
+    /**
+     * Retrieves a packet by name.
+     *
+     * @param name The name of the packet: start, straight or corner.
+     *
+     * @return The packet.
+     */
+    public static String get(String name) {
+        switch (name) {
+            case "start":
+                return START;
+            case "straight":
+                return STRAIGHT;
+            case "corner":
+                return CORNER;
+            default:
+                throw new IllegalArgumentException("Unknown packet " + name);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package benchmarks;
+
+import mdp.AccelControl;
+import mdp.QLearning;
+import mdp.SharedQTable;
+import org.openjdk.jmh.annotations.*;
+import torcs.Constants.ControlSystems;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The SharedQTableBenchmark class measures the throughput of Q-learning updates on one {@link SharedQTable} updated
+ * by 1 to 8 threads at once, against a single {@link QLearning} on one thread.
+ * Every thread replays its own pseudo-random transitions over the acceleration table, the largest one, so threads
+ * contend on the cells as agents driving different cars would. The reported throughput is per thread; multiply it by
+ * the number of threads for the total.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SharedQTableBenchmark {
+
+    private static final int TRANSITIONS = 4096; // Pre-generated transitions per thread, a power of two
+
+    private SharedQTable<AccelControl.States, AccelControl.Actions> sharedTable;
+    private QLearning<AccelControl.States, AccelControl.Actions> table;
+
+    @Setup
+    public void setup() {
+        sharedTable = new SharedQTable<>(ControlSystems.ACCELERATION_CONTROL_SYSTEM, AccelControl.States.class,
+                AccelControl.Actions.class);
+        table = new QLearning<>(ControlSystems.ACCELERATION_CONTROL_SYSTEM, AccelControl.States.class,
+                AccelControl.Actions.class);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void unshared(Transitions transitions) {
+        int i = transitions.next();
+        table.learn(transitions.states[i], transitions.actions[i], transitions.rewards[i],
+                transitions.nextStates[i], false);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void shared1(Transitions transitions) {
+        update(transitions);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void shared2(Transitions transitions) {
+        update(transitions);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void shared4(Transitions transitions) {
+        update(transitions);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void shared8(Transitions transitions) {
+        update(transitions);
+    }
+
+    private void update(Transitions transitions) {
+        int i = transitions.next();
+        sharedTable.learn(transitions.states[i], transitions.actions[i], transitions.rewards[i],
+                transitions.nextStates[i], false);
+    }
+
+    /**
+     * The transitions replayed by one thread.
+     */
+    @State(Scope.Thread)
+    public static class Transitions {
+
+        final int[] states = new int[TRANSITIONS];
+        final int[] actions = new int[TRANSITIONS];
+        final double[] rewards = new double[TRANSITIONS];
+        final int[] nextStates = new int[TRANSITIONS];
+        private int step;
+
+        @Setup
+        public void setup() {
+            Random random = new Random(Thread.currentThread().getId());
+            int stateCount = AccelControl.States.values().length;
+            int actionCount = AccelControl.Actions.values().length;
+            for (int i = 0; i < TRANSITIONS; i++) {
+                states[i] = random.nextInt(stateCount);
+                actions[i] = random.nextInt(actionCount);
+                rewards[i] = random.nextBoolean() ? 1.0 : -10.0;
+                nextStates[i] = random.nextInt(stateCount);
+            }
+        }
+
+        int next() {
+            return step++ & (TRANSITIONS - 1);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package benchmarks;
+
+import mdp.QLearning;
+import mdp.SteerControl;
+import torcs.Constants.ControlSystems;
+import torcs.PrimitiveSensorModel;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The TraceConvergence class measures how many training ticks the steering control system needs to converge with
+ * one-step Q-learning and with Q(lambda), on a lane-keeping task that needs no simulator.
+ * <p>
+ * The car drives at constant speed on a road whose curvature drifts at random and pushes it sideways; the steering
+ * actions move it back across the road. The states and rewards come from {@link SteerControl.Encoder}, and an episode
+ * ends when the car leaves the road or stays on it for a whole lap, as with {@code AutomaticTrainer}. The learner is
+ * considered converged when its greedy policy completes the lap on every evaluation road, close enough to the center
+ * line to earn a mean reward of {@link #MIN_REWARD} per tick.
+ * <p>
+ * This is a plain program rather than a JMH benchmark, since it measures ticks and not time. Run it with
+ * {@code java -cp benchmarks.jar benchmarks.TraceConvergence [runs] [lambda...]}.
+ */
+public class TraceConvergence {
+
+    private static final double DT = 0.02; // The duration of a tick, in seconds
+    private static final double STEER_GAIN = 4.0; // Track widths per s^2 per unit of steering
+    private static final double DAMPING = 3.0; // How fast the sideways speed settles, per second
+    private static final double MAX_DRIFT = 0.5; // The largest sideways push of the curvature, in track widths per s^2
+    private static final double DRIFT_CHANGE = 0.03; // The standard deviation of the curvature change per tick
+    private static final int LAP_TICKS = 3000; // The length of a lap, in ticks
+    private static final int EVALUATION_INTERVAL = 200; // Training ticks between two evaluations
+    private static final int EVALUATION_ROADS = 5;
+    private static final long MAX_TICKS = 2_000_000;
+    private static final double EPSILON = 0.1;
+    private static final double MIN_REWARD = 0.85; // The mean reward per tick of a converged greedy policy
+
+    private final QLearning<SteerControl.States, SteerControl.Actions> learner;
+    private final SteerControl.Encoder encoder = new SteerControl.Encoder();
+    private final PrimitiveSensorModel sensors = new PrimitiveSensorModel();
+
+    private TraceConvergence() {
+        learner = new QLearning<>(ControlSystems.STEERING_CONTROL_SYSTEM, SteerControl.States.class,
+                SteerControl.Actions.class, true);
+    }
+
+    /**
+     * The main entry point of the experiment.
+     *
+     * @param args The number of runs per lambda, followed by the lambdas to compare.
+     */
+    public static void main(String[] args) {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        double[] lambdas = {0.0, 0.5, 0.8, 0.9};
+        if (args.length > 1) {
+            lambdas = new double[args.length - 1];
+            for (int i = 1; i < args.length; i++)
+                lambdas[i - 1] = Double.parseDouble(args[i]);
+        }
+
+        TraceConvergence experiment = new TraceConvergence();
+        for (double lambda : lambdas) {
+            long[] ticks = new long[runs];
+            for (int run = 0; run < runs; run++)
+                ticks[run] = experiment.ticksToConvergence(lambda, run);
+            Arrays.sort(ticks);
+            long converged = Arrays.stream(ticks).filter(t -> t < MAX_TICKS).count();
+            System.out.println(String.format("lambda %.2f: mean %.0f ticks, median %d, min %d, max %d, "
+                    + "%d/%d runs converged", lambda, Arrays.stream(ticks).average().orElse(0), ticks[runs / 2],
+                    ticks[0], ticks[runs - 1], converged, runs));
+        }
+    }
+
+    /**
+     * Trains a fresh table until its greedy policy keeps the car on every evaluation road.
+     *
+     * @param lambda The trace decay, 0 for one-step Q-learning.
+     * @param seed   The seed of the training roads and of the exploration.
+     *
+     * @return The number of training ticks, or {@link #MAX_TICKS} if the table did not converge.
+     */
+    private long ticksToConvergence(double lambda, long seed) {
+        learner.clear();
+        learner.setLambda(lambda);
+        learner.setEpsilon(EPSILON);
+        Random random = new Random(seed);
+        Road road = new Road(random);
+
+        long ticks = 0;
+        int lapTicks = 0;
+        SteerControl.States previous = null;
+        SteerControl.Actions action = SteerControl.Actions.TURN_C;
+        while (ticks < MAX_TICKS) {
+            SteerControl.States state = encode(road.position);
+            if (Math.abs(road.position) >= 1 || lapTicks >= LAP_TICKS) {
+                learner.endEpisode();
+                road.reset();
+                lapTicks = 0;
+                previous = null;
+                continue;
+            }
+            action = learner.update(previous, state, action, encoder.reward(action));
+            previous = state;
+            road.step(action.getAngle());
+            lapTicks++;
+            ticks++;
+            if (ticks % EVALUATION_INTERVAL == 0 && converged())
+                return ticks;
+        }
+        return MAX_TICKS;
+    }
+
+    private boolean converged() {
+        double reward = 0;
+        for (int i = 0; i < EVALUATION_ROADS; i++) {
+            Road road = new Road(new Random(-1 - i));
+            for (int tick = 0; tick < LAP_TICKS; tick++) {
+                road.step(learner.nextOnlyBestAction(encode(road.position)).getAngle());
+                if (Math.abs(road.position) >= 1)
+                    return false;
+                reward += 1 - Math.abs(road.position);
+            }
+        }
+        return reward / (EVALUATION_ROADS * LAP_TICKS) >= MIN_REWARD;
+    }
+
+    private SteerControl.States encode(double position) {
+        sensors.trackPos = position;
+        return encoder.encode(sensors);
+    }
+
+    /**
+     * The position of the car across a road with drifting curvature.
+     */
+    private static final class Road {
+        private final Random random;
+        double position; // 0 on the center line, 1 on the left edge and -1 on the right edge
+        double speed; // The sideways speed, in track widths per second
+        double drift; // The sideways push of the curvature, in track widths per s^2
+
+        Road(Random random) {
+            this.random = random;
+            reset();
+        }
+
+        void reset() {
+            position = 0;
+            speed = 0;
+            drift = (random.nextDouble() * 2 - 1) * MAX_DRIFT;
+        }
+
+        void step(double steering) {
+            drift = Math.max(-MAX_DRIFT, Math.min(MAX_DRIFT, drift + random.nextGaussian() * DRIFT_CHANGE));
+            speed += (steering * STEER_GAIN + drift - DAMPING * speed) * DT;
+            position += speed * DT;
+        }
+    }
+}
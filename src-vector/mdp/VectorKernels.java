@@ -0,0 +1,46 @@
+package mdp;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The VectorKernels class implements {@link Kernels} with the Vector API, on the widest vectors of the CPU.
+ * It is only loaded through {@link Kernels#vector()}, and needs {@code --add-modules jdk.incubator.vector}, which is
+ * why it is kept apart from the other sources, in {@code src-vector}.
+ */
+final class VectorKernels implements Kernels {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    VectorKernels() {
+        if (ALIGNMENT % SPECIES.length() != 0)
+            throw new IllegalStateException(SPECIES + " does not divide the alignment of " + ALIGNMENT + " floats");
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        for (int i = 0; i < length; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, aOffset + i);
+            FloatVector vb = FloatVector.fromArray(SPECIES, b, bOffset + i);
+            sum = va.fma(vb, sum);
+        }
+        return sum.reduceLanes(VectorOperators.ADD);
+    }
+
+    @Override
+    public void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length) {
+        FloatVector va = FloatVector.broadcast(SPECIES, alpha);
+        for (int i = 0; i < length; i += SPECIES.length()) {
+            FloatVector vx = FloatVector.fromArray(SPECIES, x, xOffset + i);
+            FloatVector vy = FloatVector.fromArray(SPECIES, y, yOffset + i);
+            vx.fma(va, vy).intoArray(y, yOffset + i);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "vector " + SPECIES.vectorBitSize() + "-bit";
+    }
+}
@@ -1,198 +1,263 @@
 package drivers;
 
 import mdp.AccelControl;
+import mdp.AdaptiveQLearning;
+import mdp.GearControl;
+import mdp.JointStateEncoder;
+import mdp.QAgent;
 import mdp.QLearning;
+import mdp.QTableCheckpointer;
+import mdp.ReplayLearner;
+import mdp.SensorQAgent;
+import mdp.SparseQLearning;
 import mdp.SteerControl;
+import mdp.TileCodedQLearning;
 import torcs.*;
 
-public class AutomaticTrainer extends Controller {
-
-    /* Stuck constants*/
-    final int stuckTime = 25;
-    final float stuckAngle = (float) 0.523598775; // PI/6
-
-    private final double targetSpeed = 40.0;
+public class AutomaticTrainer extends EpisodicTrainer {
 
     /* Q-learning Steer Control */
-    private QLearning steerControlSystem;
+    private QLearning<SteerControl.States, SteerControl.Actions> steerControlSystem; // Null with shared tables
+    private QAgent<SteerControl.States, SteerControl.Actions> steerAgent;
+    private SensorQAgent<SteerControl.Actions> steerApproximator; // Replaces the steering agent if not null
+    private AdaptiveQLearning<SteerControl.Actions> steerAdaptive; // Saved at every restart, null if not used
+    private SparseQLearning<SteerControl.Actions> steerJoint; // Saved at every restart, null if not used
+    private final SteerControl.Encoder steerEncoder = new SteerControl.Encoder();
     private SteerControl.States previousSteerState;
     private SteerControl.States currentSteerState;
     private SteerControl.Actions actionSteer;
     private double steerReward;
 
     /* Q-learning AccelControl */
-    private QLearning accelControlSystem;
+    private QLearning<AccelControl.States, AccelControl.Actions> accelControlSystem; // Null with shared tables
+    private QAgent<AccelControl.States, AccelControl.Actions> accelAgent;
+    private SensorQAgent<AccelControl.Actions> accelApproximator; // Replaces the acceleration agent if not null
+    private SparseQLearning<AccelControl.Actions> accelJoint; // Saved at every restart, null if not used
+    private final AccelControl.Encoder accelEncoder = new AccelControl.Encoder();
     private AccelControl.States previousAccelState;
     private AccelControl.States currentAccelState;
     private AccelControl.Actions actionAccel;
     private double accelReward;
 
-    /* Time, Laps and Statistics Variables */
-    private int tics;
-    private int epochs;
-    private int laps;
-    private double previosDistanceFromStartLine;
-    private double currentDistanceFromStartLine;
-    private int completeLaps;
-    private double distanceRaced;
-    private double highSpeed;
-    private SensorModel previousSensors;
-    private SensorModel currentSensors;
-
-    /* Cache variables */
-    private int stuck;
-    private double clutch;
-    private boolean completeLap;
-    private boolean offTrack;
-    private boolean timeOut;
+    /* Saves both Q-tables off the control thread, null with experience replay */
+    private QTableCheckpointer checkpointer;
+
+    /* Experience replay, null when the tables are updated on the control thread */
+    private ReplayLearner<SteerControl.States, SteerControl.Actions> steerReplay;
+    private ReplayLearner<AccelControl.States, AccelControl.Actions> accelReplay;
 
     public AutomaticTrainer() {
-        steerControlSystem = new QLearning(Constants.ControlSystems.STEERING_CONTROL_SYSTEM);
+        super(Constants.STATISTICS_TRAIN_PATH);
+        steerControlSystem = new QLearning<>(Constants.ControlSystems.STEERING_CONTROL_SYSTEM,
+                SteerControl.States.class, SteerControl.Actions.class, true);
+        steerAgent = steerControlSystem;
+        accelControlSystem = new QLearning<>(Constants.ControlSystems.ACCELERATION_CONTROL_SYSTEM,
+                AccelControl.States.class, AccelControl.Actions.class, true);
+        accelAgent = accelControlSystem;
+
+        if (Constants.EXPERIENCE_REPLAY) {
+            // Each learner thread owns its table, so it also drives the checkpoints of that table
+            steerReplay = new ReplayLearner<>(steerControlSystem, Constants.REPLAY_CAPACITY,
+                    Constants.REPLAY_BATCH_SIZE, Constants.REPLAY_UPDATES_PER_TRANSITION,
+                    newCheckpointer(steerControlSystem));
+            accelReplay = new ReplayLearner<>(accelControlSystem, Constants.REPLAY_CAPACITY,
+                    Constants.REPLAY_BATCH_SIZE, Constants.REPLAY_UPDATES_PER_TRANSITION,
+                    newCheckpointer(accelControlSystem));
+        } else {
+            steerControlSystem.setLambda(Constants.TRACE_DECAY);
+            accelControlSystem.setLambda(Constants.TRACE_DECAY);
+            checkpointer = new QTableCheckpointer(Constants.CHECKPOINT_INTERVAL_TICKS,
+                    Constants.CHECKPOINT_INTERVAL_MILLIS);
+            checkpointer.add(steerControlSystem);
+            checkpointer.add(accelControlSystem);
+            if (Constants.STEER_TILE_CODING) {
+                TileCodedQLearning<SteerControl.Actions> tiles = new TileCodedQLearning<>(
+                        Constants.ControlSystems.STEERING_CONTROL_SYSTEM.name(), SteerControl.newTileCoder(),
+                        SteerControl.Actions.class, Constants.STEER_TILES_PATH);
+                checkpointer.add(tiles);
+                steerApproximator = tiles;
+            } else if (Constants.STEER_ADAPTIVE_STATES) {
+                // The tree changes size as it learns, so it is saved whole at every restart instead of checkpointed
+                steerAdaptive = new AdaptiveQLearning<>(Constants.ControlSystems.STEERING_CONTROL_SYSTEM.name(),
+                        SteerControl.newAdaptiveDiscretizer(Constants.ADAPTIVE_MAX_STATES), SteerControl.Actions.class,
+                        Constants.STEER_ADAPTIVE_PATH, Constants.ADAPTIVE_SPLIT_VARIANCE,
+                        Constants.ADAPTIVE_SPLIT_VISITS, Constants.ADAPTIVE_MERGE_TOLERANCE);
+                steerApproximator = steerAdaptive;
+            } else if (Constants.JOINT_STATES) {
+                // Both learn on the joint steering, acceleration and gear states, so steering depends on speed
+                steerJoint = new SparseQLearning<>(Constants.ControlSystems.STEERING_CONTROL_SYSTEM.name(),
+                        newJointStateEncoder(), SteerControl.Actions.class, Constants.JOINT_MAX_BYTES,
+                        Constants.STEER_JOINT_PATH);
+                steerApproximator = steerJoint;
+                accelJoint = new SparseQLearning<>(Constants.ControlSystems.ACCELERATION_CONTROL_SYSTEM.name(),
+                        newJointStateEncoder(), AccelControl.Actions.class, Constants.JOINT_MAX_BYTES,
+                        Constants.ACCEL_JOINT_PATH);
+                accelApproximator = accelJoint;
+            }
+        }
+        init();
+    }
+
+    /**
+     * Constructs a new AutomaticTrainer learning into tables it does not own, for instance tables shared by several
+     * trainers. The owner of the tables saves them.
+     *
+     * @param steerAgent     The agent of the steering control system.
+     * @param accelAgent     The agent of the acceleration control system.
+     * @param statisticsPath The file the statistics of every episode are appended to, or null to keep no statistics.
+     */
+    public AutomaticTrainer(QAgent<SteerControl.States, SteerControl.Actions> steerAgent,
+                            QAgent<AccelControl.States, AccelControl.Actions> accelAgent, String statisticsPath) {
+        super(statisticsPath);
+        this.steerAgent = steerAgent;
+        this.accelAgent = accelAgent;
+        init();
+    }
+
+    private void init() {
         previousSteerState = SteerControl.States.CENTER;
         currentSteerState = SteerControl.States.CENTER;
         actionSteer = SteerControl.Actions.TURN_C;
         steerReward = 0;
 
-        accelControlSystem = new QLearning(Constants.ControlSystems.ACCELERATION_CONTROL_SYSTEM);
         previousAccelState = AccelControl.States.STATE_195;
         currentAccelState = AccelControl.States.STATE_195;
         actionAccel = AccelControl.Actions.ACCEL;
         accelReward = 0;
+    }
+
+    private static JointStateEncoder newJointStateEncoder() {
+        return new JointStateEncoder(
+                new Class<?>[]{SteerControl.States.class, AccelControl.States.class, GearControl.States.class},
+                new SteerControl.Encoder(), new AccelControl.Encoder(), new GearControl.Encoder());
+    }
 
-        tics = 0;
-        epochs = 0;
-        laps = -1;
-        completeLaps = 0;
-        distanceRaced = 0;
-        highSpeed = 0;
-
-        stuck = 0;
-        clutch = 0;
-        completeLap = false;
-        offTrack = false;
-        timeOut = false;
+    private static QTableCheckpointer newCheckpointer(QLearning<?, ?> table) {
+        QTableCheckpointer checkpointer = new QTableCheckpointer(Constants.CHECKPOINT_INTERVAL_TICKS,
+                Constants.CHECKPOINT_INTERVAL_MILLIS);
+        checkpointer.add(table);
+        return checkpointer;
     }
 
     public void reset() {
+        if (checkpointer != null) {
+            checkpointer.checkpoint();
+        } else if (steerReplay != null) {
+            steerReplay.requestCheckpoint();
+            accelReplay.requestCheckpoint();
+        }
+        if (steerApproximator != null)
+            steerApproximator.endEpisode();
+        if (accelApproximator != null)
+            accelApproximator.endEpisode();
+        if (steerAdaptive != null)
+            steerAdaptive.saveTable();
+        saveJointTables();
+        steerAgent.endEpisode();
+        accelAgent.endEpisode();
+        saveEpisode();
         System.out.println("Restarting the race!");
     }
 
     public void shutdown() {
-        System.out.println("Bye bye!");
-    }
-
-    public Action control(SensorModel sensors) {
-        if (this.tics == 0) {
-            this.previosDistanceFromStartLine = sensors.getDistanceFromStartLine();
-            this.currentDistanceFromStartLine = this.previosDistanceFromStartLine;
-
-            this.previousSensors = sensors;
-            this.currentSensors = this.previousSensors;
-
-            this.tics++;
-        } else {
-            this.previosDistanceFromStartLine = this.currentDistanceFromStartLine;
-            this.currentDistanceFromStartLine = sensors.getDistanceFromStartLine();
-
-            this.previousSensors = this.currentSensors;
-            this.currentSensors = sensors;
-
-            this.tics++;
+        closeStatistics();
+        if (steerAdaptive != null) {
+            steerAdaptive.saveTable();
+            System.out.println("Adaptive steering: " + steerAdaptive.getDiscretizer().getLeafCount() + " states, "
+                    + steerAdaptive.getSplits() + " splits, " + steerAdaptive.getMerges() + " merges");
         }
-
-        // Check if time-out
-        if (this.currentSensors.getLastLapTime() > 240.0) {
-            this.timeOut = true;
-
-            Action action = new Action();
-            action.restartRace = true;
-            return action;
+        if (steerJoint != null) {
+            saveJointTables();
+            System.out.println("Joint states: " + steerJoint.getStore().size() + " steering and "
+                    + accelJoint.getStore().size() + " acceleration states, "
+                    + (steerJoint.getStore().getEvictions() + accelJoint.getStore().getEvictions()) + " evictions, "
+                    + (steerJoint.getStore().getAllocatedBytes() + accelJoint.getStore().getAllocatedBytes())
+                    + " bytes");
         }
-
-        // Update raced distance
-        this.distanceRaced = this.currentSensors.getDistanceRaced();
-
-        // Update high speed
-        if (this.currentSensors.getSpeed() > this.highSpeed) {
-            this.highSpeed = this.currentSensors.getSpeed();
+        if (checkpointer != null) {
+            checkpointer.close();
+            checkpointer.printMetrics();
+        } else if (steerReplay != null) {
+            steerReplay.close();
+            steerReplay.printMetrics();
+            accelReplay.close();
+            accelReplay.printMetrics();
         }
+        System.out.println("Bye bye!");
+    }
 
-        // Update complete laps
-        if (this.previosDistanceFromStartLine > 1 && this.currentDistanceFromStartLine < 1) {
-            this.laps++;
-
-            // Car start back the goal, so ignore first update
-            // If the car complete the number of laps, restart the race
-            if (this.laps >= 1) {
-                this.completeLap = true;
-
-                Action action = new Action();
-                action.restartRace = true;
-                return action;
-            }
-        }
+    /**
+     * Saves the joint-state tables whole, since they grow as new states are visited, if they are used.
+     */
+    private void saveJointTables() {
+        if (steerJoint == null)
+            return;
+        steerJoint.saveTable();
+        accelJoint.saveTable();
+    }
 
-        // If the car is off track, restart the race
-        if (Math.abs(this.currentSensors.getTrackPosition()) >= 1) {
-            this.offTrack = true;
+    /**
+     * Ends the episode for the learners, so nothing flows back across a restart: the eligibility traces are cut and,
+     * with experience replay, the last transitions are recorded as terminal.
+     */
+    private void endEpisode(SensorModel sensors) {
+        if (this.steerApproximator != null)
+            this.steerApproximator.endEpisode();
+        if (this.accelApproximator != null)
+            this.accelApproximator.endEpisode();
+        this.steerAgent.endEpisode();
+        this.accelAgent.endEpisode();
+        if (this.steerReplay == null || getTics() <= 1)
+            return;
+        SteerControl.States steerState = this.steerEncoder.encode(sensors);
+        this.steerReplay.record(this.currentSteerState, this.actionSteer, this.steerEncoder.reward(this.actionSteer),
+                steerState, true);
+        AccelControl.States accelState = this.accelEncoder.encode(sensors);
+        this.accelReplay.record(this.currentAccelState, this.actionAccel, this.accelEncoder.reward(this.actionAccel),
+                accelState, true);
+    }
 
-            Action action = new Action();
-            action.restartRace = true;
-            return action;
-        }
+    public Action control(SensorModel sensors) {
+        if (this.checkpointer != null)
+            this.checkpointer.tick();
 
-        // Check if car is currently stuck
-        if (Math.abs(this.currentSensors.getAngleToTrackAxis()) > DrivingInstructor.stuckAngle) {
-            this.stuck++;
-        } else {
-            this.stuck = 0;
+        // Restart the race once the episode is over
+        if (startTick(sensors)) {
+            this.endEpisode(sensors);
+            return restartAction();
         }
 
         // After car is stuck for a while apply recovering policy
-        if (this.stuck > DrivingInstructor.stuckTime) {
-            // Set gear and steering command assuming car is pointing in a direction out of track
-
-            // To bring car parallel to track axis
-            float steer = (float) (-this.currentSensors.getAngleToTrackAxis() / DrivingInstructor.steerLock);
-            int gear = -1; // gear R
-
-            // If car is pointing in the correct direction revert gear and steer
-            if (this.currentSensors.getAngleToTrackAxis() * this.currentSensors.getTrackPosition() > 0) {
-                gear = 1;
-                steer = -steer;
-            }
-
-            this.clutch = (double) DrivingInstructor.clutching(this.currentSensors, (float) this.clutch, getStage());
-
-            // Build a CarControl variable and return it
-            Action action = new Action();
-            action.gear = gear;
-            action.steering = steer;
-            action.accelerate = 1.0;
-            action.brake = 0;
-            action.clutch = clutch;
-
-            return action;
-        }
-
+        if (isStuck())
+            return recover(sensors);
 
         // If the car is not stuck
         Action action = new Action();
 
         // Calculate gear value ----------------------------------------------------------------------------------------
-        action.gear = DrivingInstructor.getGear(this.currentSensors);
+        action.gear = DrivingInstructor.getGear(sensors);
 
         // Calculate steer value ---------------------------------------------------------------------------------------
         double steer;
         this.previousSteerState = this.currentSteerState;
-        this.currentSteerState = SteerControl.evaluateSteerState(this.currentSensors);
-        this.steerReward = SteerControl.calculateReward(this.currentSensors);
-        this.actionSteer = (SteerControl.Actions) this.steerControlSystem.update(
-                this.previousSteerState,
-                this.currentSteerState,
-                this.actionSteer,
-                this.steerReward
-        );
+        this.currentSteerState = this.steerEncoder.encode(sensors);
+        this.steerReward = this.steerEncoder.reward(this.actionSteer);
+        if (this.steerApproximator != null) {
+            this.actionSteer = this.steerApproximator.update(sensors, this.actionSteer, this.steerReward);
+        } else if (this.steerReplay != null) {
+            // The first tick of an episode has no transition from this episode to record
+            if (getTics() > 1)
+                this.steerReplay.record(this.previousSteerState, this.actionSteer, this.steerReward,
+                        this.currentSteerState, false);
+            this.actionSteer = this.steerReplay.act(this.currentSteerState);
+        } else {
+            this.actionSteer = this.steerAgent.update(
+                    this.previousSteerState,
+                    this.currentSteerState,
+                    this.actionSteer,
+                    this.steerReward
+            );
+        }
         steer = SteerControl.steerAction2Double(this.actionSteer);
 
         // normalize steering
@@ -201,34 +266,33 @@ public class AutomaticTrainer extends Controller {
         action.steering = steer;
 
         // Calculate accel/brake ---------------------------------------------------------------------------------------
-        float accel_and_brake = DrivingInstructor.getAccel(this.currentSensors);
+        float accel_and_brake = DrivingInstructor.getAccel(sensors);
 
         // Set accel and brake from the joint accel/brake command
         double accel_brake;
         this.previousAccelState = this.currentAccelState;
-        this.currentAccelState = AccelControl.evaluateAccelState(this.currentSensors);
-        this.accelReward = AccelControl.calculateReward(this.currentSensors, this.actionAccel);
-        this.actionAccel = (AccelControl.Actions) this.accelControlSystem.update(
-                this.previousAccelState,
-                this.currentAccelState,
-                this.actionAccel,
-                this.accelReward
-        );
-        accel_brake = AccelControl.accelAction2Double(this.currentSensors, this.actionAccel);
-        if (accel_brake >= 0) {
-            action.accelerate = accel_brake;
-            action.brake = 0.0;
-        } else if (this.currentSensors.getSpeed() >= targetSpeed) {
-            action.accelerate = 0.0;
-            action.brake = 0.0;
+        this.currentAccelState = this.accelEncoder.encode(sensors);
+        this.accelReward = this.accelEncoder.reward(this.actionAccel);
+        if (this.accelApproximator != null) {
+            this.actionAccel = this.accelApproximator.update(sensors, this.actionAccel, this.accelReward);
+        } else if (this.accelReplay != null) {
+            if (getTics() > 1)
+                this.accelReplay.record(this.previousAccelState, this.actionAccel, this.accelReward,
+                        this.currentAccelState, false);
+            this.actionAccel = this.accelReplay.act(this.currentAccelState);
         } else {
-            action.accelerate = 0.0;
-            action.brake = accel_brake;
+            this.actionAccel = this.accelAgent.update(
+                    this.previousAccelState,
+                    this.currentAccelState,
+                    this.actionAccel,
+                    this.accelReward
+            );
         }
+        accel_brake = AccelControl.accelAction2Double(sensors, this.actionAccel);
+        setAccelBrake(action, sensors, accel_brake);
 
         // Calculate clutch --------------------------------------------------------------------------------------------
-        this.clutch = DrivingInstructor.clutching(this.currentSensors, (float) this.clutch, getStage());
-        action.clutch = this.clutch;
+        action.clutch = clutch(sensors);
 
         return action;
     }
@@ -2,8 +2,11 @@ package drivers;
 
 import torcs.Action;
 import torcs.Controller;
+import torcs.SensorField;
 import torcs.SensorModel;
 
+import java.util.EnumSet;
+
 /**
  * This is a simple solo controller that maintains a target speed and adjusts the steering to stay on the track.
  */
@@ -11,6 +14,15 @@ public class DeadSimpleSoloController extends Controller {
 
     private final double targetSpeed = 55;
 
+    /**
+     * Declares the sensor readings used by the controller.
+     *
+     * @return the speed and angle readings
+     */
+    public EnumSet<SensorField> sensorFields() {
+        return EnumSet.of(SensorField.SPEED_X, SensorField.ANGLE);
+    }
+
     /**
      * Controls the car based on the sensor input.
      *
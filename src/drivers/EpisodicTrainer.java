@@ -0,0 +1,267 @@
+package drivers;
+
+import mdp.AccelControl;
+import mdp.EpisodeStatistics;
+import mdp.StatisticsSink;
+import mdp.SteerControl;
+import torcs.*;
+
+import java.io.IOException;
+import java.util.EnumSet;
+
+/**
+ * The EpisodicTrainer class is the base of the controllers that learn over episodes of the race. It keeps the
+ * bookkeeping they share: an episode ends with a restart once a lap is complete, when the car leaves the track or when
+ * the lap takes too long, and its statistics are appended to a {@link StatisticsSink}. It also holds the recovery
+ * policy applied while the car is stuck, which is never learned from.
+ * <p>
+ * Subclasses call {@link #startTick} first in {@link #control}, restart the race if it returns true, apply
+ * {@link #recover} while {@link #isStuck()}, and otherwise choose their own action. The steering and acceleration
+ * actions they emit are those of {@link SteerControl} and {@link AccelControl}.
+ */
+public abstract class EpisodicTrainer extends Controller {
+
+    private static final double TARGET_SPEED = 40.0; // Below this speed braking actions are applied
+    private static final double MAX_LAP_TIME = 240.0; // The time after which a lap is timed out
+
+    /* Time, Laps and Statistics Variables */
+    private int tics;
+    private int epochs;
+    private int laps;
+    private double previosDistanceFromStartLine;
+    private double currentDistanceFromStartLine;
+    private double distanceRaced;
+    private double highSpeed;
+    private StatisticsSink statistics;
+    private final EpisodeStatistics episodeStatistics = new EpisodeStatistics();
+
+    /* Cache variables */
+    private int stuck;
+    private double clutch;
+    private boolean completeLap;
+    private boolean offTrack;
+    private boolean timeOut;
+
+    /**
+     * Constructs a new EpisodicTrainer.
+     *
+     * @param statisticsPath The file the statistics of every episode are appended to, or null to keep no statistics.
+     */
+    protected EpisodicTrainer(String statisticsPath) {
+        this.laps = -1;
+        if (statisticsPath == null)
+            return;
+        try {
+            this.statistics = new StatisticsSink(statisticsPath, true, Constants.STATISTICS_MAX_BYTES,
+                    Constants.STATISTICS_MAX_FILES);
+        } catch (IOException e) {
+            System.out.println("ERROR!!! -> Could not open statistics file, statistics will not be saved...");
+            e.printStackTrace();
+        }
+    }
+
+    public EnumSet<SensorField> sensorFields() {
+        return EnumSet.of(SensorField.ANGLE, SensorField.CUR_LAP_TIME, SensorField.DIST_FROM_START,
+                SensorField.DIST_RACED, SensorField.GEAR, SensorField.LAST_LAP_TIME, SensorField.RPM,
+                SensorField.SPEED_X, SensorField.TRACK, SensorField.TRACK_POS);
+    }
+
+    public Action[] discreteActions() {
+        // Braking never reaches the server: the negative brake command is clamped to 0
+        SteerControl.Actions[] steerActions = SteerControl.Actions.values();
+        Action[] actions = new Action[steerActions.length * 2];
+        for (int i = 0; i < steerActions.length; i++) {
+            actions[2 * i] = new Action();
+            actions[2 * i].steering = SteerControl.steerAction2Double(steerActions[i]);
+            actions[2 * i].accelerate = AccelControl.Actions.ACCEL.getValue();
+            actions[2 * i + 1] = new Action();
+            actions[2 * i + 1].steering = SteerControl.steerAction2Double(steerActions[i]);
+        }
+        return actions;
+    }
+
+    /**
+     * Counts a tick of the episode and checks whether the episode is over: the lap timed out, a lap is complete or the
+     * car left the track. The reason is kept for the statistics, see {@link #isOffTrack()}.
+     *
+     * @param sensors The current sensor model of the car.
+     *
+     * @return True if the race must be restarted, false if the episode goes on.
+     */
+    protected final boolean startTick(SensorModel sensors) {
+        this.previosDistanceFromStartLine = this.tics == 0 ? sensors.getDistanceFromStartLine()
+                : this.currentDistanceFromStartLine;
+        this.currentDistanceFromStartLine = sensors.getDistanceFromStartLine();
+        this.tics++;
+
+        // Check if time-out
+        if (sensors.getLastLapTime() > MAX_LAP_TIME) {
+            this.timeOut = true;
+            return true;
+        }
+
+        // Update raced distance and high speed
+        this.distanceRaced = sensors.getDistanceRaced();
+        this.highSpeed = Math.max(this.highSpeed, sensors.getSpeed());
+
+        // Car start back the goal, so ignore first update; restart once a lap is complete
+        if (this.previosDistanceFromStartLine > 1 && this.currentDistanceFromStartLine < 1) {
+            this.laps++;
+            if (this.laps >= 1) {
+                this.completeLap = true;
+                return true;
+            }
+        }
+
+        // If the car is off track, restart the race
+        if (Math.abs(sensors.getTrackPosition()) >= 1) {
+            this.offTrack = true;
+            return true;
+        }
+
+        // Check if car is currently stuck
+        if (Math.abs(sensors.getAngleToTrackAxis()) > DrivingInstructor.stuckAngle) {
+            this.stuck++;
+        } else {
+            this.stuck = 0;
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether the car has been stuck long enough to apply {@link #recover}.
+     *
+     * @return True if the car is stuck.
+     */
+    protected final boolean isStuck() {
+        return this.stuck > DrivingInstructor.stuckTime;
+    }
+
+    /**
+     * Builds the action bringing a stuck car back parallel to the track axis.
+     *
+     * @param sensors The current sensor model of the car.
+     *
+     * @return The recovery action.
+     */
+    protected final Action recover(SensorModel sensors) {
+        // Set gear and steering command assuming car is pointing in a direction out of track
+
+        // To bring car parallel to track axis
+        float steer = (float) (-sensors.getAngleToTrackAxis() / DrivingInstructor.steerLock);
+        int gear = -1; // gear R
+
+        // If car is pointing in the correct direction revert gear and steer
+        if (sensors.getAngleToTrackAxis() * sensors.getTrackPosition() > 0) {
+            gear = 1;
+            steer = -steer;
+        }
+
+        Action action = new Action();
+        action.gear = gear;
+        action.steering = steer;
+        action.accelerate = 1.0;
+        action.brake = 0;
+        action.clutch = this.clutch(sensors);
+        return action;
+    }
+
+    /**
+     * Builds the action restarting the race.
+     *
+     * @return The restart action.
+     */
+    protected static Action restartAction() {
+        Action action = new Action();
+        action.restartRace = true;
+        return action;
+    }
+
+    /**
+     * Sets the accelerate and brake commands of an action from a joint accel/brake command of {@link AccelControl}.
+     *
+     * @param action     The action.
+     * @param sensors    The current sensor model of the car.
+     * @param accelBrake The joint command, negative to brake.
+     */
+    protected static void setAccelBrake(Action action, SensorModel sensors, double accelBrake) {
+        if (accelBrake >= 0) {
+            action.accelerate = accelBrake;
+            action.brake = 0.0;
+        } else if (sensors.getSpeed() >= TARGET_SPEED) {
+            action.accelerate = 0.0;
+            action.brake = 0.0;
+        } else {
+            action.accelerate = 0.0;
+            action.brake = accelBrake;
+        }
+    }
+
+    /**
+     * Computes the clutch command of this tick, which depends on that of the previous tick.
+     *
+     * @param sensors The current sensor model of the car.
+     *
+     * @return The clutch command.
+     */
+    protected final double clutch(SensorModel sensors) {
+        this.clutch = DrivingInstructor.clutching(sensors, (float) this.clutch, getStage());
+        return this.clutch;
+    }
+
+    /**
+     * Appends the statistics of the episode that just ended and clears them for the next one.
+     */
+    protected final void saveEpisode() {
+        if (this.tics == 0)
+            return;
+        this.epochs++;
+        if (this.statistics != null) {
+            this.episodeStatistics.episode = this.epochs;
+            this.episodeStatistics.ticks = this.tics;
+            this.episodeStatistics.laps = Math.max(0, this.laps);
+            this.episodeStatistics.distanceRaced = this.distanceRaced;
+            this.episodeStatistics.highSpeed = this.highSpeed;
+            this.episodeStatistics.completeLap = this.completeLap;
+            this.episodeStatistics.offTrack = this.offTrack;
+            this.episodeStatistics.timeOut = this.timeOut;
+            this.statistics.append(this.episodeStatistics);
+            this.statistics.endEpisode();
+        }
+        this.tics = 0;
+        this.laps = -1;
+        this.distanceRaced = 0;
+        this.highSpeed = 0;
+        this.stuck = 0;
+        this.completeLap = false;
+        this.offTrack = false;
+        this.timeOut = false;
+    }
+
+    /**
+     * Saves the statistics of the last episode and closes the statistics file.
+     */
+    protected final void closeStatistics() {
+        saveEpisode();
+        if (this.statistics != null)
+            this.statistics.close();
+    }
+
+    /**
+     * Retrieves the number of ticks of the current episode, including the current one.
+     *
+     * @return The number of ticks.
+     */
+    protected final int getTics() {
+        return this.tics;
+    }
+
+    /**
+     * Checks whether the current episode ended because the car left the track.
+     *
+     * @return True if the car is off track.
+     */
+    protected final boolean isOffTrack() {
+        return this.offTrack;
+    }
+}
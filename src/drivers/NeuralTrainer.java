@@ -0,0 +1,214 @@
+package drivers;
+
+import mdp.AccelControl;
+import mdp.NeuralNetwork;
+import mdp.SteerControl;
+import torcs.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * The NeuralTrainer class is a DQN-style controller: instead of the discrete states of {@link SteerControl} and
+ * {@link AccelControl}, a {@link NeuralNetwork} reads the 19 track edge sensors, the speed, the angle to the track
+ * axis and the track position, and estimates the Q-value of every pair of a steering and an acceleration action.
+ * <p>
+ * Every transition goes into a replay buffer of preallocated float arrays. Every
+ * {@link Constants#NEURAL_TRAIN_INTERVAL} ticks, the network takes one SGD step on a minibatch sampled from it, with
+ * targets from a copy of the network refreshed every {@link Constants#NEURAL_TARGET_SYNC_TICKS} ticks. The reward is
+ * the sum of the rewards of the steering and of the acceleration, the latter scaled down to the same range.
+ * Exploration is epsilon-greedy, epsilon decaying by {@link Constants#EPSILON_DECAY} per episode.
+ * <p>
+ * Episodes, clutch and the recovery when stuck are those of {@link EpisodicTrainer}, as for {@link AutomaticTrainer},
+ * and gears those of {@link DrivingInstructor}. The network is saved at every
+ * restart and loaded back when the trainer starts. A tick takes one inference and, every few ticks, one minibatch,
+ * well within the 20 ms of a tick; put the classes of {@code src-vector} on the classpath and run with
+ * {@code --add-modules jdk.incubator.vector} to use the SIMD kernels.
+ */
+public class NeuralTrainer extends EpisodicTrainer {
+
+    private static final int INPUTS = 22; // The track edge sensors, the speed, the angle and the track position
+    private static final SteerControl.Actions[] STEER_ACTIONS = SteerControl.Actions.values();
+    private static final AccelControl.Actions[] ACCEL_ACTIONS = AccelControl.Actions.values();
+    private static final int ACTIONS = STEER_ACTIONS.length * ACCEL_ACTIONS.length;
+
+    /* Deep Q-learning */
+    private final NeuralNetwork network;
+    private final NeuralNetwork targetNetwork; // A lagging copy of the network, which computes the targets
+    private final Random random = new Random(System.currentTimeMillis());
+    private double epsilon = Constants.INITIAL_EPSILON;
+    private long trainingTicks; // The ticks learned from since the trainer started
+
+    /* Replay buffer, a ring over preallocated arrays */
+    private final float[] replayStates; // The inputs of transition i are at i * INPUTS
+    private final float[] replayNextStates;
+    private final int[] replayActions;
+    private final float[] replayRewards;
+    private final boolean[] replayTerminals;
+    private int replayNext; // The slot of the next transition
+    private int replaySize;
+    private final float[] input = new float[INPUTS]; // The inputs of the current tick
+    private final float[] previousInput = new float[INPUTS]; // The inputs of the previous tick
+    private final float[] sampleInput = new float[INPUTS]; // Scratch space for the minibatches
+    private int previousAction; // The joint action of the previous tick, -1 at the start of an episode
+
+    public NeuralTrainer() {
+        super(Constants.STATISTICS_NEURAL_PATH);
+        int[] sizes = {INPUTS, Constants.NEURAL_HIDDEN_UNITS, Constants.NEURAL_HIDDEN_UNITS, ACTIONS};
+        network = new NeuralNetwork(sizes, System.currentTimeMillis());
+        targetNetwork = new NeuralNetwork(sizes, 0, network.getKernels());
+        if (new File(Constants.NEURAL_NETWORK_PATH).exists()) {
+            try {
+                network.load(Constants.NEURAL_NETWORK_PATH);
+                epsilon = Constants.FINAL_EPSILON;
+            } catch (IOException e) {
+                System.out.println("ERROR!!! -> Could not load the network from binary file...");
+                e.printStackTrace();
+            }
+        }
+        targetNetwork.copyFrom(network);
+        System.out.println("Network " + INPUTS + "-" + Constants.NEURAL_HIDDEN_UNITS + "-"
+                + Constants.NEURAL_HIDDEN_UNITS + "-" + ACTIONS + " on " + network.getKernels().getName() + " kernels");
+
+        replayStates = new float[Constants.REPLAY_CAPACITY * INPUTS];
+        replayNextStates = new float[Constants.REPLAY_CAPACITY * INPUTS];
+        replayActions = new int[Constants.REPLAY_CAPACITY];
+        replayRewards = new float[Constants.REPLAY_CAPACITY];
+        replayTerminals = new boolean[Constants.REPLAY_CAPACITY];
+
+        previousAction = -1;
+    }
+
+    public void reset() {
+        // Whoever asked for the restart, the next episode does not continue the transition of the previous action
+        previousAction = -1;
+        saveNetwork();
+        saveEpisode();
+        epsilon = Math.max(Constants.FINAL_EPSILON, epsilon - Constants.EPSILON_DECAY);
+        System.out.println("Restarting the race!");
+    }
+
+    public void shutdown() {
+        saveNetwork();
+        closeStatistics();
+        System.out.println("Bye bye!");
+    }
+
+    private void saveNetwork() {
+        try {
+            network.save(Constants.NEURAL_NETWORK_PATH, "NEURAL_CONTROL_SYSTEM");
+        } catch (IOException e) {
+            System.out.println("ERROR!!! -> Could not save the network in binary file...");
+            e.printStackTrace();
+        }
+    }
+
+    public Action control(SensorModel sensors) {
+        // Restart the race once the episode is over, as a failure if the car left the track
+        if (startTick(sensors))
+            return this.restart(sensors, isOffTrack());
+
+        // After car is stuck for a while apply recovering policy
+        if (isStuck()) {
+            this.previousAction = -1; // The recovery is not the policy, so it is not learned from
+            return recover(sensors);
+        }
+
+        // Learn from the previous tick and choose the joint action of this one
+        this.encode(sensors, this.input);
+        if (this.previousAction >= 0)
+            this.record(this.reward(sensors, this.previousAction), false);
+        int joint = this.random.nextDouble() < this.epsilon ? this.random.nextInt(ACTIONS)
+                : this.network.argMax(this.network.forward(this.input));
+        System.arraycopy(this.input, 0, this.previousInput, 0, INPUTS);
+        this.previousAction = joint;
+        this.train();
+
+        Action action = new Action();
+        action.gear = DrivingInstructor.getGear(sensors);
+        action.steering = Math.max(-1, Math.min(1,
+                SteerControl.steerAction2Double(STEER_ACTIONS[joint / ACCEL_ACTIONS.length])));
+        double accelBrake = AccelControl.accelAction2Double(sensors, ACCEL_ACTIONS[joint % ACCEL_ACTIONS.length]);
+        setAccelBrake(action, sensors, accelBrake);
+        action.clutch = clutch(sensors);
+        return action;
+    }
+
+    /**
+     * Ends the episode: the last transition is recorded, as terminal if the car left the track.
+     *
+     * @param sensors  The current sensor model of the car.
+     * @param terminal True if the episode failed, so the value of its last state is not bootstrapped.
+     *
+     * @return The action restarting the race.
+     */
+    private Action restart(SensorModel sensors, boolean terminal) {
+        if (this.previousAction >= 0) {
+            this.encode(sensors, this.input);
+            this.record(this.reward(sensors, this.previousAction), terminal);
+        }
+        this.previousAction = -1;
+        return restartAction();
+    }
+
+    /**
+     * Scales the sensors to the inputs of the network, all of them within [-1, 1].
+     *
+     * @param sensors The current sensor model of the car.
+     * @param inputs  The inputs to fill.
+     */
+    private void encode(SensorModel sensors, float[] inputs) {
+        double[] edges = sensors.getTrackEdgeSensors();
+        for (int i = 0; i < 19; i++)
+            inputs[i] = (float) (Math.max(-1, Math.min(200, edges[i])) / 200);
+        inputs[19] = (float) Math.max(-1, Math.min(1, sensors.getSpeed() / 300));
+        inputs[20] = (float) (sensors.getAngleToTrackAxis() / Math.PI);
+        inputs[21] = (float) Math.max(-1, Math.min(1, sensors.getTrackPosition()));
+    }
+
+    private float reward(SensorModel sensors, int joint) {
+        double accelReward = AccelControl.calculateReward(sensors, ACCEL_ACTIONS[joint % ACCEL_ACTIONS.length]);
+        return (float) (SteerControl.calculateReward(sensors) + accelReward / 10);
+    }
+
+    /**
+     * Records the transition from the previous tick to the inputs of the current one.
+     *
+     * @param reward   The reward of the previous action.
+     * @param terminal True if the episode ended with this transition.
+     */
+    private void record(float reward, boolean terminal) {
+        int slot = this.replayNext;
+        System.arraycopy(this.previousInput, 0, this.replayStates, slot * INPUTS, INPUTS);
+        System.arraycopy(this.input, 0, this.replayNextStates, slot * INPUTS, INPUTS);
+        this.replayActions[slot] = this.previousAction;
+        this.replayRewards[slot] = reward;
+        this.replayTerminals[slot] = terminal;
+        this.replayNext = (slot + 1) % this.replayActions.length;
+        this.replaySize = Math.min(this.replaySize + 1, this.replayActions.length);
+    }
+
+    /**
+     * Takes one SGD step on a minibatch every few ticks, once the buffer holds a full minibatch.
+     */
+    private void train() {
+        this.trainingTicks++;
+        if (this.trainingTicks % Constants.NEURAL_TARGET_SYNC_TICKS == 0)
+            this.targetNetwork.copyFrom(this.network);
+        if (this.trainingTicks % Constants.NEURAL_TRAIN_INTERVAL != 0 || this.replaySize < Constants.REPLAY_BATCH_SIZE)
+            return;
+        for (int b = 0; b < Constants.REPLAY_BATCH_SIZE; b++) {
+            int i = this.random.nextInt(this.replaySize);
+            float target = this.replayRewards[i];
+            if (!this.replayTerminals[i]) {
+                System.arraycopy(this.replayNextStates, i * INPUTS, this.sampleInput, 0, INPUTS);
+                float[] next = this.targetNetwork.forward(this.sampleInput);
+                target += (float) Constants.DISCOUNT_FACTOR * next[this.targetNetwork.argMax(next)];
+            }
+            System.arraycopy(this.replayStates, i * INPUTS, this.sampleInput, 0, INPUTS);
+            this.network.accumulate(this.sampleInput, this.replayActions[i], target);
+        }
+        this.network.step((float) Constants.NEURAL_LEARNING_RATE);
+    }
+}
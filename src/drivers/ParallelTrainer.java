@@ -0,0 +1,142 @@
+package drivers;
+
+import mdp.AccelControl;
+import mdp.QTableCheckpointer;
+import mdp.SharedQTable;
+import mdp.SteerControl;
+import torcs.CarSession;
+import torcs.Constants;
+import torcs.Controller.Stage;
+import torcs.MultiClient;
+
+import java.io.IOException;
+import java.util.StringTokenizer;
+
+/**
+ * The ParallelTrainer class trains one pair of Q-tables with several {@link AutomaticTrainer} agents at once, each
+ * connected to its own server port and running on its own thread.
+ * The agents learn into {@link SharedQTable}s, so the tables see the experience of every car while every agent keeps
+ * its own exploration rate and random generator. Agent {@code i} of {@code n} explores with
+ * {@code epsilon^(1 + 7 * i / (n - 1))}, so some agents mostly explore and others mostly exploit.
+ * <p>
+ * The main thread saves both tables every {@link Constants#CHECKPOINT_INTERVAL_MILLIS} milliseconds and once more when
+ * every agent has finished. Agent {@code i} drives the car on port {@code port + i} and appends its statistics to its
+ * own file.
+ * <p>
+ * Usage: {@code ParallelTrainer [port:3001] [agents:4] [epsilon:0.4] [host:..] [maxEpisodes:..] [maxSteps:..]
+ * [trackName:..] [verbose:on]}
+ */
+public class ParallelTrainer {
+
+    /**
+     * The main entry point of the parallel trainer.
+     *
+     * @param args The command-line arguments.
+     */
+    public static void main(String[] args) {
+        int port = 3001;
+        int agents = 4;
+        double epsilon = 0.4;
+        String host = "localhost";
+        int maxEpisodes = 1;
+        int maxSteps = 0;
+        String trackName = "unknown";
+        boolean verbose = false;
+
+        for (String arg : args) {
+            StringTokenizer st = new StringTokenizer(arg, ":");
+            String entity = st.nextToken();
+            String value = st.nextToken();
+            if (entity.equals("port"))
+                port = Integer.parseInt(value);
+            if (entity.equals("agents"))
+                agents = Integer.parseInt(value);
+            if (entity.equals("epsilon"))
+                epsilon = Double.parseDouble(value);
+            if (entity.equals("host"))
+                host = value;
+            if (entity.equals("maxEpisodes"))
+                maxEpisodes = Integer.parseInt(value);
+            if (entity.equals("maxSteps"))
+                maxSteps = Integer.parseInt(value);
+            if (entity.equals("trackName"))
+                trackName = value;
+            if (entity.equals("verbose"))
+                verbose = value.equals("on");
+        }
+        if (agents <= 0 || maxEpisodes <= 0 || maxSteps < 0 || epsilon < 0 || epsilon > 1) {
+            System.out.println("Usage: ParallelTrainer [port:3001] [agents:4] [epsilon:0.4] [host:..] "
+                    + "[maxEpisodes:..] [maxSteps:..] [trackName:..] [verbose:on]");
+            System.exit(0);
+        }
+
+        SharedQTable<SteerControl.States, SteerControl.Actions> steerTable = new SharedQTable<>(
+                Constants.ControlSystems.STEERING_CONTROL_SYSTEM, SteerControl.States.class,
+                SteerControl.Actions.class);
+        SharedQTable<AccelControl.States, AccelControl.Actions> accelTable = new SharedQTable<>(
+                Constants.ControlSystems.ACCELERATION_CONTROL_SYSTEM, AccelControl.States.class,
+                AccelControl.Actions.class);
+
+        String serverHost = host;
+        boolean verboseClient = verbose;
+        Thread[] threads = new Thread[agents];
+        long seed = System.nanoTime();
+        for (int i = 0; i < agents; i++) {
+            double agentEpsilon = agents == 1 ? epsilon : Math.pow(epsilon, 1 + 7.0 * i / (agents - 1));
+            AutomaticTrainer driver = new AutomaticTrainer(steerTable.newAgent(agentEpsilon, seed + 2 * i),
+                    accelTable.newAgent(agentEpsilon, seed + 2 * i + 1), statisticsPath(port + i));
+            driver.setStage(Stage.UNKNOWN);
+            driver.setTrackName(trackName);
+            CarSession session = new CarSession(port + i, "championship2011", driver, maxEpisodes, maxSteps,
+                    verbose);
+            System.out.println(String.format("Agent %d: port %d, epsilon %.4f", i, port + i, agentEpsilon));
+            threads[i] = new Thread(() -> drive(serverHost, session, verboseClient), "agent-" + (port + i));
+            threads[i].start();
+        }
+
+        /* Save both tables periodically until every agent has finished */
+        QTableCheckpointer checkpointer = new QTableCheckpointer(0, 0);
+        checkpointer.add(steerTable);
+        checkpointer.add(accelTable);
+        for (Thread thread : threads) {
+            try {
+                while (thread.isAlive()) {
+                    thread.join(Constants.CHECKPOINT_INTERVAL_MILLIS);
+                    if (thread.isAlive())
+                        checkpointer.checkpoint();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        checkpointer.close();
+        checkpointer.printMetrics();
+        System.out.println("Bye, bye!");
+    }
+
+    /**
+     * Drives one car until its session is done.
+     *
+     * @param host    The server host.
+     * @param session The session of the car.
+     * @param verbose True to enable verbose output, false otherwise.
+     */
+    private static void drive(String host, CarSession session, boolean verbose) {
+        try {
+            MultiClient client = new MultiClient(verbose);
+            client.addCar(host, session);
+            client.run();
+        } catch (IOException e) {
+            System.out.println("ERROR!!! -> Agent on port " + session.getPort() + " stopped...");
+            e.printStackTrace();
+            session.finish();
+        }
+    }
+
+    private static String statisticsPath(int port) {
+        String path = Constants.STATISTICS_TRAIN_PATH;
+        int extension = path.lastIndexOf('.');
+        return path.substring(0, extension) + "_" + port + path.substring(extension);
+    }
+}
@@ -2,8 +2,11 @@ package drivers;
 
 import torcs.Action;
 import torcs.Controller;
+import torcs.SensorField;
 import torcs.SensorModel;
 
+import java.util.EnumSet;
+
 public class SimpleDriver extends Controller {
 
     /* Gear Changing Constants*/
@@ -44,6 +47,12 @@ public class SimpleDriver extends Controller {
     private int stuck = 0;
     private float clutch = 0;
 
+    public EnumSet<SensorField> sensorFields() {
+        return EnumSet.of(SensorField.ANGLE, SensorField.CUR_LAP_TIME, SensorField.DIST_RACED, SensorField.GEAR,
+                SensorField.RPM, SensorField.SPEED_X, SensorField.TRACK, SensorField.TRACK_POS,
+                SensorField.WHEEL_SPIN_VEL);
+    }
+
 
     public void reset() {
         System.out.println("Restarting the race!");
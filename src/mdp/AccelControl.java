@@ -1,6 +1,5 @@
 package mdp;
 
-import torcs.Constants;
 import torcs.SensorModel;
 
 /**
@@ -8,20 +7,40 @@ import torcs.SensorModel;
  */
 public class AccelControl {
 
+    private static final int STATE_WIDTH = 5; // Meters of front distance covered by each state
+    private static final int BRAKING_STATES = 4; // States below 20 meters, where accelerating is penalised
+    private static final Quantizer FRONT_DISTANCE = frontDistanceQuantizer();
+
+    /**
+     * Builds the quantizer of the front track sensor: the distance, rounded to the closest meter, is divided in
+     * {@value #STATE_WIDTH} meter wide states, the last one also holding every longer distance.
+     *
+     * @return The quantizer.
+     */
+    private static Quantizer frontDistanceQuantizer() {
+        int states = States.values().length;
+        double[] thresholds = new double[states - 1];
+        int[] values = new int[states];
+        for (int i = 0; i < thresholds.length; i++)
+            thresholds[i] = (i + 1) * STATE_WIDTH - 0.5; // Rounding half up moves each boundary half a meter down
+        for (int i = 0; i < values.length; i++)
+            values[i] = i;
+        return new Quantizer(-0.5, thresholds[thresholds.length - 1], STATE_WIDTH, thresholds, values);
+    }
+
+    /**
+     * Evaluates the acceleration state from the front track sensor.
+     *
+     * @param current The current sensor model of the car.
+     *
+     * @return The state of the acceleration.
+     */
     public static States evaluateAccelState(SensorModel current) {
-        return States.valueOf("STATE_" + stateIndex(current));
+        return States.values[stateIndex(current)];
     }
 
     private static int stateIndex(SensorModel current) {
-        int currentFrontDistance = (int) Constants.round(current.getTrackEdgeSensors()[9], 0);
-        int index = 0;
-        for (int i = 0; i < 200; i++) {
-            if (i == currentFrontDistance) return currentFrontDistance;
-            else {
-                if (i > currentFrontDistance) index = i - 5;
-            }
-        }
-        return index;
+        return FRONT_DISTANCE.quantize(current.getTrackEdgeSensors()[9]);
     }
 
     public static double accelAction2Double(SensorModel current, Actions action) {
@@ -29,16 +48,33 @@ public class AccelControl {
     }
 
     public static double calculateReward(SensorModel current, Actions action) {
-        double reward = 0.0;
-        int frontDistance = stateIndex(current);
-        if (frontDistance < 20 && action == Actions.ACCEL) {
-            reward -= 10.0;
-        } else if (frontDistance >= 20 && action == Actions.BRAKE) {
-            reward -= 10.0;
+        return reward(stateIndex(current), action);
+    }
+
+    private static double reward(int state, Actions action) {
+        if (state < BRAKING_STATES && action == Actions.ACCEL) {
+            return -10.0;
+        } else if (state >= BRAKING_STATES && action == Actions.BRAKE) {
+            return -10.0;
         } else {
-            reward += 1.0;
+            return 1.0;
+        }
+    }
+
+    /**
+     * The StateEncoder of the acceleration, which quantizes the front track sensor once per tick.
+     */
+    public static class Encoder implements StateEncoder<States, Actions> {
+        private int state; // The ordinal of the last encoded state
+
+        public States encode(SensorModel sensors) {
+            state = stateIndex(sensors);
+            return States.values[state];
+        }
+
+        public double reward(Actions action) {
+            return AccelControl.reward(state, action);
         }
-        return reward;
     }
 
 
@@ -94,6 +130,8 @@ public class AccelControl {
         STATE_180,
         STATE_185,
         STATE_190,
-        STATE_195,
+        STATE_195;
+
+        private static final States[] values = values(); // Shared copy, values() clones the array on every call
     }
 }
\ No newline at end of file
@@ -0,0 +1,372 @@
+package mdp;
+
+import torcs.SensorModel;
+
+/**
+ * The AdaptiveDiscretizer class maps continuous sensor readings to states with a kd-tree whose cells are refined
+ * where the learner needs them, instead of fixed bins.
+ * Every inner node halves the cell of its parent along one feature, and every leaf is a state, identified by a row
+ * from 0 to the maximum number of leaves. The learner decides when a leaf is split and when two sibling leaves are
+ * merged back; the discretizer keeps the tree within its number of leaves and never splits a cell narrower than one
+ * tile of its feature.
+ * <p>
+ * The nodes live in flat arrays, children being allocated in pairs, so a lookup walks from the root to a leaf in
+ * O(depth) without allocating, and splits and merges recycle the nodes and rows they free.
+ * <p>
+ * The tree is saved as the rows of a {@link QTableFile}, in preorder: {@code LEAF} for a leaf, and
+ * {@code SPLIT:feature:threshold} for an inner node.
+ */
+public class AdaptiveDiscretizer {
+
+    private static final String LEAF = "LEAF";
+    private static final String SPLIT = "SPLIT";
+
+    private final TileCoder.Feature[] features;
+    private final int maxLeaves;
+    private final int[] splitFeatures; // The feature an inner node splits, -1 for a leaf
+    private final double[] thresholds; // The readings of an inner node from which the upper child is taken
+    private final int[] children; // The lower child of an inner node, the upper one being next to it
+    private final int[] parents; // The parent of each node, -1 for the root
+    private final int[] rows; // The row of each leaf
+    private final int[] leaves; // The leaf node of each row in use
+    private final double[] lows; // The lower end of the cell of a node along a feature is at node * features + feature
+    private final double[] highs; // The upper end, in the same order
+    private final int[] freePairs; // Stack of the free pairs of nodes, by lower node
+    private final int[] freeRows; // Stack of the free rows
+    private int freePairCount;
+    private int freeRowCount;
+    private int leafCount;
+    private final double[] point; // The readings of the last lookup
+
+    /**
+     * Constructs a new AdaptiveDiscretizer with a single state covering the whole range of the features.
+     *
+     * @param features  The features the states cover.
+     * @param maxLeaves The maximum number of states.
+     */
+    public AdaptiveDiscretizer(TileCoder.Feature[] features, int maxLeaves) {
+        this.features = features.clone();
+        this.maxLeaves = maxLeaves;
+        int nodes = 2 * maxLeaves - 1;
+        this.splitFeatures = new int[nodes];
+        this.thresholds = new double[nodes];
+        this.children = new int[nodes];
+        this.parents = new int[nodes];
+        this.rows = new int[nodes];
+        this.leaves = new int[maxLeaves];
+        this.lows = new double[nodes * features.length];
+        this.highs = new double[nodes * features.length];
+        this.freePairs = new int[maxLeaves];
+        this.freeRows = new int[maxLeaves];
+        this.point = new double[features.length];
+        this.clear();
+    }
+
+    /**
+     * Merges every state back into the single state of the whole range.
+     */
+    public void clear() {
+        this.freePairCount = 0;
+        for (int pair = this.splitFeatures.length - 2; pair >= 1; pair -= 2)
+            this.freePairs[this.freePairCount++] = pair;
+        this.freeRowCount = 0;
+        for (int row = this.maxLeaves - 1; row >= 1; row--)
+            this.freeRows[this.freeRowCount++] = row;
+        this.splitFeatures[0] = -1;
+        this.parents[0] = -1;
+        this.rows[0] = 0;
+        this.leaves[0] = 0;
+        for (int i = 0; i < this.features.length; i++) {
+            this.lows[i] = this.features[i].getMin();
+            this.highs[i] = this.features[i].getMax();
+        }
+        this.leafCount = 1;
+    }
+
+    /**
+     * Finds the state of the current sensors. The readings are kept until the next lookup, see {@link #getPoint}.
+     *
+     * @param sensors The current sensor model of the car.
+     *
+     * @return The row of the state.
+     */
+    public int find(SensorModel sensors) {
+        for (int i = 0; i < this.features.length; i++)
+            this.point[i] = this.features[i].read(sensors);
+        return this.find(this.point);
+    }
+
+    /**
+     * Finds the state of a point.
+     *
+     * @param point The reading of every feature, within its range.
+     *
+     * @return The row of the state.
+     */
+    public int find(double[] point) {
+        int node = 0;
+        int feature;
+        while ((feature = this.splitFeatures[node]) >= 0)
+            node = point[feature] < this.thresholds[node] ? this.children[node] : this.children[node] + 1;
+        return this.rows[node];
+    }
+
+    /**
+     * Retrieves the readings of the last lookup of sensors. The array is reused by every lookup.
+     *
+     * @return The reading of every feature.
+     */
+    public double[] getPoint() {
+        return this.point;
+    }
+
+    /**
+     * Computes the middle of the cell of a state along a feature, where a split would cut it.
+     *
+     * @param row     The row of the state.
+     * @param feature The index of the feature.
+     *
+     * @return The middle of the cell.
+     */
+    public double middle(int row, int feature) {
+        int cell = this.leaves[row] * this.features.length + feature;
+        return (this.lows[cell] + this.highs[cell]) / 2;
+    }
+
+    /**
+     * Computes the width of the cell of a state along a feature, relative to the range of the feature.
+     *
+     * @param row     The row of the state.
+     * @param feature The index of the feature.
+     *
+     * @return The width, 1 for a cell over the whole range.
+     */
+    public double width(int row, int feature) {
+        int cell = this.leaves[row] * this.features.length + feature;
+        TileCoder.Feature range = this.features[feature];
+        return (this.highs[cell] - this.lows[cell]) / (range.getMax() - range.getMin());
+    }
+
+    /**
+     * Tells whether a state can be split along a feature: the tree has room for another leaf and both halves would be
+     * at least one tile wide.
+     *
+     * @param row     The row of the state.
+     * @param feature The index of the feature.
+     *
+     * @return True if the state can be split.
+     */
+    public boolean canSplit(int row, int feature) {
+        return this.leafCount < this.maxLeaves
+                && this.width(row, feature) * this.features[feature].getTiles() >= 2 - 1e-9;
+    }
+
+    /**
+     * Splits a state in two halves along a feature. The lower half keeps the row of the state.
+     *
+     * @param row     The row of the state.
+     * @param feature The index of the feature.
+     *
+     * @return The row of the upper half, or -1 if the state cannot be split.
+     */
+    public int split(int row, int feature) {
+        if (!this.canSplit(row, feature))
+            return -1;
+        int node = this.leaves[row];
+        int lower = this.freePairs[--this.freePairCount];
+        int upper = lower + 1;
+        int newRow = this.freeRows[--this.freeRowCount];
+        double middle = this.middle(row, feature);
+
+        int stride = this.features.length;
+        System.arraycopy(this.lows, node * stride, this.lows, lower * stride, stride);
+        System.arraycopy(this.highs, node * stride, this.highs, lower * stride, stride);
+        System.arraycopy(this.lows, node * stride, this.lows, upper * stride, stride);
+        System.arraycopy(this.highs, node * stride, this.highs, upper * stride, stride);
+        this.highs[lower * stride + feature] = middle;
+        this.lows[upper * stride + feature] = middle;
+
+        this.splitFeatures[lower] = -1;
+        this.splitFeatures[upper] = -1;
+        this.parents[lower] = node;
+        this.parents[upper] = node;
+        this.rows[lower] = row;
+        this.rows[upper] = newRow;
+        this.leaves[row] = lower;
+        this.leaves[newRow] = upper;
+        this.children[node] = lower;
+        this.thresholds[node] = middle;
+        this.splitFeatures[node] = feature; // Last, so the node stays a leaf until its children are ready
+        this.leafCount++;
+        return newRow;
+    }
+
+    /**
+     * Finds the sibling of a state, when it is a state too.
+     *
+     * @param row The row of the state.
+     *
+     * @return The row of the sibling, or -1 if the state is the root or its sibling is split.
+     */
+    public int sibling(int row) {
+        int node = this.leaves[row];
+        if (node == 0)
+            return -1;
+        int lower = this.children[this.parents[node]];
+        int sibling = node == lower ? lower + 1 : lower;
+        return this.splitFeatures[sibling] < 0 ? this.rows[sibling] : -1;
+    }
+
+    /**
+     * Merges a state with its sibling into their parent, which takes the row of the state.
+     *
+     * @param row The row of the state, whose sibling must be a state too.
+     *
+     * @return The row freed by the sibling.
+     */
+    public int merge(int row) {
+        int sibling = this.sibling(row);
+        if (sibling < 0)
+            throw new IllegalArgumentException("The sibling of row " + row + " is not a leaf");
+        int parent = this.parents[this.leaves[row]];
+        this.freePairs[this.freePairCount++] = this.children[parent];
+        this.freeRows[this.freeRowCount++] = sibling;
+        this.rows[parent] = row;
+        this.leaves[row] = parent;
+        this.splitFeatures[parent] = -1;
+        this.leafCount--;
+        return sibling;
+    }
+
+    /**
+     * Retrieves the number of states.
+     *
+     * @return The number of leaves.
+     */
+    public int getLeafCount() {
+        return this.leafCount;
+    }
+
+    /**
+     * Retrieves the maximum number of states, which is also the number of rows.
+     *
+     * @return The maximum number of leaves.
+     */
+    public int getMaxLeaves() {
+        return this.maxLeaves;
+    }
+
+    /**
+     * Retrieves the number of features.
+     *
+     * @return The number of features.
+     */
+    public int getFeatureCount() {
+        return this.features.length;
+    }
+
+    /**
+     * Computes the depth of the deepest state.
+     *
+     * @return The depth, 0 for a single state.
+     */
+    public int getDepth() {
+        int[] nodes = new int[this.leafCount];
+        int[] depths = new int[this.leafCount];
+        int size = 0;
+        int depth = 0;
+        nodes[size] = 0;
+        depths[size++] = 0;
+        while (size > 0) {
+            int node = nodes[--size];
+            int nodeDepth = depths[size];
+            depth = Math.max(depth, nodeDepth);
+            if (this.splitFeatures[node] >= 0) {
+                nodes[size] = this.children[node];
+                depths[size++] = nodeDepth + 1;
+                nodes[size] = this.children[node] + 1;
+                depths[size++] = nodeDepth + 1;
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * Describes the tree in preorder, one name per node.
+     *
+     * @param leafRows The row of each node, filled with -1 for the inner nodes; as long as the number of nodes.
+     *
+     * @return The name of each node.
+     */
+    public String[] describe(int[] leafRows) {
+        String[] names = new String[2 * this.leafCount - 1];
+        int[] stack = new int[names.length];
+        int size = 0;
+        stack[size++] = 0;
+        for (int i = 0; i < names.length; i++) {
+            int node = stack[--size];
+            int feature = this.splitFeatures[node];
+            if (feature < 0) {
+                names[i] = LEAF;
+                leafRows[i] = this.rows[node];
+            } else {
+                names[i] = SPLIT + ":" + this.features[feature].getName() + ":" + this.thresholds[node];
+                leafRows[i] = -1;
+                stack[size++] = this.children[node] + 1;
+                stack[size++] = this.children[node];
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Rebuilds the tree from a description made by {@link #describe}, replacing the current one.
+     *
+     * @param names The name of each node, in preorder.
+     *
+     * @return The row given to each node, -1 for the inner nodes.
+     *
+     * @throws IllegalArgumentException If the description is malformed, names an unknown feature or does not fit.
+     */
+    public int[] rebuild(String[] names) {
+        this.clear();
+        int[] leafRows = new int[names.length];
+        int[] stack = new int[names.length + 1]; // The rows of the leaves still to be described
+        int size = 0;
+        stack[size++] = 0;
+        for (int i = 0; i < names.length; i++) {
+            if (size == 0)
+                throw new IllegalArgumentException("Unexpected node " + i + " after the end of the tree");
+            int row = stack[--size];
+            if (names[i].equals(LEAF)) {
+                leafRows[i] = row;
+                continue;
+            }
+            String[] parts = names[i].split(":");
+            int feature = parts.length == 3 && parts[0].equals(SPLIT) ? this.featureIndex(parts[1]) : -1;
+            if (feature < 0)
+                throw new IllegalArgumentException("Unknown node " + names[i]);
+            double threshold = Double.parseDouble(parts[2]);
+            if (Math.abs(threshold - this.middle(row, feature)) > 1e-9 * (1 + Math.abs(threshold)))
+                throw new IllegalArgumentException("Node " + names[i] + " does not halve its cell");
+            int upper = this.split(row, feature);
+            if (upper < 0)
+                throw new IllegalArgumentException("Node " + names[i] + " does not fit in " + this.maxLeaves
+                        + " leaves");
+            leafRows[i] = -1;
+            stack[size++] = upper;
+            stack[size++] = row;
+        }
+        if (size != 0)
+            throw new IllegalArgumentException("The tree ends before all of its nodes are described");
+        return leafRows;
+    }
+
+    private int featureIndex(String name) {
+        for (int i = 0; i < this.features.length; i++) {
+            if (this.features[i].getName().equals(name))
+                return i;
+        }
+        return -1;
+    }
+}
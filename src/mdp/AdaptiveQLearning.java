@@ -0,0 +1,388 @@
+package mdp;
+
+import torcs.Constants;
+import torcs.SensorModel;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static torcs.Constants.DISCOUNT_FACTOR;
+import static torcs.Constants.LEARNING_RATE;
+
+/**
+ * The AdaptiveQLearning class is tabular Q-learning over the states of an {@link AdaptiveDiscretizer}, which it
+ * refines as it learns: resolution goes where the values are still inconsistent or the car spends its time, instead
+ * of being fixed up front.
+ * <p>
+ * Every state keeps running statistics of the TD errors of its updates: their variance, and their mean in each half
+ * of its cell along every feature. Once a state has {@link #MIN_SAMPLES} of them, it is split when the variance
+ * passes a threshold, meaning one value cannot fit the whole cell, or when its number of updates since it was
+ * created passes another one. It is split along the feature whose halves disagree most, and both halves start from
+ * its values. A state that is not split is merged with its sibling when both have enough samples, the same greedy
+ * action and values within a tolerance, which frees a state for the parts of the space that need it.
+ * <p>
+ * A tick costs O(depth + features + actions) and does not allocate. The tree and its values are saved in the binary
+ * format of {@link QTableFile}, one row per node.
+ *
+ * @param <A> The enum of the actions of the control system.
+ */
+public class AdaptiveQLearning<A extends Enum<A>> implements SensorQAgent<A> {
+
+    /**
+     * The number of TD errors a state needs before it may be split or merged.
+     */
+    public static final int MIN_SAMPLES = 100;
+
+    private final AdaptiveDiscretizer discretizer;
+    private final A[] possibleActions; // Every action, in ordinal order
+    private final int actionCount;
+    private final int featureCount;
+    private final double splitVariance;
+    private final long splitVisits;
+    private final double mergeTolerance;
+    private final String system;
+    private final String path;
+
+    private final double[] qValues; // The value of a row and action is at row * actions + action
+    private final long[] visits; // The number of updates of each value, in the same order
+    private final long[] samples; // The number of TD errors of each row since it was created
+    private final double[] errorMeans; // The mean TD error of each row
+    private final double[] errorSquares; // The sum of squared deviations of the TD errors of each row
+    private final double[] halfSums; // The TD errors of a row in the lower or upper half along a feature, summed
+    private final long[] halfCounts; // The number of those TD errors, in the same order
+    private final double[] previousPoint; // The readings of the previous tick
+    private final double[] currentPoint; // The readings of the current tick
+    private int previousRow;
+    private boolean hasPrevious; // Indicates whether the previous tick belongs to this episode
+    private long splits;
+    private long merges;
+    private double epsilon;
+    private final Random random = new Random(System.currentTimeMillis());
+
+    /**
+     * Constructs a new AdaptiveQLearning, loading its tree and values if they have been saved before.
+     *
+     * @param system         The name of the control system, saved with the values.
+     * @param discretizer    The discretizer of the sensors, refined by this learner.
+     * @param actionType     The enum of the actions.
+     * @param path           The file of the tree and values.
+     * @param splitVariance  The variance of the TD errors of a state above which it is split.
+     * @param splitVisits    The number of updates of a state, since it was created, from which it is split whatever
+     *                       its variance.
+     * @param mergeTolerance The largest difference between the values of two siblings that are merged.
+     */
+    public AdaptiveQLearning(String system, AdaptiveDiscretizer discretizer, Class<A> actionType, String path,
+                             double splitVariance, long splitVisits, double mergeTolerance) {
+        this.system = system;
+        this.discretizer = discretizer;
+        this.possibleActions = actionType.getEnumConstants();
+        this.actionCount = this.possibleActions.length;
+        this.featureCount = discretizer.getFeatureCount();
+        this.splitVariance = splitVariance;
+        this.splitVisits = splitVisits;
+        this.mergeTolerance = mergeTolerance;
+        this.path = path;
+
+        int rows = discretizer.getMaxLeaves();
+        this.qValues = new double[rows * this.actionCount];
+        this.visits = new long[this.qValues.length];
+        this.samples = new long[rows];
+        this.errorMeans = new double[rows];
+        this.errorSquares = new double[rows];
+        this.halfSums = new double[rows * this.featureCount * 2];
+        this.halfCounts = new long[this.halfSums.length];
+        this.previousPoint = new double[this.featureCount];
+        this.currentPoint = new double[this.featureCount];
+        if (path != null && new File(path).exists())
+            this.loadTable();
+    }
+
+    private void loadTable() {
+        try {
+            QTableFile.MappedTable table = QTableFile.mapBinary(this.path);
+            int[] rows = this.discretizer.rebuild(table.states);
+            int[] columns = new int[table.actions.length]; // The action ordinal of each column, -1 if unknown
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = -1;
+                for (A action : this.possibleActions) {
+                    if (action.name().equals(table.actions[i]))
+                        columns[i] = action.ordinal();
+                }
+            }
+            for (int node = 0; node < rows.length; node++) {
+                if (rows[node] < 0)
+                    continue;
+                for (int i = 0; i < columns.length; i++) {
+                    if (columns[i] >= 0) {
+                        int cell = rows[node] * this.actionCount + columns[i];
+                        this.qValues[cell] = table.value(node * columns.length + i);
+                        this.visits[cell] = table.visits(node * columns.length + i);
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("ERROR!!! -> Could not load adaptive tablaQ from binary file...");
+            e.printStackTrace();
+            this.clear();
+        }
+    }
+
+    @Override
+    public A update(SensorModel sensors, A actionPerformed, double reward) {
+        int row = this.discretizer.find(sensors);
+        System.arraycopy(this.discretizer.getPoint(), 0, this.currentPoint, 0, this.featureCount);
+
+        if (this.hasPrevious) {
+            int cell = this.previousRow * this.actionCount + actionPerformed.ordinal();
+            double error = reward + DISCOUNT_FACTOR * this.maxValue(row) - this.qValues[cell];
+            this.qValues[cell] = Constants.fastRound(this.qValues[cell] + LEARNING_RATE * error, 8);
+            this.visits[cell]++;
+            // A split or merge may have moved the current point to another row
+            if (this.observe(this.previousRow, this.previousPoint, error))
+                row = this.discretizer.find(this.currentPoint);
+        }
+        System.arraycopy(this.currentPoint, 0, this.previousPoint, 0, this.featureCount);
+        this.previousRow = row;
+        this.hasPrevious = true;
+
+        if (this.random.nextDouble() > this.epsilon)
+            return this.possibleActions[this.bestAction(row)];
+        return this.possibleActions[this.random.nextInt(this.actionCount)];
+    }
+
+    @Override
+    public A nextOnlyBestAction(SensorModel sensors) {
+        return this.possibleActions[this.bestAction(this.discretizer.find(sensors))];
+    }
+
+    @Override
+    public void endEpisode() {
+        this.hasPrevious = false;
+    }
+
+    /**
+     * Adds a TD error to the statistics of a state, then splits or merges the state if they call for it.
+     *
+     * @param row   The row of the state.
+     * @param point The readings the TD error was measured at.
+     * @param error The TD error.
+     *
+     * @return True if the tree has changed.
+     */
+    private boolean observe(int row, double[] point, double error) {
+        long count = ++this.samples[row];
+        double deviation = error - this.errorMeans[row];
+        this.errorMeans[row] += deviation / count;
+        this.errorSquares[row] += deviation * (error - this.errorMeans[row]);
+        for (int feature = 0; feature < this.featureCount; feature++) {
+            int half = (row * this.featureCount + feature) * 2
+                    + (point[feature] < this.discretizer.middle(row, feature) ? 0 : 1);
+            this.halfSums[half] += error;
+            this.halfCounts[half]++;
+        }
+        if (count < MIN_SAMPLES)
+            return false;
+
+        if (this.errorSquares[row] / (count - 1) > this.splitVariance || count >= this.splitVisits) {
+            int feature = this.splitFeature(row);
+            int upper = feature >= 0 ? this.discretizer.split(row, feature) : -1;
+            if (upper >= 0) {
+                System.arraycopy(this.qValues, row * this.actionCount, this.qValues, upper * this.actionCount,
+                        this.actionCount);
+                System.arraycopy(this.visits, row * this.actionCount, this.visits, upper * this.actionCount,
+                        this.actionCount);
+                this.resetStatistics(row);
+                this.resetStatistics(upper);
+                this.splits++;
+                return true;
+            }
+        }
+
+        int sibling = this.discretizer.sibling(row);
+        if (sibling >= 0 && this.samples[sibling] >= MIN_SAMPLES && this.agree(row, sibling)) {
+            for (int action = 0; action < this.actionCount; action++) {
+                int cell = row * this.actionCount + action;
+                int other = sibling * this.actionCount + action;
+                long total = this.visits[cell] + this.visits[other];
+                this.qValues[cell] = total == 0 ? (this.qValues[cell] + this.qValues[other]) / 2
+                        : (this.qValues[cell] * this.visits[cell] + this.qValues[other] * this.visits[other]) / total;
+                this.visits[cell] = total;
+            }
+            this.discretizer.merge(row);
+            this.resetStatistics(row);
+            this.merges++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Chooses the feature to split a state along: the one whose halves have the most different mean TD errors, or the
+     * widest one if no feature has TD errors in both halves.
+     *
+     * @param row The row of the state.
+     *
+     * @return The index of the feature, or -1 if the state cannot be split.
+     */
+    private int splitFeature(int row) {
+        int best = -1;
+        double bestScore = -1;
+        for (int feature = 0; feature < this.featureCount; feature++) {
+            if (!this.discretizer.canSplit(row, feature))
+                continue;
+            int half = (row * this.featureCount + feature) * 2;
+            double score;
+            if (this.halfCounts[half] > 0 && this.halfCounts[half + 1] > 0)
+                score = 1 + Math.abs(this.halfSums[half] / this.halfCounts[half]
+                        - this.halfSums[half + 1] / this.halfCounts[half + 1]);
+            else
+                score = this.discretizer.width(row, feature); // Below 1, so any measured difference comes first
+            if (score > bestScore) {
+                bestScore = score;
+                best = feature;
+            }
+        }
+        return best;
+    }
+
+    private boolean agree(int row, int sibling) {
+        if (this.bestValueAction(row) != this.bestValueAction(sibling))
+            return false;
+        for (int action = 0; action < this.actionCount; action++) {
+            double difference = this.qValues[row * this.actionCount + action]
+                    - this.qValues[sibling * this.actionCount + action];
+            if (Math.abs(difference) > this.mergeTolerance)
+                return false;
+        }
+        return true;
+    }
+
+    private void resetStatistics(int row) {
+        this.samples[row] = 0;
+        this.errorMeans[row] = 0;
+        this.errorSquares[row] = 0;
+        int half = row * this.featureCount * 2;
+        Arrays.fill(this.halfSums, half, half + this.featureCount * 2, 0.0);
+        Arrays.fill(this.halfCounts, half, half + this.featureCount * 2, 0);
+    }
+
+    private double maxValue(int row) {
+        double maxValue = this.qValues[row * this.actionCount];
+        for (int action = 1; action < this.actionCount; action++)
+            maxValue = Math.max(maxValue, this.qValues[row * this.actionCount + action]);
+        return maxValue;
+    }
+
+    private int bestValueAction(int row) {
+        int best = 0;
+        for (int action = 1; action < this.actionCount; action++) {
+            if (this.qValues[row * this.actionCount + action] > this.qValues[row * this.actionCount + best])
+                best = action;
+        }
+        return best;
+    }
+
+    /**
+     * Finds the greedy action of a state, choosing uniformly among ties with reservoir sampling.
+     *
+     * @param row The row of the state.
+     *
+     * @return The ordinal of the action.
+     */
+    private int bestAction(int row) {
+        double maxValue = this.qValues[row * this.actionCount];
+        int best = 0;
+        int ties = 1;
+        for (int i = 1; i < this.actionCount; i++) {
+            double value = this.qValues[row * this.actionCount + i];
+            if (value > maxValue) {
+                maxValue = value;
+                best = i;
+                ties = 1;
+            } else if (value == maxValue && this.random.nextInt(++ties) == 0) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Sets the probability of choosing a random action instead of the greedy one.
+     *
+     * @param epsilon The exploration rate.
+     */
+    public void setEpsilon(double epsilon) {
+        this.epsilon = epsilon;
+    }
+
+    /**
+     * Retrieves the discretizer, for instance to report its number of states and depth.
+     *
+     * @return The discretizer.
+     */
+    public AdaptiveDiscretizer getDiscretizer() {
+        return this.discretizer;
+    }
+
+    /**
+     * Retrieves the number of states split since this learner was created.
+     *
+     * @return The number of splits.
+     */
+    public long getSplits() {
+        return this.splits;
+    }
+
+    /**
+     * Retrieves the number of pairs of states merged since this learner was created.
+     *
+     * @return The number of merges.
+     */
+    public long getMerges() {
+        return this.merges;
+    }
+
+    /**
+     * Goes back to a single state with every value at 0, as for a learner that has never been trained.
+     */
+    public void clear() {
+        this.discretizer.clear();
+        Arrays.fill(this.qValues, 0.0);
+        Arrays.fill(this.visits, 0);
+        for (int row = 0; row < this.samples.length; row++)
+            this.resetStatistics(row);
+        this.splits = 0;
+        this.merges = 0;
+        this.endEpisode();
+    }
+
+    /**
+     * Saves the tree and its values in the binary format, replacing the previous file atomically.
+     */
+    public void saveTable() {
+        int[] rows = new int[2 * this.discretizer.getLeafCount() - 1];
+        String[] nodeNames = this.discretizer.describe(rows);
+        double[] values = new double[rows.length * this.actionCount];
+        long[] nodeVisits = new long[values.length];
+        for (int node = 0; node < rows.length; node++) {
+            if (rows[node] < 0)
+                continue;
+            System.arraycopy(this.qValues, rows[node] * this.actionCount, values, node * this.actionCount,
+                    this.actionCount);
+            System.arraycopy(this.visits, rows[node] * this.actionCount, nodeVisits, node * this.actionCount,
+                    this.actionCount);
+        }
+        String[] actionNames = new String[this.actionCount];
+        for (A action : this.possibleActions)
+            actionNames[action.ordinal()] = action.name();
+        try {
+            QTableFile.writeBinary(this.path, new QTableFile.Table(this.system, nodeNames, actionNames, values,
+                    nodeVisits));
+        } catch (IOException e) {
+            System.out.println("ERROR!!! -> Could not save adaptive tableQ in binary file...");
+            e.printStackTrace();
+        }
+    }
+}
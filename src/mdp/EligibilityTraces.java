@@ -0,0 +1,117 @@
+package mdp;
+
+import java.util.Arrays;
+
+/**
+ * The EligibilityTraces class holds the eligibility traces of a Q-table as a sparse set of active cells.
+ * Traces decay geometrically and are dropped once they fall below a threshold, so only the last few visited cells are
+ * active and every operation costs O(active traces) rather than O(states * actions).
+ * <p>
+ * The active cells are kept in a dense list, and every cell knows its position in the list, so a cell is added,
+ * found and removed in constant time.
+ */
+public class EligibilityTraces {
+
+    private static final double MIN_TRACE = 1e-3; // Traces below this value are dropped
+
+    private final int[] cells; // The active cells, densely packed
+    private final double[] traces; // The trace of each active cell, in the same order
+    private final int[] positions; // The position of each cell in the active list, -1 if it is not active
+    private int size; // The number of active cells
+
+    /**
+     * Constructs a new EligibilityTraces with every trace at 0.
+     *
+     * @param tableSize The number of cells of the Q-table.
+     */
+    public EligibilityTraces(int tableSize) {
+        this.cells = new int[tableSize];
+        this.traces = new double[tableSize];
+        this.positions = new int[tableSize];
+        Arrays.fill(this.positions, -1);
+    }
+
+    /**
+     * Sets the trace of a cell, making it active.
+     *
+     * @param cell  The index of the cell.
+     * @param trace The trace.
+     */
+    public void set(int cell, double trace) {
+        int position = positions[cell];
+        if (position < 0) {
+            position = size++;
+            positions[cell] = position;
+            cells[position] = cell;
+        }
+        traces[position] = trace;
+    }
+
+    /**
+     * Multiplies every trace by a factor and drops the ones that become negligible.
+     *
+     * @param factor The decay factor, the discount factor times lambda.
+     */
+    public void decay(double factor) {
+        int i = 0;
+        while (i < size) {
+            double trace = traces[i] * factor;
+            if (trace < MIN_TRACE) {
+                remove(i);
+            } else {
+                traces[i] = trace;
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Drops every trace.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++)
+            positions[cells[i]] = -1;
+        size = 0;
+    }
+
+    /**
+     * Retrieves the number of active cells.
+     *
+     * @return The number of active cells.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Retrieves an active cell.
+     *
+     * @param position The position in the active list, below {@link #size()}.
+     *
+     * @return The index of the cell.
+     */
+    public int cell(int position) {
+        return cells[position];
+    }
+
+    /**
+     * Retrieves the trace of an active cell.
+     *
+     * @param position The position in the active list, below {@link #size()}.
+     *
+     * @return The trace.
+     */
+    public double trace(int position) {
+        return traces[position];
+    }
+
+    private void remove(int position) {
+        positions[cells[position]] = -1;
+        int last = --size;
+        if (position != last) {
+            cells[position] = cells[last];
+            traces[position] = traces[last];
+            positions[cells[position]] = position;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package mdp;
+
+import torcs.ActionEncoder;
+
+/**
+ * The EpisodeStatistics class is one row of the training statistics: how an episode of a learning controller went.
+ * It is a reusable holder; the controller fills the fields at the end of every episode and hands it to a
+ * {@link StatisticsSink}.
+ */
+public class EpisodeStatistics {
+
+    /**
+     * The CSV header matching {@link #write}.
+     */
+    public static final String HEADER = "episode,ticks,laps,distanceRaced,highSpeed,completeLap,offTrack,timeOut";
+
+    /**
+     * The maximum number of bytes {@link #write} produces.
+     */
+    public static final int MAX_ROW_SIZE = 256;
+
+    public long episode = 0; // The number of the episode, starting from 1
+    public long ticks = 0; // The number of control ticks of the episode
+    public int laps = 0; // The number of laps completed
+    public double distanceRaced = 0; // The distance raced, in meters
+    public double highSpeed = 0; // The highest speed reached, in km/h
+    public boolean completeLap = false; // Indicates whether the episode ended by completing a lap
+    public boolean offTrack = false; // Indicates whether the episode ended by leaving the track
+    public boolean timeOut = false; // Indicates whether the episode ended by running out of time
+
+    /**
+     * Writes the row as a CSV line, without allocating.
+     *
+     * @param buffer The buffer to write to, with at least {@link #MAX_ROW_SIZE} bytes left.
+     * @param pos    The position of the first byte to write.
+     *
+     * @return The position after the last byte written, including the line feed.
+     */
+    public int write(byte[] buffer, int pos) {
+        pos = ActionEncoder.writeLong(episode, buffer, pos);
+        buffer[pos++] = ',';
+        pos = ActionEncoder.writeLong(ticks, buffer, pos);
+        buffer[pos++] = ',';
+        pos = ActionEncoder.writeLong(laps, buffer, pos);
+        buffer[pos++] = ',';
+        pos = ActionEncoder.writeDouble(distanceRaced, buffer, pos);
+        buffer[pos++] = ',';
+        pos = ActionEncoder.writeDouble(highSpeed, buffer, pos);
+        buffer[pos++] = ',';
+        buffer[pos++] = (byte) (completeLap ? '1' : '0');
+        buffer[pos++] = ',';
+        buffer[pos++] = (byte) (offTrack ? '1' : '0');
+        buffer[pos++] = ',';
+        buffer[pos++] = (byte) (timeOut ? '1' : '0');
+        buffer[pos++] = '\n';
+        return pos;
+    }
+}
@@ -0,0 +1,114 @@
+package mdp;
+
+import java.lang.invoke.VarHandle;
+import java.util.Random;
+
+/**
+ * The ExperienceReplay class is a fixed-capacity ring buffer of transitions stored in parallel primitive arrays, so
+ * recording a transition allocates nothing.
+ * <p>
+ * One thread adds transitions while another samples them. The sampler validates every transition it reads, as a
+ * sequence lock would: a slot that the writer started to overwrite while it was being read is discarded.
+ */
+public class ExperienceReplay {
+
+    private final int capacity;
+    private final int mask; // capacity - 1, the capacity being a power of two
+    private final int[] states;
+    private final int[] actions;
+    private final double[] rewards;
+    private final int[] nextStates;
+    private final boolean[] terminals;
+    private volatile long written; // The number of transitions ever added
+
+    /* The transition read by the last successful call to sample */
+    public int state;
+    public int action;
+    public double reward;
+    public int nextState;
+    public boolean terminal;
+
+    /**
+     * Constructs a new empty ExperienceReplay.
+     *
+     * @param capacity The number of transitions kept, rounded up to a power of two.
+     */
+    public ExperienceReplay(int capacity) {
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = this.capacity - 1;
+        this.states = new int[this.capacity];
+        this.actions = new int[this.capacity];
+        this.rewards = new double[this.capacity];
+        this.nextStates = new int[this.capacity];
+        this.terminals = new boolean[this.capacity];
+    }
+
+    /**
+     * Adds a transition, replacing the oldest one when the buffer is full. Only one thread may add transitions.
+     *
+     * @param state     The ordinal of the state the action was performed in.
+     * @param action    The ordinal of the action performed.
+     * @param reward    The reward received.
+     * @param nextState The ordinal of the state reached.
+     * @param terminal  True if the episode ended with this transition.
+     */
+    public void add(int state, int action, double reward, int nextState, boolean terminal) {
+        long index = written;
+        /*
+         * A sampler that reads any of the stores below must also see written at index, or it would accept a slot
+         * already being overwritten. The release store of written by the previous add only orders the stores before
+         * it, and later plain stores may still move ahead of it, so keep them behind it explicitly.
+         */
+        VarHandle.storeStoreFence();
+        int slot = (int) index & mask;
+        states[slot] = state;
+        actions[slot] = action;
+        rewards[slot] = reward;
+        nextStates[slot] = nextState;
+        terminals[slot] = terminal;
+        written = index + 1;
+    }
+
+    /**
+     * Reads a transition chosen uniformly among the ones in the buffer into the public fields.
+     *
+     * @param random The random generator of the calling thread.
+     *
+     * @return True if a transition was read, false if the buffer is empty or the chosen slot was overwritten while
+     * being read.
+     */
+    public boolean sample(Random random) {
+        long end = written;
+        long size = Math.min(end, capacity);
+        if (size == 0)
+            return false;
+        long index = end - 1 - (long) random.nextInt((int) size);
+        int slot = (int) index & mask;
+        state = states[slot];
+        action = actions[slot];
+        reward = rewards[slot];
+        nextState = nextStates[slot];
+        terminal = terminals[slot];
+        VarHandle.acquireFence();
+        // The slot is rewritten when transition index + capacity is added, which starts once written reaches it
+        return written < index + capacity;
+    }
+
+    /**
+     * Retrieves the number of transitions ever added.
+     *
+     * @return The number of transitions.
+     */
+    public long getWrittenCount() {
+        return written;
+    }
+
+    /**
+     * Retrieves the number of transitions the buffer can hold.
+     *
+     * @return The capacity.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+}
@@ -77,6 +77,38 @@ public class GearControl {
             return gear == current.getGear() ? 100.0 : -100.0;
     }
 
+    /**
+     * The StateEncoder of the gears. The reward judges the gear chosen on the previous tick, so the encoder keeps the
+     * gear and state of the previous tick instead of a reference to its sensor model, which may be recycled.
+     */
+    public static class Encoder implements StateEncoder<States, Actions> {
+        private States previousState; // The state of the previous tick
+        private int previousGear;
+        private States state = States.NEUTRAL_REVERSE; // The state of the last encoded tick
+        private int gear;
+
+        public States encode(SensorModel sensors) {
+            previousState = state;
+            previousGear = gear;
+            gear = sensors.getGear();
+            state = evaluateGearState(sensors);
+            return state;
+        }
+
+        public double reward(Actions action) {
+            switch (previousState) {
+                case NEUTRAL_REVERSE:
+                    return gear == 1 ? 100.0 : -100.0;
+                case ENOUGH_RPM_UP:
+                    return previousGear < gear ? 100.0 : -100.0;
+                case LOW_RPM:
+                    return previousGear > gear ? 100.0 : -100.0;
+                default:
+                    return previousGear == gear ? 100.0 : -100.0;
+            }
+        }
+    }
+
     /**
      * The gear control actions.
      */
@@ -0,0 +1,55 @@
+package mdp;
+
+import torcs.SensorModel;
+
+/**
+ * The JointStateEncoder class maps the sensors of one tick to the joint state of several control systems, such as the
+ * steering state conditioned on speed and gear, packed by a {@link StateKey} into the {@code long} key of a
+ * {@link SparseQLearning}.
+ * Each component is encoded by the {@link StateEncoder} of its control system, so the joint state uses exactly the
+ * same bins as the separate tables. Like its encoders, it belongs to a single controller.
+ */
+public class JointStateEncoder {
+
+    private final StateKey key;
+    private final StateEncoder<?, ?>[] encoders;
+
+    /**
+     * Constructs a new JointStateEncoder.
+     *
+     * @param stateTypes The enums of the states of the components, in the order of the encoders.
+     * @param encoders   The encoder of each component.
+     *
+     * @throws IllegalArgumentException If there is not one encoder per component, or the components need more than
+     *                                  63 bits.
+     */
+    public JointStateEncoder(Class<?>[] stateTypes, StateEncoder<?, ?>... encoders) {
+        if (stateTypes.length != encoders.length)
+            throw new IllegalArgumentException(stateTypes.length + " components for " + encoders.length + " encoders");
+        this.key = new StateKey(stateTypes);
+        this.encoders = encoders.clone();
+    }
+
+    /**
+     * Computes the joint state of the current tick. Every component encoder is called once.
+     *
+     * @param sensors The current sensor model of the car.
+     *
+     * @return The key of the joint state.
+     */
+    public long encode(SensorModel sensors) {
+        long state = 0;
+        for (int i = 0; i < this.encoders.length; i++)
+            state = this.key.set(state, i, this.encoders[i].encode(sensors).ordinal());
+        return state;
+    }
+
+    /**
+     * Retrieves the packing of the keys.
+     *
+     * @return The state key.
+     */
+    public StateKey getKey() {
+        return this.key;
+    }
+}
@@ -0,0 +1,97 @@
+package mdp;
+
+/**
+ * The Kernels interface holds the two vector operations {@link NeuralNetwork} is built on, so they can run on the
+ * SIMD units through the incubating Vector API when it is available, and as plain loops otherwise.
+ * <p>
+ * The Vector API lives in the {@code jdk.incubator.vector} module, which the JVM only resolves when asked to with
+ * {@code --add-modules jdk.incubator.vector}, both when compiling and when running. So the vector kernels live in
+ * their own source directory, {@code src-vector}, the only one compiled with that option, and {@code src} builds
+ * without it. Without them on the classpath or without the module, {@link #best()} falls back to the scalar
+ * kernels, which give the same results up to the order of the float additions.
+ * <p>
+ * Every length must be a multiple of {@link #ALIGNMENT}, so that no kernel needs a loop for the remaining elements.
+ */
+public interface Kernels {
+
+    /**
+     * The number of floats every length is a multiple of: the lanes of the widest vectors, 512 bits.
+     */
+    int ALIGNMENT = 16;
+
+    /**
+     * Computes the dot product of two slices.
+     *
+     * @param a       The first array.
+     * @param aOffset The start of the slice of the first array.
+     * @param b       The second array.
+     * @param bOffset The start of the slice of the second array.
+     * @param length  The length of the slices, a multiple of {@link #ALIGNMENT}.
+     *
+     * @return The dot product.
+     */
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    /**
+     * Adds a multiple of one slice to another: {@code y += alpha * x}.
+     *
+     * @param alpha   The multiple.
+     * @param x       The array added.
+     * @param xOffset The start of the slice added.
+     * @param y       The array added to.
+     * @param yOffset The start of the slice added to.
+     * @param length  The length of the slices, a multiple of {@link #ALIGNMENT}.
+     */
+    void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length);
+
+    /**
+     * Retrieves the name of the kernels, to report which ones are used.
+     *
+     * @return The name.
+     */
+    String getName();
+
+    /**
+     * Rounds a length up to a multiple of {@link #ALIGNMENT}.
+     *
+     * @param length The length.
+     *
+     * @return The padded length.
+     */
+    static int align(int length) {
+        return (length + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /**
+     * Creates the scalar kernels, which run everywhere.
+     *
+     * @return The scalar kernels.
+     */
+    static Kernels scalar() {
+        return new ScalarKernels();
+    }
+
+    /**
+     * Creates the kernels of the Vector API. They are loaded reflectively, so that this interface still links when
+     * the {@code jdk.incubator.vector} module is not resolved.
+     *
+     * @return The vector kernels, or null if the Vector API is not available.
+     */
+    static Kernels vector() {
+        try {
+            return (Kernels) Class.forName("mdp.VectorKernels").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates the fastest kernels available.
+     *
+     * @return The vector kernels if the Vector API is available, the scalar ones otherwise.
+     */
+    static Kernels best() {
+        Kernels vector = vector();
+        return vector != null ? vector : scalar();
+    }
+}
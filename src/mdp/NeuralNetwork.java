@@ -0,0 +1,287 @@
+package mdp;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The NeuralNetwork class is a small multilayer perceptron approximating the Q-values of every action at once: ReLU
+ * hidden layers and a linear output per action.
+ * <p>
+ * Weights, biases, activations and gradients are float arrays allocated up front, so inference and training do not
+ * allocate. Every row of weights and every activation vector is padded with zeros to a multiple of
+ * {@link Kernels#ALIGNMENT}, and the matrix-vector products are dot products and {@code axpy}s of whole rows through
+ * {@link Kernels}, on SIMD vectors when the Vector API is available.
+ * <p>
+ * Training is stochastic gradient descent on minibatches: {@link #accumulate} adds the gradient of one sample, where
+ * only the output of the action taken has a target, and {@link #step} applies the mean gradient of the batch. The
+ * error is clipped to [-1, 1], which is the gradient of the Huber loss, so that rare large TD errors do not blow up
+ * the weights.
+ * <p>
+ * A network is not thread safe. It is saved in the binary format of {@link QTableFile}, one row per unit with its
+ * weights and bias.
+ */
+public class NeuralNetwork {
+
+    private final int[] sizes; // The number of units of each layer, the inputs first
+    private final int[] strides; // The padded size of each layer
+    private final Kernels kernels;
+    private final float[][] weights; // The weights of layer l + 1 from layer l, one padded row per unit of layer l + 1
+    private final float[][] biases; // The biases of layer l + 1
+    private final float[][] activations; // The outputs of each layer, the inputs first
+    private final float[][] deltas; // The error of each layer but the inputs, with respect to its pre-activations
+    private final float[][] weightGradients; // Summed over the batch, in the same layout as the weights
+    private final float[][] biasGradients;
+    private int batchSize; // The number of samples accumulated since the last step
+
+    /**
+     * Constructs a new NeuralNetwork with random weights, on the fastest kernels available.
+     *
+     * @param sizes The number of units of each layer, from the inputs to the outputs.
+     * @param seed  The seed of the initial weights.
+     */
+    public NeuralNetwork(int[] sizes, long seed) {
+        this(sizes, seed, Kernels.best());
+    }
+
+    /**
+     * Constructs a new NeuralNetwork with random weights.
+     * The weights of a layer are uniform in +-sqrt(6 / inputs), which keeps the variance of ReLU activations steady
+     * from layer to layer; the outputs start 10 times smaller, so the initial Q-values are close to 0.
+     *
+     * @param sizes   The number of units of each layer, from the inputs to the outputs.
+     * @param seed    The seed of the initial weights.
+     * @param kernels The kernels of the matrix-vector products.
+     */
+    public NeuralNetwork(int[] sizes, long seed, Kernels kernels) {
+        if (sizes.length < 2)
+            throw new IllegalArgumentException("A network needs at least an input and an output layer");
+        this.sizes = sizes.clone();
+        this.kernels = kernels;
+        int layers = sizes.length;
+        this.strides = new int[layers];
+        for (int l = 0; l < layers; l++)
+            this.strides[l] = Kernels.align(sizes[l]);
+
+        this.weights = new float[layers - 1][];
+        this.biases = new float[layers - 1][];
+        this.weightGradients = new float[layers - 1][];
+        this.biasGradients = new float[layers - 1][];
+        this.activations = new float[layers][];
+        this.deltas = new float[layers][];
+        for (int l = 0; l < layers; l++) {
+            this.activations[l] = new float[this.strides[l]];
+            this.deltas[l] = new float[this.strides[l]];
+        }
+        Random random = new Random(seed);
+        for (int l = 0; l < layers - 1; l++) {
+            this.weights[l] = new float[sizes[l + 1] * this.strides[l]];
+            this.biases[l] = new float[this.strides[l + 1]];
+            this.weightGradients[l] = new float[this.weights[l].length];
+            this.biasGradients[l] = new float[this.biases[l].length];
+            double limit = Math.sqrt(6.0 / sizes[l]) * (l == layers - 2 ? 0.1 : 1.0);
+            for (int unit = 0; unit < sizes[l + 1]; unit++) {
+                for (int input = 0; input < sizes[l]; input++)
+                    this.weights[l][unit * this.strides[l] + input] = (float) ((random.nextDouble() * 2 - 1) * limit);
+            }
+        }
+    }
+
+    /**
+     * Computes the outputs of the network.
+     *
+     * @param input The inputs, at least as many as the input layer has units.
+     *
+     * @return The outputs, reused by the next call; only the first {@link #getOutputCount()} are meaningful.
+     */
+    public float[] forward(float[] input) {
+        System.arraycopy(input, 0, this.activations[0], 0, this.sizes[0]);
+        int last = this.sizes.length - 1;
+        for (int l = 0; l < last; l++) {
+            float[] in = this.activations[l];
+            float[] out = this.activations[l + 1];
+            float[] layerWeights = this.weights[l];
+            float[] layerBiases = this.biases[l];
+            int stride = this.strides[l];
+            for (int unit = 0; unit < this.sizes[l + 1]; unit++) {
+                float value = layerBiases[unit] + this.kernels.dot(layerWeights, unit * stride, in, 0, stride);
+                out[unit] = l + 1 < last ? Math.max(0f, value) : value;
+            }
+        }
+        return this.activations[last];
+    }
+
+    /**
+     * Finds the output with the highest value.
+     *
+     * @param outputs The outputs returned by {@link #forward}.
+     *
+     * @return The index of the output, the lowest one among ties.
+     */
+    public int argMax(float[] outputs) {
+        int best = 0;
+        for (int i = 1; i < this.getOutputCount(); i++) {
+            if (outputs[i] > outputs[best])
+                best = i;
+        }
+        return best;
+    }
+
+    /**
+     * Adds the gradient of one sample to the gradient of the batch.
+     *
+     * @param input  The inputs of the sample.
+     * @param output The index of the output that has a target, that is the action taken.
+     * @param target The target of the output.
+     *
+     * @return The error of the output before training, that is the TD error.
+     */
+    public float accumulate(float[] input, int output, float target) {
+        int last = this.sizes.length - 1;
+        float error = this.forward(input)[output] - target;
+        Arrays.fill(this.deltas[last], 0f);
+        this.deltas[last][output] = Math.max(-1f, Math.min(1f, error));
+
+        for (int l = last - 1; l >= 0; l--) {
+            float[] delta = this.deltas[l + 1];
+            float[] in = this.activations[l];
+            int stride = this.strides[l];
+            if (l > 0)
+                Arrays.fill(this.deltas[l], 0f);
+            for (int unit = 0; unit < this.sizes[l + 1]; unit++) {
+                float unitDelta = delta[unit];
+                if (unitDelta == 0f)
+                    continue; // Inactive ReLU, or an output without target
+                this.kernels.axpy(unitDelta, in, 0, this.weightGradients[l], unit * stride, stride);
+                this.biasGradients[l][unit] += unitDelta;
+                if (l > 0)
+                    this.kernels.axpy(unitDelta, this.weights[l], unit * stride, this.deltas[l], 0, stride);
+            }
+            if (l > 0) {
+                // Through the ReLU: no gradient where the unit was inactive
+                for (int unit = 0; unit < this.sizes[l]; unit++) {
+                    if (in[unit] <= 0f)
+                        this.deltas[l][unit] = 0f;
+                }
+            }
+        }
+        this.batchSize++;
+        return error;
+    }
+
+    /**
+     * Moves the weights against the mean gradient of the samples accumulated since the last step, and clears it.
+     *
+     * @param learningRate The learning rate.
+     */
+    public void step(float learningRate) {
+        if (this.batchSize == 0)
+            return;
+        float scale = -learningRate / this.batchSize;
+        for (int l = 0; l < this.weights.length; l++) {
+            this.kernels.axpy(scale, this.weightGradients[l], 0, this.weights[l], 0, this.weights[l].length);
+            this.kernels.axpy(scale, this.biasGradients[l], 0, this.biases[l], 0, this.biases[l].length);
+            Arrays.fill(this.weightGradients[l], 0f);
+            Arrays.fill(this.biasGradients[l], 0f);
+        }
+        this.batchSize = 0;
+    }
+
+    /**
+     * Copies the weights of another network of the same layout, for instance to refresh a target network.
+     *
+     * @param other The network to copy.
+     */
+    public void copyFrom(NeuralNetwork other) {
+        if (!Arrays.equals(this.sizes, other.sizes))
+            throw new IllegalArgumentException("Cannot copy a network of layout " + Arrays.toString(other.sizes));
+        for (int l = 0; l < this.weights.length; l++) {
+            System.arraycopy(other.weights[l], 0, this.weights[l], 0, this.weights[l].length);
+            System.arraycopy(other.biases[l], 0, this.biases[l], 0, this.biases[l].length);
+        }
+    }
+
+    /**
+     * Retrieves the number of inputs.
+     *
+     * @return The number of units of the input layer.
+     */
+    public int getInputCount() {
+        return this.sizes[0];
+    }
+
+    /**
+     * Retrieves the number of outputs.
+     *
+     * @return The number of units of the output layer.
+     */
+    public int getOutputCount() {
+        return this.sizes[this.sizes.length - 1];
+    }
+
+    /**
+     * Retrieves the kernels of the matrix-vector products.
+     *
+     * @return The kernels.
+     */
+    public Kernels getKernels() {
+        return this.kernels;
+    }
+
+    /**
+     * Saves the weights in the binary format, replacing the previous file atomically. The row of unit j of layer l
+     * is named {@code L<l>_<j>}, with one column per input of the layer and a last one for the bias.
+     *
+     * @param path   The path of the file.
+     * @param system The name of the control system, saved with the weights.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    public void save(String path, String system) throws IOException {
+        int columns = 0;
+        int rows = 0;
+        for (int l = 0; l < this.weights.length; l++) {
+            columns = Math.max(columns, this.sizes[l] + 1);
+            rows += this.sizes[l + 1];
+        }
+        String[] rowNames = new String[rows];
+        double[] values = new double[rows * columns];
+        int row = 0;
+        for (int l = 0; l < this.weights.length; l++) {
+            for (int unit = 0; unit < this.sizes[l + 1]; unit++, row++) {
+                rowNames[row] = "L" + (l + 1) + "_" + unit;
+                for (int input = 0; input < this.sizes[l]; input++)
+                    values[row * columns + input] = this.weights[l][unit * this.strides[l] + input];
+                values[row * columns + columns - 1] = this.biases[l][unit];
+            }
+        }
+        String[] columnNames = new String[columns];
+        for (int i = 0; i < columns - 1; i++)
+            columnNames[i] = "W" + i;
+        columnNames[columns - 1] = "BIAS";
+        QTableFile.writeBinary(path, new QTableFile.Table(system + " " + Arrays.toString(this.sizes), rowNames,
+                columnNames, values, new long[values.length]));
+    }
+
+    /**
+     * Loads weights saved by {@link #save} from a network of the same layout.
+     *
+     * @param path The path of the file.
+     *
+     * @throws IOException If the file cannot be read or holds a network of another layout.
+     */
+    public void load(String path) throws IOException {
+        QTableFile.MappedTable table = QTableFile.mapBinary(path);
+        if (!table.system.endsWith(" " + Arrays.toString(this.sizes)))
+            throw new IOException(path + " holds the network " + table.system + ", not " + Arrays.toString(this.sizes));
+        int columns = table.actions.length;
+        int row = 0;
+        for (int l = 0; l < this.weights.length; l++) {
+            for (int unit = 0; unit < this.sizes[l + 1]; unit++, row++) {
+                for (int input = 0; input < this.sizes[l]; input++)
+                    this.weights[l][unit * this.strides[l] + input] = (float) table.value(row * columns + input);
+                this.biases[l][unit] = (float) table.value(row * columns + columns - 1);
+            }
+        }
+    }
+}
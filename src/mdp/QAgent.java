@@ -0,0 +1,29 @@
+package mdp;
+
+/**
+ * The QAgent interface is the view of a Q-learner a controller uses on every tick: learn from the last transition and
+ * choose the next action.
+ *
+ * @param <S> The enum of the states of the control system.
+ * @param <A> The enum of the actions of the control system.
+ */
+public interface QAgent<S extends Enum<S>, A extends Enum<A>> {
+
+    /**
+     * Learns from the last transition and chooses the action for the current state.
+     *
+     * @param lastState       The state the action was performed in, or null on the first tick.
+     * @param currentState    The state reached.
+     * @param actionPerformed The action performed.
+     * @param reward          The reward received.
+     *
+     * @return The action to perform in the current state.
+     */
+    A update(S lastState, S currentState, A actionPerformed, double reward);
+
+    /**
+     * Tells the agent the episode has ended, so nothing learned from the next transition flows back into this one.
+     */
+    default void endEpisode() {
+    }
+}
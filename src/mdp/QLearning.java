@@ -3,443 +3,498 @@ package mdp;
 import torcs.Constants;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.PrintWriter;
+import java.io.IOException;
 import java.util.*;
 
 import static torcs.Constants.*;
 
 
-public class QLearning {
+/**
+ * The QLearning class implements tabular Q-learning for one control system.
+ * The Q-table is a single array of {@code states * actions} values, indexed by the ordinals of the state and action
+ * enums, so reading and updating a value is a plain array access.
+ * <p>
+ * The values are kept in a {@link QValueStore} of the precision set by {@link torcs.Constants#Q_VALUE_PRECISION}, so
+ * large tables can trade precision for memory; the values of 16-bit tables span what the rewards of the control
+ * system can add up to.
+ * <p>
+ * Greedy selection breaks ties uniformly at random with reservoir sampling and never allocates. Optionally, the best
+ * action and the maximum value of every state are cached and kept up to date on every write, which makes greedy
+ * selection and the TD target constant time; ties are then broken once, when the cached entry is recomputed.
+ * <p>
+ * With {@link #setLambda}, {@link #update} does Watkins Q(lambda) instead of one-step Q-learning: every TD error is
+ * also applied to the recently visited cells, through replacing {@link EligibilityTraces}, and the traces are cut
+ * whenever an exploratory action is taken or {@link #endEpisode()} is called.
+ *
+ * @param <S> The enum of the states of the control system.
+ * @param <A> The enum of the actions of the control system.
+ */
+public class QLearning<S extends Enum<S>, A extends Enum<A>> implements QAgent<S, A>, QTable {
 
-    private static final String SEPARATOR = ",";
-    private final HashMap<String, HashMap<String, Double>> qTable;
-    private List<Object> possibleActions = null;
-    private Object lastState;
+    private final S[] states; // Every state, in ordinal order
+    private final A[] possibleActions; // Every action, in ordinal order
+    private final QValueStore qTable; // The Q-value of a state and action is at state * actions + action
+    private final long[] visits; // The number of updates of each Q-value, in the same order
+    private S lastState;
 
     private double epsilon = 0.0d;
     private Random random;
-    private ControlSystems system;
-    private String qTablePath;
+    private final ControlSystems system;
+    private final String qTablePath;
+    private final int[] bestActions; // The cached best action ordinal of each state, null if caching is disabled
+    private final double[] maxValues; // The cached maximum value of each state, null if caching is disabled
+    private EligibilityTraces traces; // The traces of Q(lambda), null for one-step Q-learning
+    private double traceDecay; // The discount factor times lambda
 
-    public QLearning(ControlSystems system) {
-        this.qTable = new HashMap<>();
+    /**
+     * Constructs a new QLearning for a control system, loading its Q-table if it has been saved before.
+     * A table saved in the old CSV format is imported when there is no binary table yet.
+     *
+     * @param system     The control system, which selects the file of the Q-table.
+     * @param stateType  The enum of the states.
+     * @param actionType The enum of the actions.
+     */
+    public QLearning(ControlSystems system, Class<S> stateType, Class<A> actionType) {
+        this(system, stateType, actionType, false);
+    }
+
+    /**
+     * Constructs a new QLearning for a control system, loading its Q-table if it has been saved before.
+     * A table saved in the old CSV format is imported when there is no binary table yet.
+     *
+     * @param system           The control system, which selects the file of the Q-table.
+     * @param stateType        The enum of the states.
+     * @param actionType       The enum of the actions.
+     * @param cacheBestActions True to cache the best action and maximum value of every state.
+     */
+    public QLearning(ControlSystems system, Class<S> stateType, Class<A> actionType, boolean cacheBestActions) {
+        this(system, stateType, actionType, cacheBestActions, Q_VALUE_PRECISION);
+    }
+
+    /**
+     * Constructs a new QLearning for a control system, loading its Q-table if it has been saved before.
+     * A table saved in the old CSV format is imported when there is no binary table yet.
+     *
+     * @param system           The control system, which selects the file of the Q-table.
+     * @param stateType        The enum of the states.
+     * @param actionType       The enum of the actions.
+     * @param cacheBestActions True to cache the best action and maximum value of every state.
+     * @param precision        The precision the Q-values are stored with.
+     */
+    public QLearning(ControlSystems system, Class<S> stateType, Class<A> actionType, boolean cacheBestActions,
+                     QValuePrecision precision) {
+        this(system, stateType, actionType, cacheBestActions, precision, true);
+    }
+
+    /**
+     * Creates a QLearning for a control system that starts from an empty Q-table instead of the saved one, for
+     * instance to benchmark a controller without reading the files of a previous training.
+     *
+     * @param system           The control system.
+     * @param stateType        The enum of the states.
+     * @param actionType       The enum of the actions.
+     * @param cacheBestActions True to cache the best action and maximum value of every state.
+     * @param <S>              The enum of the states.
+     * @param <A>              The enum of the actions.
+     *
+     * @return The QLearning.
+     */
+    public static <S extends Enum<S>, A extends Enum<A>> QLearning<S, A> inMemory(ControlSystems system,
+                                                                                 Class<S> stateType,
+                                                                                 Class<A> actionType,
+                                                                                 boolean cacheBestActions) {
+        return new QLearning<>(system, stateType, actionType, cacheBestActions, Q_VALUE_PRECISION, false);
+    }
+
+    private QLearning(ControlSystems system, Class<S> stateType, Class<A> actionType, boolean cacheBestActions,
+                      QValuePrecision precision, boolean load) {
+        this.states = stateType.getEnumConstants();
+        this.possibleActions = actionType.getEnumConstants();
+        double rewardBound = maxAbsReward(system) / (1 - DISCOUNT_FACTOR); // No sum of discounted rewards goes further
+        this.qTable = QValueStore.create(precision, states.length * possibleActions.length, -rewardBound, rewardBound);
+        this.visits = new long[this.qTable.size()];
 
         this.random = new Random(System.currentTimeMillis());
 
         this.system = system;
-        switch (this.system) {
+        this.qTablePath = binaryTablePath(system);
+        if (!load)
+            System.out.println("Starting " + system.name() + " from an empty Q-table");
+        else if (new File(this.qTablePath).exists())
+            this.loadQTable();
+        else if (new File(csvTablePath(system)).exists())
+            this.importCsv(csvTablePath(system));
+
+        this.bestActions = cacheBestActions ? new int[states.length] : null;
+        this.maxValues = cacheBestActions ? new double[states.length] : null;
+        if (cacheBestActions) {
+            for (int state = 0; state < states.length; state++)
+                this.refreshCache(state);
+        }
+    }
+
+    private static String binaryTablePath(ControlSystems system) {
+        switch (system) {
             case STEERING_CONTROL_SYSTEM:
-                this.possibleActions = Arrays.asList(SteerControl.Actions.values());
-                this.qTablePath = STEER_Q_TABLE_PATH;
-                break;
+                return STEER_Q_TABLE_BINARY_PATH;
             case ACCELERATION_CONTROL_SYSTEM:
-                this.possibleActions = Arrays.asList(AccelControl.Actions.values());
-                this.qTablePath = ACCEL_Q_TABLE_PATH;
-                break;
+                return ACCEL_Q_TABLE_BINARY_PATH;
             case GEAR_CONTROL_SYSTEM:
-                this.possibleActions = Arrays.asList(GearControl.Actions.values());
-                this.qTablePath = GEAR_Q_TABLE_PATH;
-                break;
+                return GEAR_Q_TABLE_BINARY_PATH;
         }
-        File f = new File(this.qTablePath);
-        if (!f.exists())
-            this.createQTable();
-        else
-            this.loadQTable();
+        throw new IllegalArgumentException("Unknown control system " + system);
     }
 
-    private void createQTable() {
-        switch (this.system) {
+    private static double maxAbsReward(ControlSystems system) {
+        switch (system) {
             case STEERING_CONTROL_SYSTEM:
-                for (SteerControl.States state : SteerControl.States.values()) {
-                    HashMap<String, Double> row =
-
-                            new HashMap<>();
-                    for (Object tmp : this.possibleActions) {
-                        SteerControl.Actions action = (SteerControl.Actions) tmp;
-                        row.put(action.name(), 0.0);
-                    }
-                    qTable.put(state.name(), row);
-                }
-                break;
+                return 1.0;
             case ACCELERATION_CONTROL_SYSTEM:
-                for (AccelControl.States state : AccelControl.States.values()) {
-                    HashMap<String, Double> row = new HashMap<>();
-                    for (Object tmp : this.possibleActions) {
-                        AccelControl.Actions action = (AccelControl.Actions) tmp;
-                        row.put(action.name(), 0.0);
-                    }
-                    qTable.put(state.name(), row);
-                }
-                break;
+                return 10.0;
             case GEAR_CONTROL_SYSTEM:
-                for (GearControl.States state : GearControl.States.values()) {
-                    HashMap<String, Double> row = new HashMap<>();
-                    for (Object tmp : this.possibleActions) {
-                        GearControl.Actions action = (GearControl.Actions) tmp;
-                        row.put(action.name(), 0.0);
-                    }
-                    qTable.put(state.name(), row);
-                }
-                break;
+                return 100.0;
         }
+        throw new IllegalArgumentException("Unknown control system " + system);
     }
 
+    private static String csvTablePath(ControlSystems system) {
+        switch (system) {
+            case STEERING_CONTROL_SYSTEM:
+                return STEER_Q_TABLE_PATH;
+            case ACCELERATION_CONTROL_SYSTEM:
+                return ACCEL_Q_TABLE_PATH;
+            case GEAR_CONTROL_SYSTEM:
+                return GEAR_Q_TABLE_PATH;
+        }
+        throw new IllegalArgumentException("Unknown control system " + system);
+    }
 
     private void loadQTable() {
+        try {
+            QTableFile.Table table = QTableFile.readBinary(this.qTablePath);
+            if (!table.system.equals(this.system.name()))
+                System.out.println("WARNING!!! -> " + this.qTablePath + " belongs to " + table.system);
+            this.copyFrom(table);
+        } catch (IOException e) {
+            System.out.println("ERROR!!! -> Could not load tablaQ from binary file...");
+            e.printStackTrace();
+        }
+    }
+
+    private void importCsv(String path) {
+        try {
+            this.copyFrom(QTableFile.readCsv(path, this.system.name()));
+            System.out.println("Imported " + path + ", it will be saved as " + this.qTablePath);
+        } catch (IOException e) {
+            System.out.println("ERROR!!! -> Could not load tablaQ from .csv file...");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Copies the values of a loaded table, matching its rows and columns to the states and actions by name.
+     *
+     * @param table The loaded table.
+     */
+    private void copyFrom(QTableFile.Table table) {
         qTable.clear();
-        try (Scanner file = new Scanner(new File(this.qTablePath))) {
-            String[] rowLabels = file.nextLine().split(SEPARATOR);
-
-            while (file.hasNextLine()) {
-                String[] row = file.nextLine().split(SEPARATOR);
-                String state = row[0];
-                HashMap<String, Double> rowHash = new HashMap<>();
-                for (int i = 1; i < row.length; i++) {
-                    rowHash.put(rowLabels[i], Double.parseDouble(row[i]));
+        Arrays.fill(visits, 0);
+        int[] columns = new int[table.actions.length]; // The action ordinal of each column, -1 if unknown
+        for (int i = 0; i < table.actions.length; i++)
+            columns[i] = ordinalOf(possibleActions, table.actions[i]);
+        for (int row = 0; row < table.states.length; row++) {
+            int state = ordinalOf(states, table.states[row]);
+            if (state < 0) {
+                System.out.println("WARNING!!! -> Ignoring unknown state " + table.states[row]);
+                continue;
+            }
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i] >= 0) {
+                    qTable.set(state * possibleActions.length + columns[i], table.values[row * columns.length + i]);
+                    visits[state * possibleActions.length + columns[i]] = table.visits[row * columns.length + i];
                 }
-                this.qTable.put(state, rowHash);
             }
-        } catch (FileNotFoundException e) {
-            System.out.println("ERROR!!! -> Could not load tablaQ from .csv file...");
-            e.printStackTrace();
         }
     }
 
+    private static int ordinalOf(Enum<?>[] values, String name) {
+        for (Enum<?> value : values) {
+            if (value.name().equals(name))
+                return value.ordinal();
+        }
+        return -1;
+    }
+
+    /**
+     * Saves the Q-table in the binary format, replacing the previous file atomically.
+     * Use {@link QTableFile} to convert it to CSV.
+     */
     public void saveTable() {
-        try (PrintWriter file = new PrintWriter(this.qTablePath)) {
-            file.write(" Q-TABLE ");
-            file.write(SEPARATOR);
-            switch (this.system) {
-                case STEERING_CONTROL_SYSTEM:
-                    for (Object tmp : this.possibleActions) {
-                        SteerControl.Actions action = (SteerControl.Actions) tmp;
-                        file.write(action.name());
-                        file.write(SEPARATOR);
-                    }
-                    file.write("\n");
-                    for (SteerControl.States state : SteerControl.States.values()) {
-                        file.write(state.name());
-                        file.write(SEPARATOR);
-                        for (Object tmp : possibleActions) {
-                            SteerControl.Actions action = (SteerControl.Actions) tmp;
-                            String value = String.valueOf(this.qTable.get(state.name()).get(action.name()));
-                            file.write(value);
-                            file.write(SEPARATOR);
-                        }
-                        file.write("\n");
-                    }
-                    break;
-                case ACCELERATION_CONTROL_SYSTEM:
-                    for (Object tmp : this.possibleActions) {
-                        AccelControl.Actions action = (AccelControl.Actions) tmp;
-                        file.write(action.name());
-                        file.write(SEPARATOR);
-                    }
-                    file.write("\n");
-                    for (AccelControl.States state : AccelControl.States.values()) {
-                        file.write(state.name());
-                        file.write(SEPARATOR);
-                        for (Object tmp : possibleActions) {
-                            AccelControl.Actions action = (AccelControl.Actions) tmp;
-                            String value = String.valueOf(this.qTable.get(state.name()).get(action.name()));
-                            file.write(value);
-                            file.write(SEPARATOR);
-                        }
-                        file.write("\n");
-                    }
-                    break;
-                case GEAR_CONTROL_SYSTEM:
-                    for (Object tmp : this.possibleActions) {
-                        GearControl.Actions action = (GearControl.Actions) tmp;
-                        file.write(action.name());
-                        file.write(SEPARATOR);
-                    }
-                    file.write("\n");
-                    for (GearControl.States state : GearControl.States.values()) {
-                        file.write(state.name());
-                        file.write(SEPARATOR);
-                        for (Object tmp : possibleActions) {
-                            GearControl.Actions action = (GearControl.Actions) tmp;
-                            String value = String.valueOf(this.qTable.get(state.name()).get(action.name()));
-                            file.write(value);
-                            file.write(SEPARATOR);
-                        }
-                        file.write("\n");
-                    }
-                    break;
-            }
-        } catch (FileNotFoundException e) {
-            System.out.println("ERROR!!! -> Could not save tableQ in .csv file...");
+        double[] values = new double[this.qTable.size()];
+        this.snapshot(values, new long[0]);
+        this.saveSnapshot(values, this.visits.clone());
+    }
+
+    @Override
+    public int getTableSize() {
+        return this.qTable.size();
+    }
+
+    @Override
+    public void snapshot(double[] values, long[] visits) {
+        for (int i = 0; i < values.length; i++)
+            values[i] = this.qTable.get(i);
+        System.arraycopy(this.visits, 0, visits, 0, visits.length);
+    }
+
+    @Override
+    public void saveSnapshot(double[] values, long[] visits) {
+        String[] stateNames = new String[this.states.length];
+        for (S state : this.states)
+            stateNames[state.ordinal()] = state.name();
+        String[] actionNames = new String[this.possibleActions.length];
+        for (A action : this.possibleActions)
+            actionNames[action.ordinal()] = action.name();
+        try {
+            QTableFile.writeBinary(this.qTablePath, new QTableFile.Table(this.system.name(), stateNames, actionNames,
+                    values, visits));
+        } catch (IOException e) {
+            System.out.println("ERROR!!! -> Could not save tableQ in binary file...");
             e.printStackTrace();
         }
     }
 
-    public Object update(Object lastState, Object currentState, Object actionPerformed, double reward) {
+    @Override
+    public A update(S lastState, S currentState, A actionPerformed, double reward) {
         this.lastState = lastState;
-        if (lastState != null) {
-            double oldQValue = this.getQValue(lastState, actionPerformed);
-            double newQValue = oldQValue + LEARNING_RATE * (reward + DISCOUNT_FACTOR * this.getMaxQValue(currentState) - oldQValue);
-            this.setQValue(lastState, actionPerformed, (Constants.round(newQValue, 8)));
+        if (this.traces == null) {
+            if (lastState != null)
+                this.learn(lastState.ordinal(), actionPerformed.ordinal(), reward, currentState.ordinal(), false);
+            return nextAction(currentState);
         }
-        return nextAction(currentState);
+
+        if (lastState != null)
+            this.learnWithTraces(lastState.ordinal(), actionPerformed.ordinal(), reward, currentState.ordinal());
+        A next = nextAction(currentState);
+        // Watkins: the return of an exploratory action says nothing about the greedy policy
+        if (this.getQValue(currentState.ordinal(), next.ordinal()) < this.getMaxQValue(currentState.ordinal()))
+            this.traces.clear();
+        return next;
     }
 
-    private double getQValue(Object stateO, Object actionO) {
-        switch (this.system) {
-            case STEERING_CONTROL_SYSTEM:
-                SteerControl.States state = (SteerControl.States) stateO;
-                SteerControl.Actions action = (SteerControl.Actions) actionO;
-                return this.qTable.get(state.name()).get(action.name());
-            case ACCELERATION_CONTROL_SYSTEM:
-                AccelControl.States accelState = (AccelControl.States) stateO;
-                AccelControl.Actions accelAction = (AccelControl.Actions) actionO;
-                return this.qTable.get(accelState.name()).get(accelAction.name());
-            case GEAR_CONTROL_SYSTEM:
-                GearControl.States gearState = (GearControl.States) stateO;
-                GearControl.Actions gearAction = (GearControl.Actions) actionO;
-                return this.qTable.get(gearState.name()).get(gearAction.name());
+    /**
+     * Applies the TD error of a transition to every cell with an active trace, the visited one included.
+     *
+     * @param state     The ordinal of the state the action was performed in.
+     * @param action    The ordinal of the action performed.
+     * @param reward    The reward received.
+     * @param nextState The ordinal of the state reached.
+     */
+    private void learnWithTraces(int state, int action, double reward, int nextState) {
+        int actions = this.possibleActions.length;
+        double delta = reward + DISCOUNT_FACTOR * this.getMaxQValue(nextState) - this.getQValue(state, action);
+        this.traces.set(state * actions + action, 1.0);
+        this.visits[state * actions + action]++;
+        for (int i = 0; i < this.traces.size(); i++) {
+            int cell = this.traces.cell(i);
+            double newQValue = this.qTable.get(cell) + LEARNING_RATE * delta * this.traces.trace(i);
+            this.setQValue(cell / actions, cell % actions, Constants.fastRound(newQValue, 8));
         }
-        return 0.0;
+        this.traces.decay(this.traceDecay);
     }
 
-    private void setQValue(Object stateO, Object actionO, double value) {
-        switch (this.system) {
-            case STEERING_CONTROL_SYSTEM:
-                SteerControl.States state = (SteerControl.States) stateO;
-                SteerControl.Actions action = (SteerControl.Actions) actionO;
-                HashMap<String, Double> row = this.qTable.get(state.name());
-                row.replace(action.name(), value);
-                this.qTable.replace(state.name(), row);
-                break;
-            case ACCELERATION_CONTROL_SYSTEM:
-                AccelControl.States accelState = (AccelControl.States) stateO;
-                AccelControl.Actions accelAction = (AccelControl.Actions) actionO;
-                HashMap<String, Double> accelRow = this.qTable.get(accelState.name());
-                accelRow.replace(accelAction.name(), value);
-                this.qTable.replace(accelState.name(), accelRow);
-                break;
-            case GEAR_CONTROL_SYSTEM:
-                GearControl.States gearState = (GearControl.States) stateO;
-                GearControl.Actions gearAction = (GearControl.Actions) actionO;
-                HashMap<String, Double> gearRow = this.qTable.get(gearState.name());
-                gearRow.replace(gearAction.name(), value);
-                this.qTable.replace(gearState.name(), gearRow);
-                break;
+    /**
+     * Switches between one-step Q-learning and Watkins Q(lambda) for {@link #update}.
+     * {@link #learn} is always one-step, since replayed transitions are not consecutive.
+     *
+     * @param lambda The trace decay, 0 for one-step Q-learning.
+     */
+    public void setLambda(double lambda) {
+        this.traces = lambda > 0 ? new EligibilityTraces(this.qTable.size()) : null;
+        this.traceDecay = DISCOUNT_FACTOR * lambda;
+    }
+
+    @Override
+    public void endEpisode() {
+        if (this.traces != null)
+            this.traces.clear();
+    }
+
+    /**
+     * Applies one Q-learning update to a transition given by ordinals.
+     *
+     * @param state     The ordinal of the state the action was performed in.
+     * @param action    The ordinal of the action performed.
+     * @param reward    The reward received.
+     * @param nextState The ordinal of the state reached.
+     * @param terminal  True if the episode ended with this transition, so the next state is not bootstrapped.
+     */
+    public void learn(int state, int action, double reward, int nextState, boolean terminal) {
+        double oldQValue = this.getQValue(state, action);
+        double target = terminal ? reward : reward + DISCOUNT_FACTOR * this.getMaxQValue(nextState);
+        double newQValue = oldQValue + LEARNING_RATE * (target - oldQValue);
+        this.setQValue(state, action, Constants.fastRound(newQValue, 8));
+        this.visits[state * this.possibleActions.length + action]++;
+    }
+
+    /**
+     * Retrieves the number of updates of a Q-value, including the ones of the runs the table was loaded from.
+     *
+     * @param state  The ordinal of the state.
+     * @param action The ordinal of the action.
+     *
+     * @return The number of updates.
+     */
+    public long getVisits(int state, int action) {
+        return this.visits[state * this.possibleActions.length + action];
+    }
+
+    private double getQValue(int state, int action) {
+        return this.qTable.get(state * this.possibleActions.length + action);
+    }
+
+    private void setQValue(int state, int action, double value) {
+        int index = state * this.possibleActions.length + action;
+        double oldValue = this.qTable.get(index);
+        value = this.qTable.set(index, value); // The rounded value, which the cache must agree with
+        if (this.bestActions == null)
+            return;
+
+        if (value > this.maxValues[state]) {
+            this.maxValues[state] = value;
+            this.bestActions[state] = action;
+        } else if (action == this.bestActions[state] && value < oldValue) {
+            this.refreshCache(state);
         }
     }
 
-    private double getMaxQValue(Object stateO) {
-        switch (this.system) {
-            case STEERING_CONTROL_SYSTEM:
-                SteerControl.States state = (SteerControl.States) stateO;
-                double maxValue = -Double.MAX_VALUE;
-                HashMap<String, Double> values = qTable.get(state.name());
-                ArrayList<SteerControl.Actions> candidates = new ArrayList<>();
-                for (Object tmp : this.possibleActions) {
-                    SteerControl.Actions action = (SteerControl.Actions) tmp;
-                    double value = values.get(action.name());
-                    if (maxValue < value) {
-                        maxValue = value;
-                        candidates.clear();
-                        candidates.add(action);
-                    } else if (maxValue == value) {
-                        candidates.add(action);
-                    }
-                }
-                int index = random.nextInt(candidates.size());
-                SteerControl.Actions selected = candidates.get(index);
-                return values.get(selected.name());
-            case ACCELERATION_CONTROL_SYSTEM:
-                AccelControl.States accelState = (AccelControl.States) stateO;
-                double accelMaxValue = -Double.MAX_VALUE;
-                HashMap<String, Double> accelValues = qTable.get(accelState.name());
-                ArrayList<AccelControl.Actions> accelCandidates = new ArrayList<>();
-                for (Object tmp : this.possibleActions) {
-                    AccelControl.Actions action = (AccelControl.Actions) tmp;
-                    double value = accelValues.get(action.name());
-                    if (accelMaxValue < value) {
-                        accelMaxValue = value;
-                        accelCandidates.clear();
-                        accelCandidates.add(action);
-                    } else if (accelMaxValue == value) {
-                        accelCandidates.add(action);
-                    }
-                }
-                int accelIndex = random.nextInt(accelCandidates.size());
-                AccelControl.Actions accelSelected = accelCandidates.get(accelIndex);
-                return accelValues.get(accelSelected.name());
-            case GEAR_CONTROL_SYSTEM:
-                GearControl.States gearState = (GearControl.States) stateO;
-                double gearMaxValue = -Double.MAX_VALUE;
-                HashMap<String, Double> gearValues = qTable.get(gearState.name());
-                ArrayList<GearControl.Actions> gearCandidates = new ArrayList<>();
-                for (Object tmp : this.possibleActions) {
-                    GearControl.Actions action = (GearControl.Actions) tmp;
-                    double value = gearValues.get(action.name());
-                    if (gearMaxValue < value) {
-                        gearMaxValue = value;
-                        gearCandidates.clear();
-                        gearCandidates.add(action);
-                    } else if (gearMaxValue == value) {
-                        gearCandidates.add(action);
-                    }
-                }
-                int gearIndex = random.nextInt(gearCandidates.size());
-                GearControl.Actions gearSelected = gearCandidates.get(gearIndex);
-                return gearValues.get(gearSelected.name());
+    private double getMaxQValue(int state) {
+        if (this.bestActions != null)
+            return this.maxValues[state];
+        int best = this.argMax(state);
+        return best < 0 ? -Double.MAX_VALUE : this.qTable.get(state * this.possibleActions.length + best);
+    }
+
+    /**
+     * Finds the action with the highest value in a state, choosing uniformly among ties with reservoir sampling.
+     *
+     * @param state The ordinal of the state.
+     *
+     * @return The ordinal of the action, or -1 if no value is above {@code -Double.MAX_VALUE}.
+     */
+    private int argMax(int state) {
+        int row = state * this.possibleActions.length;
+        double maxValue = -Double.MAX_VALUE;
+        int best = -1;
+        int ties = 0;
+        for (int i = 0; i < this.possibleActions.length; i++) {
+            double value = this.qTable.get(row + i);
+            if (value > maxValue) {
+                maxValue = value;
+                best = i;
+                ties = 1;
+            } else if (value == maxValue && best >= 0 && random.nextInt(++ties) == 0) {
+                best = i;
+            }
         }
-        return 0.0;
+        return best;
+    }
+
+    private void refreshCache(int state) {
+        int best = this.argMax(state);
+        this.bestActions[state] = Math.max(best, 0);
+        this.maxValues[state] = best < 0 ? -Double.MAX_VALUE
+                : this.qTable.get(state * this.possibleActions.length + best);
     }
 
-    public Object nextAction(Object state) {
+    public A nextAction(S state) {
         if (random.nextDouble() > this.epsilon) return this.nextOnlyBestAction(state);
         else return this.getRandomAction();
     }
 
-    private Object getRandomAction() {
-        return this.possibleActions.get(random.nextInt(this.possibleActions.size()));
+    private A getRandomAction() {
+        return this.possibleActions[random.nextInt(this.possibleActions.length)];
     }
 
-    private Object getBestAction(Object stateO) {
-        switch (this.system) {
-            case STEERING_CONTROL_SYSTEM:
-                SteerControl.States state = (SteerControl.States) stateO;
-                double maxValue = -Double.MAX_VALUE;
-                HashMap<String, Double> values = qTable.get(state.name());
-                ArrayList<SteerControl.Actions> candidates = new ArrayList<>();
-                for (Object tmp : this.possibleActions) {
-                    SteerControl.Actions action = (SteerControl.Actions) tmp;
-                    double value = values.get(action.name());
-                    if (maxValue < value) {
-                        maxValue = value;
-                        candidates.clear();
-                        candidates.add(action);
-                    } else if (maxValue == value) {
-                        candidates.add(action);
-                    }
-                }
-                int index = random.nextInt(candidates.size());
-                return candidates.get(index);
-            case ACCELERATION_CONTROL_SYSTEM:
-                AccelControl.States accelState = (AccelControl.States) stateO;
-                double accelMaxValue = -Double.MAX_VALUE;
-                HashMap<String, Double> accelValues = qTable.get(accelState.name());
-                ArrayList<AccelControl.Actions> accelCandidates = new ArrayList<>();
-                for (Object tmp : this.possibleActions) {
-                    AccelControl.Actions action = (AccelControl.Actions) tmp;
-                    double value = accelValues.get(action.name());
-                    if (accelMaxValue < value) {
-                        accelMaxValue = value;
-                        accelCandidates.clear();
-                        accelCandidates.add(action);
-                    } else if (accelMaxValue == value) {
-                        accelCandidates.add(action);
-                    }
-                }
-                int accelIndex = random.nextInt(accelCandidates.size());
-                return accelCandidates.get(accelIndex);
-            case GEAR_CONTROL_SYSTEM:
-                GearControl.States gearState = (GearControl.States) stateO;
-                double gearMaxValue = -Double.MAX_VALUE;
-                HashMap<String, Double> gearValues = qTable.get(gearState.name());
-                ArrayList<GearControl.Actions> gearCandidates = new ArrayList<>();
-                for (Object tmp : this.possibleActions) {
-                    GearControl.Actions action
-
-                            = (GearControl.Actions) tmp;
-                    double value = gearValues.get(action.name());
-                    if (gearMaxValue < value) {
-                        gearMaxValue = value;
-                        gearCandidates.clear();
-                        gearCandidates.add(action);
-                    } else if (gearMaxValue == value) {
-                        gearCandidates.add(action);
-                    }
-                }
-                int gearIndex = random.nextInt(gearCandidates.size());
-                return gearCandidates.get(gearIndex);
-        }
-        return null;
+    public A nextOnlyBestAction(S state) {
+        return this.possibleActions[this.bestAction(state.ordinal())];
     }
 
-    public Object nextOnlyBestAction(Object stateO) {
-        switch (this.system) {
-            case STEERING_CONTROL_SYSTEM:
-                SteerControl.States state = (SteerControl.States) stateO;
-                double maxValue = -Double.MAX_VALUE;
-                HashMap<String, Double> values = qTable.get(state.name());
-                Object theBest = this.getRandomAction();
-                for (Object tmp : this.possibleActions) {
-                    SteerControl.Actions action = (SteerControl.Actions) tmp;
-                    double value = values.get(action.name());
-                    if (maxValue < value) {
-                        maxValue = value;
-                        theBest = action;
-                    }
-                }
-                return theBest;
-            case ACCELERATION_CONTROL_SYSTEM:
-                AccelControl.States accelState = (AccelControl.States) stateO;
-                double accelMaxValue = -Double.MAX_VALUE;
-                HashMap<String, Double> accelValues = qTable.get(accelState.name());
-                Object accelTheBest = this.getRandomAction();
-                for (Object tmp : this.possibleActions) {
-                    AccelControl.Actions action = (AccelControl.Actions) tmp;
-                    double value = accelValues.get(action.name());
-                    if (accelMaxValue < value) {
-                        accelMaxValue = value;
-                        accelTheBest = action;
-                    }
-                }
-                return accelTheBest;
-            case GEAR_CONTROL_SYSTEM:
-                GearControl.States gearState = (GearControl.States) stateO;
-                double gearMaxValue = -Double.MAX_VALUE;
-                HashMap<String, Double> gearValues = qTable.get(gearState.name());
-                Object gearTheBest = this.getRandomAction();
-                for (Object tmp : this.possibleActions) {
-                    GearControl.Actions action = (GearControl.Actions) tmp;
-                    double value = gearValues.get(action.name());
-                    if (gearMaxValue < value) {
-                        gearMaxValue = value;
-                        gearTheBest = action;
-                    }
-                }
-                return gearTheBest;
-        }
-        return null;
+    /**
+     * Finds the greedy action of a state.
+     *
+     * @param state The ordinal of the state.
+     *
+     * @return The ordinal of the action with the highest value, ties broken at random.
+     */
+    public int bestAction(int state) {
+        if (this.bestActions != null)
+            return this.bestActions[state];
+        int best = this.argMax(state);
+        return best >= 0 ? best : random.nextInt(this.possibleActions.length);
     }
 
-    public void saveStatistics(String newResults) {
-        this.saveStatistics(STATISTICS_TEST_PATH, newResults);
+    /**
+     * Retrieves the number of states.
+     *
+     * @return The number of states.
+     */
+    public int getStateCount() {
+        return this.states.length;
     }
 
-    private void saveStatistics(String filePath, String newResults) {
-        List<String> content = new ArrayList<>();
-        try (Scanner file = new Scanner(new File(filePath))) {
-            while (file.hasNextLine()) {
-                content.add
+    /**
+     * Retrieves the number of actions.
+     *
+     * @return The number of actions.
+     */
+    public int getActionCount() {
+        return this.possibleActions.length;
+    }
 
-                        (file.nextLine());
-            }
-        } catch (FileNotFoundException e) {
-            System.out.println("ERROR!!! -> Could not load statistics from .csv file...");
-            e.printStackTrace();
-        }
-        try (PrintWriter file = new PrintWriter((filePath))) {
-            for (String line : content) {
-                file.write(line + "\n");
-            }
-            file.write(newResults + "\n");
-        } catch (FileNotFoundException e) {
-            System.out.println("ERROR!!! -> Could not save statistics in .csv file...");
-            e.printStackTrace();
-        }
+    /**
+     * Retrieves an action by ordinal.
+     *
+     * @param ordinal The ordinal of the action.
+     *
+     * @return The action.
+     */
+    public A getAction(int ordinal) {
+        return this.possibleActions[ordinal];
+    }
+
+    /**
+     * Retrieves the probability of choosing a random action instead of the greedy one.
+     *
+     * @return The exploration rate.
+     */
+    public double getEpsilon() {
+        return this.epsilon;
+    }
+
+    /**
+     * Sets the probability of choosing a random action instead of the greedy one.
+     *
+     * @param epsilon The exploration rate.
+     */
+    public void setEpsilon(double epsilon) {
+        this.epsilon = epsilon;
     }
 
     public void decreaseEpsilon() {
         this.epsilon -= EPSILON_DECAY;
     }
-}
\ No newline at end of file
+
+    /**
+     * Sets every Q-value and update count to 0, as for a table that has never been trained.
+     */
+    public void clear() {
+        this.qTable.clear();
+        Arrays.fill(this.visits, 0);
+        if (this.bestActions != null) {
+            for (int state = 0; state < this.states.length; state++)
+                this.refreshCache(state);
+        }
+        this.endEpisode();
+    }
+}
@@ -0,0 +1,32 @@
+package mdp;
+
+/**
+ * The QTable interface is what a {@link QTableCheckpointer} needs from a Q-table: a copy of its values, taken on the
+ * thread that updates it, and a way to save such a copy from another thread.
+ */
+public interface QTable {
+
+    /**
+     * Retrieves the number of values of the Q-table.
+     *
+     * @return The number of states times the number of actions.
+     */
+    int getTableSize();
+
+    /**
+     * Copies the values of the Q-table and their update counts, row by row, into buffers.
+     *
+     * @param values The buffer of the values, with at least {@link #getTableSize()} elements.
+     * @param visits The buffer of the update counts, with at least {@link #getTableSize()} elements.
+     */
+    void snapshot(double[] values, long[] visits);
+
+    /**
+     * Saves a copy of the Q-table taken by {@link #snapshot}, replacing the previous file atomically.
+     * It only reads immutable state besides the copy, so it can run on another thread.
+     *
+     * @param values The copy of the values.
+     * @param visits The copy of the update counts.
+     */
+    void saveSnapshot(double[] values, long[] visits);
+}
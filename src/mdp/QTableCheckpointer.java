@@ -0,0 +1,220 @@
+package mdp;
+
+import torcs.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The QTableCheckpointer class saves Q-tables to disk from a background thread, so that training never blocks the
+ * control loop on file I/O.
+ * <p>
+ * A checkpoint copies every registered table into a spare buffer on the calling thread, which is a plain array copy,
+ * and hands the copies to the writer thread. Each table has two buffers: while the writer saves one, the control
+ * thread fills the other. If a checkpoint is requested before the writer has picked up the previous one, the pending
+ * copy is simply refreshed, so the writer always saves the newest values and never falls behind.
+ * <p>
+ * Checkpoints are taken every given number of ticks or milliseconds, and whenever {@link #checkpoint()} is called,
+ * for instance at the end of an episode. {@link #close()} takes a last checkpoint and waits for it to be written.
+ */
+public class QTableCheckpointer {
+
+    private final List<Slot> slots = new ArrayList<>();
+    private final long tickInterval; // Ticks between two checkpoints, 0 to disable
+    private final long nanosInterval; // Nanoseconds between two checkpoints, 0 to disable
+    private final Object lock = new Object();
+    private final Thread writer;
+    private final LatencyHistogram snapshotDurations = new LatencyHistogram("snapshot"); // On the control thread
+    private final LatencyHistogram writeDurations = new LatencyHistogram("write"); // On the writer thread
+
+    private long ticks; // Ticks since the last checkpoint
+    private long lastCheckpoint; // When the last checkpoint was taken, in nanoseconds
+    private long pendingTime; // When the pending snapshot was taken, in nanoseconds, 0 if there is none
+    private volatile long savedTime; // When the last saved snapshot was taken, in nanoseconds, 0 if none yet
+    private volatile long lastWriteDuration; // How long the last save took, in nanoseconds
+    private boolean writerWaiting; // Indicates whether the writer is idle and has to be woken up
+    private boolean closed;
+
+    /**
+     * Constructs a new QTableCheckpointer and starts its writer thread.
+     *
+     * @param tickInterval   The number of ticks between two checkpoints, 0 to disable.
+     * @param millisInterval The number of milliseconds between two checkpoints, 0 to disable.
+     */
+    public QTableCheckpointer(long tickInterval, long millisInterval) {
+        this.tickInterval = tickInterval;
+        this.nanosInterval = millisInterval * 1_000_000L;
+        this.lastCheckpoint = System.nanoTime();
+        this.writer = new Thread(this::writeLoop, "qtable-checkpointer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Registers a table to be saved on every checkpoint.
+     *
+     * @param table The table.
+     */
+    public void add(QTable table) {
+        synchronized (lock) {
+            slots.add(new Slot(table));
+        }
+    }
+
+    /**
+     * Counts one tick of the control loop and takes a checkpoint if an interval has elapsed.
+     * Call it from the control thread, which is the only one updating the tables.
+     */
+    public void tick() {
+        ticks++;
+        if (tickInterval > 0 && ticks >= tickInterval) {
+            checkpoint();
+        } else if (nanosInterval > 0 && System.nanoTime() - lastCheckpoint >= nanosInterval) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Copies every table into its spare buffer and wakes up the writer.
+     * Call it from the control thread, which is the only one updating the tables.
+     */
+    public void checkpoint() {
+        long start = System.nanoTime();
+        synchronized (lock) {
+            if (closed)
+                return;
+            for (Slot slot : slots)
+                slot.snapshot();
+            pendingTime = start;
+            if (writerWaiting)
+                lock.notifyAll();
+        }
+        ticks = 0;
+        lastCheckpoint = start;
+        snapshotDurations.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Takes a last checkpoint, waits until it is written and stops the writer thread.
+     */
+    public void close() {
+        checkpoint();
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Retrieves how long the last save took.
+     *
+     * @return The duration in milliseconds.
+     */
+    public double getLastWriteDuration() {
+        return lastWriteDuration / 1e6;
+    }
+
+    /**
+     * Retrieves how old the tables on disk are, that is the time since the last saved snapshot was taken.
+     *
+     * @return The staleness in milliseconds, or -1 if nothing has been saved yet.
+     */
+    public double getStaleness() {
+        long saved = savedTime;
+        return saved == 0 ? -1 : (System.nanoTime() - saved) / 1e6;
+    }
+
+    /**
+     * Prints the snapshot and write durations and the current staleness.
+     */
+    public void printMetrics() {
+        System.out.println("Q-table checkpoints:");
+        System.out.println("  " + snapshotDurations.summary());
+        synchronized (lock) {
+            System.out.println("  " + writeDurations.summary());
+        }
+        System.out.println(String.format("  staleness: %.1f ms", getStaleness()));
+    }
+
+    private void writeLoop() {
+        List<QTable> tables = new ArrayList<>();
+        List<double[]> values = new ArrayList<>();
+        List<long[]> visits = new ArrayList<>();
+        while (true) {
+            long snapshotTime;
+            synchronized (lock) {
+                while (pendingTime == 0 && !closed) {
+                    writerWaiting = true;
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    } finally {
+                        writerWaiting = false;
+                    }
+                }
+                if (pendingTime == 0)
+                    return;
+                tables.clear();
+                values.clear();
+                visits.clear();
+                for (Slot slot : slots) {
+                    int taken = slot.take();
+                    tables.add(slot.table);
+                    values.add(taken < 0 ? null : slot.values[taken]);
+                    visits.add(taken < 0 ? null : slot.visits[taken]);
+                }
+                snapshotTime = pendingTime;
+                pendingTime = 0;
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < values.size(); i++) {
+                if (values.get(i) != null)
+                    tables.get(i).saveSnapshot(values.get(i), visits.get(i));
+            }
+            long duration = System.nanoTime() - start;
+            synchronized (lock) {
+                writeDurations.record(duration);
+            }
+            lastWriteDuration = duration;
+            savedTime = snapshotTime;
+        }
+    }
+
+    /**
+     * The two buffers of one table.
+     */
+    private static class Slot {
+        private final QTable table;
+        private final double[][] values;
+        private final long[][] visits;
+        private int next; // The buffer the next snapshot goes into
+        private int pending = -1; // The buffer waiting for the writer, -1 if there is none
+
+        Slot(QTable table) {
+            this.table = table;
+            this.values = new double[][]{new double[table.getTableSize()], new double[table.getTableSize()]};
+            this.visits = new long[][]{new long[table.getTableSize()], new long[table.getTableSize()]};
+        }
+
+        void snapshot() {
+            if (pending < 0) {
+                pending = next;
+                next ^= 1;
+            }
+            table.snapshot(values[pending], visits[pending]);
+        }
+
+        int take() {
+            int taken = pending;
+            pending = -1;
+            return taken;
+        }
+    }
+}
@@ -0,0 +1,454 @@
+package mdp;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.zip.CRC32;
+
+/**
+ * The QTableFile class reads and writes Q-tables, both in the versioned binary format used by {@link QLearning} and
+ * in the original CSV format, and converts between them.
+ * <p>
+ * The binary format is little-endian:
+ * <pre>
+ *   byte[4]  magic "QTBL"
+ *   int      version
+ *   string   control system name
+ *   int      number of states, int number of actions
+ *   string[] state names, string[] action names
+ *   padding  up to a multiple of 8 bytes
+ *   double[] the values, row by row (one row per state)
+ *   long[]   the number of updates of each value, in the same order
+ *   int      CRC-32 of every previous byte
+ * </pre>
+ * where a string is a short length followed by its UTF-8 bytes. Files are read through a memory map and written to
+ * a temporary file that then replaces the old one, so a crash while saving never leaves a truncated table behind.
+ * <p>
+ * Tables trained separately, for instance on several machines, are combined with {@link #merge}.
+ * <p>
+ * Usage: {@code QTableFile csv2bin <system> <in.csv> <out.qtable>}, {@code QTableFile bin2csv <in.qtable> <out.csv>}
+ * or {@code QTableFile merge <out.qtable> <in.qtable>...}
+ */
+public class QTableFile {
+
+    private static final byte[] MAGIC = {'Q', 'T', 'B', 'L'};
+    private static final int VERSION = 2;
+    private static final String SEPARATOR = ",";
+
+    /**
+     * The content of a Q-table file.
+     */
+    public static class Table {
+        public final String system; // The name of the control system
+        public final String[] states; // The state names, one per row
+        public final String[] actions; // The action names, one per column
+        public final double[] values; // The values, row by row
+        public final long[] visits; // The number of updates of each value, row by row
+
+        /**
+         * Constructs a new Table whose values have never been updated.
+         *
+         * @param system  The name of the control system.
+         * @param states  The state names.
+         * @param actions The action names.
+         * @param values  The values, row by row.
+         */
+        public Table(String system, String[] states, String[] actions, double[] values) {
+            this(system, states, actions, values, new long[values.length]);
+        }
+
+        /**
+         * Constructs a new Table.
+         *
+         * @param system  The name of the control system.
+         * @param states  The state names.
+         * @param actions The action names.
+         * @param values  The values, row by row.
+         * @param visits  The number of updates of each value, row by row.
+         */
+        public Table(String system, String[] states, String[] actions, double[] values, long[] visits) {
+            if (values.length != states.length * actions.length || visits.length != values.length)
+                throw new IllegalArgumentException("Expected " + states.length * actions.length + " values but got "
+                        + values.length + " and " + visits.length + " counts");
+            this.system = system;
+            this.states = states;
+            this.actions = actions;
+            this.values = values;
+            this.visits = visits;
+        }
+    }
+
+    /**
+     * A binary Q-table read in place through a memory map, so that values can be streamed without copying the whole
+     * table to the heap.
+     */
+    public static class MappedTable {
+        public final String system; // The name of the control system
+        public final String[] states; // The state names, one per row
+        public final String[] actions; // The action names, one per column
+        private final ByteBuffer data;
+        private final int valuesOffset; // The position of the first value
+        private final int visitsOffset; // The position of the first count
+
+        private MappedTable(String system, String[] states, String[] actions, ByteBuffer data, int valuesOffset,
+                            int visitsOffset) {
+            this.system = system;
+            this.states = states;
+            this.actions = actions;
+            this.data = data;
+            this.valuesOffset = valuesOffset;
+            this.visitsOffset = visitsOffset;
+        }
+
+        /**
+         * Retrieves a value.
+         *
+         * @param cell The index of the value, row by row.
+         *
+         * @return The value.
+         */
+        public double value(int cell) {
+            return data.getDouble(valuesOffset + cell * 8);
+        }
+
+        /**
+         * Retrieves the number of updates of a value.
+         *
+         * @param cell The index of the value, row by row.
+         *
+         * @return The number of updates.
+         */
+        public long visits(int cell) {
+            return data.getLong(visitsOffset + cell * 8);
+        }
+
+        /**
+         * Copies the whole table to the heap.
+         *
+         * @return The table.
+         */
+        public Table toTable() {
+            double[] values = new double[states.length * actions.length];
+            long[] visits = new long[values.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = value(i);
+                visits[i] = visits(i);
+            }
+            return new Table(system, states, actions, values, visits);
+        }
+    }
+
+    /**
+     * The entry point of the conversion utility.
+     *
+     * @param args The command-line arguments.
+     */
+    public static void main(String[] args) {
+        try {
+            if (args.length == 4 && args[0].equals("csv2bin")) {
+                writeBinary(args[3], readCsv(args[2], args[1]));
+                return;
+            }
+            if (args.length == 3 && args[0].equals("bin2csv")) {
+                writeCsv(args[2], readBinary(args[1]));
+                return;
+            }
+            if (args.length >= 3 && args[0].equals("merge")) {
+                merge(args[1], Arrays.copyOfRange(args, 2, args.length));
+                return;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        System.out.println("Usage: QTableFile csv2bin <system> <in.csv> <out.qtable>");
+        System.out.println("       QTableFile bin2csv <in.qtable> <out.csv>");
+        System.out.println("       QTableFile merge <out.qtable> <in.qtable>...");
+    }
+
+    /**
+     * Reads a binary Q-table.
+     *
+     * @param path The path of the file.
+     *
+     * @return The table.
+     *
+     * @throws IOException If the file cannot be read, is not a Q-table or is corrupted.
+     */
+    public static Table readBinary(String path) throws IOException {
+        return mapBinary(path).toTable();
+    }
+
+    /**
+     * Maps a binary Q-table without copying its values. The checksum is verified first.
+     *
+     * @param path The path of the file.
+     *
+     * @return The mapped table.
+     *
+     * @throws IOException If the file cannot be read, is not a Q-table or is corrupted.
+     */
+    public static MappedTable mapBinary(String path) throws IOException {
+        MappedByteBuffer data;
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        if (data.limit() < MAGIC.length + 8)
+            throw new IOException(path + " is not a Q-table");
+
+        CRC32 crc = new CRC32();
+        ByteBuffer checked = data.duplicate();
+        checked.limit(data.limit() - 4);
+        crc.update(checked);
+        if ((int) crc.getValue() != data.getInt(data.limit() - 4))
+            throw new IOException(path + " is corrupted: checksum mismatch");
+
+        byte[] magic = new byte[MAGIC.length];
+        data.get(magic);
+        if (!Arrays.equals(magic, MAGIC))
+            throw new IOException(path + " is not a Q-table");
+        int version = data.getInt();
+        if (version != VERSION)
+            throw new IOException(path + " has version " + version + ", expected " + VERSION);
+
+        String system = getString(data);
+        String[] states = new String[data.getInt()];
+        String[] actions = new String[data.getInt()];
+        for (int i = 0; i < states.length; i++)
+            states[i] = getString(data);
+        for (int i = 0; i < actions.length; i++)
+            actions[i] = getString(data);
+        int valuesOffset = align(data.position());
+        int cells = states.length * actions.length;
+        int visitsOffset = valuesOffset + cells * 8;
+        int end = visitsOffset + cells * 8;
+        if (end != data.limit() - 4)
+            throw new IOException(path + " is corrupted: expected " + (end + 4) + " bytes but got " + data.limit());
+        return new MappedTable(system, states, actions, data, valuesOffset, visitsOffset);
+    }
+
+    /**
+     * Merges binary Q-tables of the same control system into one. Each value is the average of the input values
+     * weighted by their update counts, and its count is the sum of theirs; a value no input has updated is the plain
+     * average. Rows and columns are matched by name to the ones of the first input, and names it does not have are
+     * ignored.
+     * <p>
+     * The inputs are mapped and folded in one at a time, so memory does not grow with the number of inputs.
+     *
+     * @param path   The path of the merged file, which may be one of the inputs.
+     * @param inputs The paths of the inputs.
+     *
+     * @throws IOException If an input cannot be read, or belongs to another control system.
+     */
+    public static void merge(String path, String[] inputs) throws IOException {
+        MappedTable first = mapBinary(inputs[0]);
+        String system = first.system;
+        String[] states = first.states;
+        String[] actions = first.actions;
+        int cells = states.length * actions.length;
+        double[] weightedSums = new double[cells];
+        double[] plainSums = new double[cells];
+        int[] counts = new int[cells]; // The number of inputs that have each value
+        long[] visits = new long[cells];
+
+        Map<String, Integer> rows = indexOf(states);
+        Map<String, Integer> columns = indexOf(actions);
+        for (String input : inputs) {
+            MappedTable table = input.equals(inputs[0]) ? first : mapBinary(input);
+            if (!table.system.equals(system))
+                throw new IOException(input + " belongs to " + table.system + ", expected " + system);
+            int[] columnMap = new int[table.actions.length];
+            for (int a = 0; a < columnMap.length; a++)
+                columnMap[a] = columns.getOrDefault(table.actions[a], -1);
+            for (int s = 0; s < table.states.length; s++) {
+                int row = rows.getOrDefault(table.states[s], -1);
+                if (row < 0)
+                    continue;
+                for (int a = 0; a < columnMap.length; a++) {
+                    if (columnMap[a] < 0)
+                        continue;
+                    int source = s * table.actions.length + a;
+                    int target = row * actions.length + columnMap[a];
+                    double value = table.value(source);
+                    long n = table.visits(source);
+                    weightedSums[target] += value * n;
+                    plainSums[target] += value;
+                    counts[target]++;
+                    visits[target] += n;
+                }
+            }
+        }
+
+        double[] values = new double[cells];
+        for (int i = 0; i < cells; i++) {
+            if (visits[i] > 0)
+                values[i] = weightedSums[i] / visits[i];
+            else if (counts[i] > 0)
+                values[i] = plainSums[i] / counts[i];
+        }
+        writeBinary(path, new Table(system, states, actions, values, visits));
+    }
+
+    private static Map<String, Integer> indexOf(String[] names) {
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < names.length; i++)
+            index.put(names[i], i);
+        return index;
+    }
+
+    /**
+     * Writes a binary Q-table atomically: the table is written and flushed to a temporary file in the same
+     * directory, which then replaces the target.
+     *
+     * @param path  The path of the file.
+     * @param table The table.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    public static void writeBinary(String path, Table table) throws IOException {
+        int size = MAGIC.length + 4 + stringSize(table.system) + 8;
+        for (String state : table.states)
+            size += stringSize(state);
+        for (String action : table.actions)
+            size += stringSize(action);
+        size = align(size) + table.values.length * 16 + 4;
+
+        ByteBuffer data = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        data.put(MAGIC);
+        data.putInt(VERSION);
+        putString(data, table.system);
+        data.putInt(table.states.length);
+        data.putInt(table.actions.length);
+        for (String state : table.states)
+            putString(data, state);
+        for (String action : table.actions)
+            putString(data, action);
+        data.position(align(data.position()));
+        data.asDoubleBuffer().put(table.values);
+        data.position(data.position() + table.values.length * 8);
+        data.asLongBuffer().put(table.visits);
+        data.position(size - 4);
+        CRC32 crc = new CRC32();
+        crc.update(data.array(), 0, size - 4);
+        data.putInt((int) crc.getValue());
+        data.flip();
+
+        Path target = Paths.get(path).toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (data.hasRemaining())
+                channel.write(data);
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads a Q-table in the original CSV format.
+     *
+     * @param path   The path of the file.
+     * @param system The name of the control system, which the CSV format does not store.
+     *
+     * @return The table.
+     *
+     * @throws IOException If the file cannot be read or a value is not a number.
+     */
+    public static Table readCsv(String path, String system) throws IOException {
+        List<String> states = new ArrayList<>();
+        List<double[]> rows = new ArrayList<>();
+        String[] actions;
+        try (Scanner file = new Scanner(new File(path))) {
+            String[] rowLabels = file.nextLine().split(SEPARATOR);
+            actions = Arrays.copyOfRange(rowLabels, 1, rowLabels.length);
+            while (file.hasNextLine()) {
+                String[] row = file.nextLine().split(SEPARATOR);
+                if (row.length < 2)
+                    continue;
+                double[] values = new double[actions.length];
+                for (int i = 1; i < row.length && i <= actions.length; i++)
+                    values[i - 1] = Double.parseDouble(row[i]);
+                states.add(row[0]);
+                rows.add(values);
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException(path + " contains a value that is not a number", e);
+        }
+        double[] values = new double[states.size() * actions.length];
+        for (int i = 0; i < rows.size(); i++)
+            System.arraycopy(rows.get(i), 0, values, i * actions.length, actions.length);
+        return new Table(system, states.toArray(new String[0]), actions, values);
+    }
+
+    /**
+     * Writes a Q-table in the original CSV format.
+     *
+     * @param path  The path of the file.
+     * @param table The table.
+     *
+     * @throws FileNotFoundException If the file cannot be created.
+     */
+    public static void writeCsv(String path, Table table) throws FileNotFoundException {
+        try (PrintWriter file = new PrintWriter(path)) {
+            file.write(" Q-TABLE ");
+            file.write(SEPARATOR);
+            for (String action : table.actions) {
+                file.write(action);
+                file.write(SEPARATOR);
+            }
+            file.write("\n");
+            for (int s = 0; s < table.states.length; s++) {
+                file.write(table.states[s]);
+                file.write(SEPARATOR);
+                for (int a = 0; a < table.actions.length; a++) {
+                    file.write(String.valueOf(table.values[s * table.actions.length + a]));
+                    file.write(SEPARATOR);
+                }
+                file.write("\n");
+            }
+        }
+    }
+
+    private static int align(int position) {
+        return (position + 7) & ~7;
+    }
+
+    private static int stringSize(String value) {
+        return 2 + value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void putString(ByteBuffer data, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        data.putShort((short) bytes.length);
+        data.put(bytes);
+    }
+
+    private static String getString(ByteBuffer data) {
+        byte[] bytes = new byte[data.getShort()];
+        data.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
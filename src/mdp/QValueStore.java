@@ -0,0 +1,214 @@
+package mdp;
+
+import torcs.Constants.QValuePrecision;
+
+import java.util.Arrays;
+
+/**
+ * The QValueStore class holds the Q-values of a table in a flat array of doubles, floats or 16-bit integers.
+ * Smaller values fit more of a large table in the caches, at the cost of precision.
+ * <p>
+ * Values that fall between two representable ones are rounded stochastically, up with a probability proportional to
+ * their distance from the lower one. The rounding is then unbiased: a learning step smaller than the resolution still
+ * moves the stored value by the right amount on average, where rounding to nearest would drop it every time.
+ * <p>
+ * 16-bit values are {@code offset + scale * n} for n from -32767 to 32767, with the scale and offset of the table set
+ * from the range of its values, and 0 always representable. Values out of the range are clamped.
+ */
+public abstract class QValueStore {
+
+    private long seed = 0x9E3779B97F4A7C15L; // The state of the xorshift generator of the rounding
+
+    /**
+     * Creates a store with every value at 0.
+     *
+     * @param precision The precision of the values.
+     * @param size      The number of values.
+     * @param min       The lowest value expected, which only matters for 16-bit values.
+     * @param max       The highest value expected, which only matters for 16-bit values.
+     *
+     * @return The store.
+     */
+    public static QValueStore create(QValuePrecision precision, int size, double min, double max) {
+        switch (precision) {
+            case DOUBLE:
+                return new DoubleStore(size);
+            case FLOAT:
+                return new FloatStore(size);
+            case INT16:
+                return new ShortStore(size, min, max);
+        }
+        throw new IllegalArgumentException("Unknown precision " + precision);
+    }
+
+    /**
+     * Retrieves a value.
+     *
+     * @param index The index of the value.
+     *
+     * @return The value.
+     */
+    public abstract double get(int index);
+
+    /**
+     * Stores a value, rounded stochastically to the precision of the store.
+     *
+     * @param index The index of the value.
+     * @param value The value.
+     *
+     * @return The value actually stored.
+     */
+    public abstract double set(int index, double value);
+
+    /**
+     * Sets every value to 0.
+     */
+    public abstract void clear();
+
+    /**
+     * Retrieves the number of values.
+     *
+     * @return The number of values.
+     */
+    public abstract int size();
+
+    /**
+     * Retrieves the memory taken by one value.
+     *
+     * @return The number of bytes per value.
+     */
+    public abstract int getBytesPerValue();
+
+    /**
+     * Draws a uniform number for the rounding. The generator is not shared, like the store.
+     *
+     * @return A number in [0, 1).
+     */
+    final double nextUnit() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        return (seed >>> 11) * 0x1.0p-53;
+    }
+
+    private static final class DoubleStore extends QValueStore {
+        private final double[] values;
+
+        DoubleStore(int size) {
+            this.values = new double[size];
+        }
+
+        @Override
+        public double get(int index) {
+            return values[index];
+        }
+
+        @Override
+        public double set(int index, double value) {
+            values[index] = value;
+            return value;
+        }
+
+        @Override
+        public void clear() {
+            Arrays.fill(values, 0.0);
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public int getBytesPerValue() {
+            return Double.BYTES;
+        }
+    }
+
+    private static final class FloatStore extends QValueStore {
+        private final float[] values;
+
+        FloatStore(int size) {
+            this.values = new float[size];
+        }
+
+        @Override
+        public double get(int index) {
+            return values[index];
+        }
+
+        @Override
+        public double set(int index, double value) {
+            float nearest = (float) value;
+            if (nearest != value && !Float.isInfinite(nearest)) {
+                // The nearest float is one neighbour of the value, the other lies one float away on the other side
+                float other = nearest < value ? Math.nextUp(nearest) : Math.nextDown(nearest);
+                if (nextUnit() < (value - nearest) / ((double) other - nearest))
+                    nearest = other;
+            }
+            values[index] = nearest;
+            return nearest;
+        }
+
+        @Override
+        public void clear() {
+            Arrays.fill(values, 0.0f);
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public int getBytesPerValue() {
+            return Float.BYTES;
+        }
+    }
+
+    private static final class ShortStore extends QValueStore {
+        private static final int LIMIT = Short.MAX_VALUE; // The largest step, either way from the offset
+
+        private final short[] values;
+        private final double scale; // The difference between two consecutive values
+        private final double offset; // The value of step 0, a multiple of the scale so that 0 is a step
+
+        ShortStore(int size, double min, double max) {
+            this.values = new short[size];
+            this.scale = Math.max(max - min, Double.MIN_NORMAL) / (2.0 * LIMIT);
+            this.offset = this.scale * Math.rint((min + max) / 2 / this.scale);
+            this.clear();
+        }
+
+        @Override
+        public double get(int index) {
+            return offset + scale * values[index];
+        }
+
+        @Override
+        public double set(int index, double value) {
+            double steps = Math.max(-LIMIT, Math.min(LIMIT, (value - offset) / scale));
+            double floor = Math.floor(steps);
+            int step = (int) floor;
+            if (step < LIMIT && nextUnit() < steps - floor)
+                step++;
+            values[index] = (short) step;
+            return offset + scale * step;
+        }
+
+        @Override
+        public void clear() {
+            Arrays.fill(values, (short) Math.rint(-offset / scale));
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public int getBytesPerValue() {
+            return Short.BYTES;
+        }
+    }
+}
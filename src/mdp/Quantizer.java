@@ -0,0 +1,109 @@
+package mdp;
+
+import java.util.Arrays;
+
+/**
+ * The Quantizer class maps a continuous sensor value to a bucket through a lookup table precomputed on a uniform
+ * grid, so quantizing costs one multiplication, two clamps, one array load and a comparison or two with the nearest
+ * thresholds, whatever the number of buckets.
+ * <p>
+ * Buckets are delimited by thresholds, each threshold belonging to the bucket above it unless stated otherwise. The
+ * thresholds must lie on the grid, between its minimum and maximum; values below the minimum fall in the first bucket
+ * and values from the maximum on in the last one.
+ * <p>
+ * The grid cell only settles the bucket up to one threshold: a value exactly on a threshold may be rounded into the
+ * cell next to it, and a threshold belonging to the bucket below shares its cell with the values above it. One
+ * comparison with the threshold next to the bucket of the cell settles those, so every threshold is honored exactly.
+ */
+public final class Quantizer {
+
+    private final double min; // The lower end of the grid
+    private final double scale; // The number of grid cells per unit
+    private final double[] thresholds;
+    private final boolean[] upperInclusive; // Whether each threshold belongs to the bucket above it
+    private final int[] values; // The value of each bucket
+    private final int[] table; // The bucket of each cell, cell 0 holding the values below the minimum
+
+    /**
+     * Constructs a new Quantizer whose thresholds all belong to the bucket above them.
+     *
+     * @param min        The lower end of the grid.
+     * @param max        The upper end of the grid.
+     * @param step       The width of one grid cell.
+     * @param thresholds The sorted thresholds between the buckets.
+     * @param values     The value returned for each bucket, one more than there are thresholds.
+     */
+    public Quantizer(double min, double max, double step, double[] thresholds, int[] values) {
+        this(min, max, step, thresholds, allTrue(thresholds.length), values);
+    }
+
+    /**
+     * Constructs a new Quantizer.
+     *
+     * @param min            The lower end of the grid.
+     * @param max            The upper end of the grid.
+     * @param step           The width of one grid cell.
+     * @param thresholds     The sorted thresholds between the buckets.
+     * @param upperInclusive For each threshold, true if it belongs to the bucket above it, false if to the one below.
+     * @param values         The value returned for each bucket, one more than there are thresholds.
+     */
+    public Quantizer(double min, double max, double step, double[] thresholds, boolean[] upperInclusive,
+                     int[] values) {
+        if (values.length != thresholds.length + 1)
+            throw new IllegalArgumentException("Expected " + (thresholds.length + 1) + " values but got "
+                    + values.length);
+        if (upperInclusive.length != thresholds.length)
+            throw new IllegalArgumentException("Expected " + thresholds.length + " inclusivities but got "
+                    + upperInclusive.length);
+        this.min = min;
+        this.scale = 1.0 / step;
+        this.thresholds = thresholds.clone();
+        this.upperInclusive = upperInclusive.clone();
+        this.values = values.clone();
+        int cells = (int) Math.round((max - min) * scale) + 2;
+        this.table = new int[cells];
+        double tolerance = step * 1e-6;
+        for (int cell = 0; cell < cells; cell++) {
+            double lowerEdge = cell == 0 ? Double.NEGATIVE_INFINITY : min + (cell - 1) * step;
+            int bucket = 0;
+            while (bucket < thresholds.length && thresholds[bucket] <= lowerEdge + tolerance)
+                bucket++;
+            table[cell] = bucket;
+        }
+    }
+
+    private static boolean[] allTrue(int length) {
+        boolean[] array = new boolean[length];
+        Arrays.fill(array, true);
+        return array;
+    }
+
+    /**
+     * Maps a value to the value of its bucket.
+     *
+     * @param value The value; NaN falls in the first bucket.
+     *
+     * @return The value of the bucket.
+     */
+    public int quantize(double value) {
+        double cell = Math.floor((value - min) * scale) + 1;
+        int bucket = table[(int) Math.max(0, Math.min(table.length - 1, cell))];
+        if (bucket > 0 && !isAbove(value, bucket - 1))
+            bucket--;
+        else if (bucket < thresholds.length && isAbove(value, bucket))
+            bucket++;
+        return values[bucket];
+    }
+
+    /**
+     * Tells whether a value belongs above a threshold. NaN belongs above none.
+     *
+     * @param value     The value.
+     * @param threshold The index of the threshold.
+     *
+     * @return True if the value lies in a bucket above the threshold.
+     */
+    private boolean isAbove(double value, int threshold) {
+        return upperInclusive[threshold] ? value >= thresholds[threshold] : value > thresholds[threshold];
+    }
+}
@@ -0,0 +1,153 @@
+package mdp;
+
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The ReplayLearner class moves Q-learning off the control thread.
+ * The control thread only records transitions into an {@link ExperienceReplay} and reads greedy actions from a
+ * policy the learner publishes; a learner thread samples mini-batches from the buffer, applies the updates to the
+ * Q-table, which it owns from then on, and republishes the policy after every batch.
+ * <p>
+ * The learner replays at most a given number of updates per recorded transition and sleeps when it is ahead, so
+ * transitions are reused without the learner spinning on a stale buffer. When a {@link QTableCheckpointer} is
+ * given, the learner drives it, because it is the only thread that may read the table consistently.
+ *
+ * @param <S> The enum of the states of the control system.
+ * @param <A> The enum of the actions of the control system.
+ */
+public class ReplayLearner<S extends Enum<S>, A extends Enum<A>> {
+
+    private static final long IDLE_NANOS = 1_000_000L; // How long the learner sleeps when it has nothing to do
+
+    private final QLearning<S, A> table;
+    private final ExperienceReplay replay;
+    private final int batchSize;
+    private final int updatesPerTransition;
+    private final QTableCheckpointer checkpointer; // Null if the table is not checkpointed
+    private final Thread learner;
+    private final Random learnerRandom = new Random();
+    private final Random actorRandom = new Random();
+
+    // The greedy action ordinal of each state, written by the learner. The actor reads it without synchronization:
+    // an int is never torn, so it always reads a valid action, at worst from the previous batch
+    private final int[] policy;
+    private volatile boolean checkpointRequested;
+    private volatile boolean running = true;
+    private long updates; // The number of updates applied, owned by the learner
+    private long discarded; // The number of samples discarded because they were overwritten, owned by the learner
+
+    /**
+     * Constructs a new ReplayLearner and starts its learner thread.
+     *
+     * @param table                The Q-table, which must not be used by any other thread from now on.
+     * @param capacity             The number of transitions kept.
+     * @param batchSize            The number of updates per batch.
+     * @param updatesPerTransition The maximum number of updates per recorded transition.
+     * @param checkpointer         The checkpointer saving the table, or null.
+     */
+    public ReplayLearner(QLearning<S, A> table, int capacity, int batchSize, int updatesPerTransition,
+                         QTableCheckpointer checkpointer) {
+        this.table = table;
+        this.replay = new ExperienceReplay(capacity);
+        this.batchSize = batchSize;
+        this.updatesPerTransition = updatesPerTransition;
+        this.checkpointer = checkpointer;
+        this.policy = new int[table.getStateCount()];
+        publishPolicy();
+        this.learner = new Thread(this::learnLoop, "replay-learner");
+        this.learner.setDaemon(true);
+        this.learner.start();
+    }
+
+    /**
+     * Records a transition. Call it from the control thread only.
+     *
+     * @param state     The state the action was performed in.
+     * @param action    The action performed.
+     * @param reward    The reward received.
+     * @param nextState The state reached.
+     * @param terminal  True if the episode ended with this transition.
+     */
+    public void record(S state, A action, double reward, S nextState, boolean terminal) {
+        replay.add(state.ordinal(), action.ordinal(), reward, nextState.ordinal(), terminal);
+    }
+
+    /**
+     * Chooses the action for a state: the greedy action of the last published policy, or a random one with the
+     * exploration rate of the table. Call it from the control thread only.
+     *
+     * @param state The current state.
+     *
+     * @return The action.
+     */
+    public A act(S state) {
+        if (actorRandom.nextDouble() <= table.getEpsilon())
+            return table.getAction(actorRandom.nextInt(table.getActionCount()));
+        return table.getAction(policy[state.ordinal()]);
+    }
+
+    /**
+     * Asks the learner to take a checkpoint after its current batch.
+     */
+    public void requestCheckpoint() {
+        checkpointRequested = true;
+    }
+
+    /**
+     * Stops the learner thread after its current batch and closes the checkpointer, which saves the table a last
+     * time. The table can be used by the calling thread again afterwards.
+     */
+    public void close() {
+        running = false;
+        LockSupport.unpark(learner);
+        try {
+            learner.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (checkpointer != null)
+            checkpointer.close();
+    }
+
+    /**
+     * Prints the number of recorded transitions and applied updates.
+     */
+    public void printMetrics() {
+        System.out.println("Experience replay: " + replay.getWrittenCount() + " transitions, " + updates
+                + " updates, " + discarded + " overwritten samples discarded");
+    }
+
+    private void learnLoop() {
+        while (running) {
+            long budget = replay.getWrittenCount() * updatesPerTransition - updates;
+            if (budget < batchSize) {
+                LockSupport.parkNanos(IDLE_NANOS);
+                continue;
+            }
+            for (int i = 0; i < batchSize; i++) {
+                if (replay.sample(learnerRandom)) {
+                    table.learn(replay.state, replay.action, replay.reward, replay.nextState, replay.terminal);
+                    updates++;
+                } else {
+                    discarded++;
+                }
+            }
+            publishPolicy();
+
+            if (checkpointer != null) {
+                if (checkpointRequested) {
+                    checkpointRequested = false;
+                    checkpointer.checkpoint();
+                } else {
+                    checkpointer.tick();
+                }
+            }
+        }
+    }
+
+    private void publishPolicy() {
+        for (int state = 0; state < policy.length; state++)
+            policy[state] = table.bestAction(state);
+    }
+}
@@ -0,0 +1,34 @@
+package mdp;
+
+/**
+ * The ScalarKernels class implements {@link Kernels} with plain loops, for JVMs without the Vector API.
+ * The dot product keeps four partial sums, so consecutive additions do not wait for each other.
+ */
+final class ScalarKernels implements Kernels {
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float sum0 = 0;
+        float sum1 = 0;
+        float sum2 = 0;
+        float sum3 = 0;
+        for (int i = 0; i < length; i += 4) {
+            sum0 += a[aOffset + i] * b[bOffset + i];
+            sum1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+            sum2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+            sum3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    @Override
+    public void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length) {
+        for (int i = 0; i < length; i++)
+            y[yOffset + i] += alpha * x[xOffset + i];
+    }
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,37 @@
+package mdp;
+
+import torcs.SensorModel;
+
+/**
+ * The SensorQAgent interface is a learner of one control system that builds its own states from the sensors, such as
+ * {@link TileCodedQLearning} and {@link AdaptiveQLearning}, unlike a {@link QAgent}, which is given enum states.
+ *
+ * @param <A> The enum of the actions of the control system.
+ */
+public interface SensorQAgent<A extends Enum<A>> {
+
+    /**
+     * Learns from the last transition and chooses the action for the current sensors, epsilon-greedily.
+     *
+     * @param sensors         The current sensor model of the car.
+     * @param actionPerformed The action performed on the previous tick.
+     * @param reward          The reward received.
+     *
+     * @return The action to perform.
+     */
+    A update(SensorModel sensors, A actionPerformed, double reward);
+
+    /**
+     * Chooses the greedy action for the current sensors, without learning.
+     *
+     * @param sensors The current sensor model of the car.
+     *
+     * @return The action with the highest value.
+     */
+    A nextOnlyBestAction(SensorModel sensors);
+
+    /**
+     * Tells the learner the episode has ended, so the next tick is not learned as a transition from this one.
+     */
+    void endEpisode();
+}
@@ -0,0 +1,205 @@
+package mdp;
+
+import torcs.Constants;
+import torcs.Constants.ControlSystems;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static torcs.Constants.DISCOUNT_FACTOR;
+import static torcs.Constants.LEARNING_RATE;
+
+/**
+ * The SharedQTable class is a Q-table that many agents, each on its own thread, can read and update at once.
+ * Every value is stored as the bits of a double in an {@link AtomicLongArray} and updated with a compare-and-set loop,
+ * so there is no lock: two agents only retry when they update the very same state and action at the same time.
+ * <p>
+ * Reads are not a consistent cut of the table, which Q-learning tolerates: the TD target may mix values written
+ * before and after a concurrent update. Each agent, created with {@link #newAgent}, has its own exploration rate and
+ * random generator, so agents never contend on anything but the values and their update counts.
+ * <p>
+ * The table is loaded and saved like the one of {@link QLearning}, in the same files.
+ *
+ * @param <S> The enum of the states of the control system.
+ * @param <A> The enum of the actions of the control system.
+ */
+public class SharedQTable<S extends Enum<S>, A extends Enum<A>> implements QTable {
+
+    private final QLearning<S, A> file; // Loads the initial values and saves snapshots, never updated
+    private final A[] possibleActions; // Every action, in ordinal order
+    private final int actionCount;
+    private final AtomicLongArray cells; // The bits of the Q-value of a state and action, at state * actions + action
+    private final AtomicLongArray visits; // The number of updates of each Q-value, in the same order
+
+    /**
+     * Constructs a new SharedQTable for a control system, loading its Q-table if it has been saved before.
+     *
+     * @param system     The control system, which selects the file of the Q-table.
+     * @param stateType  The enum of the states.
+     * @param actionType The enum of the actions.
+     */
+    public SharedQTable(ControlSystems system, Class<S> stateType, Class<A> actionType) {
+        this.file = new QLearning<>(system, stateType, actionType);
+        this.possibleActions = actionType.getEnumConstants();
+        this.actionCount = this.possibleActions.length;
+
+        double[] values = new double[this.file.getTableSize()];
+        long[] counts = new long[values.length];
+        this.file.snapshot(values, counts);
+        this.cells = new AtomicLongArray(values.length);
+        for (int i = 0; i < values.length; i++)
+            this.cells.set(i, Double.doubleToRawLongBits(values[i]));
+        this.visits = new AtomicLongArray(counts);
+    }
+
+    /**
+     * Creates an agent learning into this table.
+     *
+     * @param epsilon The probability of choosing a random action instead of the greedy one.
+     * @param seed    The seed of the random generator of the agent.
+     *
+     * @return The agent, to be used by a single thread.
+     */
+    public Agent newAgent(double epsilon, long seed) {
+        return new Agent(epsilon, seed);
+    }
+
+    /**
+     * Applies one Q-learning update to a transition given by ordinals.
+     *
+     * @param state     The ordinal of the state the action was performed in.
+     * @param action    The ordinal of the action performed.
+     * @param reward    The reward received.
+     * @param nextState The ordinal of the state reached.
+     * @param terminal  True if the episode ended with this transition, so the next state is not bootstrapped.
+     */
+    public void learn(int state, int action, double reward, int nextState, boolean terminal) {
+        double target = terminal ? reward : reward + DISCOUNT_FACTOR * this.getMaxQValue(nextState);
+        int index = state * this.actionCount + action;
+        while (true) {
+            long bits = this.cells.get(index);
+            double oldQValue = Double.longBitsToDouble(bits);
+            double newQValue = Constants.fastRound(oldQValue + LEARNING_RATE * (target - oldQValue), 8);
+            if (this.cells.compareAndSet(index, bits, Double.doubleToRawLongBits(newQValue)))
+                break;
+        }
+        this.visits.getAndIncrement(index);
+    }
+
+    /**
+     * Retrieves a Q-value.
+     *
+     * @param state  The ordinal of the state.
+     * @param action The ordinal of the action.
+     *
+     * @return The Q-value.
+     */
+    public double getQValue(int state, int action) {
+        return Double.longBitsToDouble(this.cells.get(state * this.actionCount + action));
+    }
+
+    private double getMaxQValue(int state) {
+        int row = state * this.actionCount;
+        double maxValue = -Double.MAX_VALUE;
+        for (int i = 0; i < this.actionCount; i++)
+            maxValue = Math.max(maxValue, Double.longBitsToDouble(this.cells.get(row + i)));
+        return maxValue;
+    }
+
+    /**
+     * Finds the greedy action of a state, choosing uniformly among ties with reservoir sampling.
+     *
+     * @param state  The ordinal of the state.
+     * @param random The random generator of the calling agent.
+     *
+     * @return The ordinal of the action with the highest value.
+     */
+    public int bestAction(int state, Random random) {
+        int row = state * this.actionCount;
+        double maxValue = -Double.MAX_VALUE;
+        int best = -1;
+        int ties = 0;
+        for (int i = 0; i < this.actionCount; i++) {
+            double value = Double.longBitsToDouble(this.cells.get(row + i));
+            if (value > maxValue) {
+                maxValue = value;
+                best = i;
+                ties = 1;
+            } else if (value == maxValue && best >= 0 && random.nextInt(++ties) == 0) {
+                best = i;
+            }
+        }
+        return best >= 0 ? best : random.nextInt(this.actionCount);
+    }
+
+    @Override
+    public int getTableSize() {
+        return this.cells.length();
+    }
+
+    @Override
+    public void snapshot(double[] values, long[] visits) {
+        for (int i = 0; i < this.cells.length(); i++) {
+            values[i] = Double.longBitsToDouble(this.cells.get(i));
+            visits[i] = this.visits.get(i);
+        }
+    }
+
+    @Override
+    public void saveSnapshot(double[] values, long[] visits) {
+        this.file.saveSnapshot(values, visits);
+    }
+
+    /**
+     * Saves the Q-table in the binary format, replacing the previous file atomically.
+     */
+    public void saveTable() {
+        double[] values = new double[this.cells.length()];
+        long[] counts = new long[values.length];
+        this.snapshot(values, counts);
+        this.saveSnapshot(values, counts);
+    }
+
+    /**
+     * The Agent class is the view of the table of one agent, with its own exploration rate and random generator.
+     */
+    public class Agent implements QAgent<S, A> {
+
+        private final Random random;
+        private final double epsilon;
+
+        private Agent(double epsilon, long seed) {
+            this.epsilon = epsilon;
+            this.random = new Random(seed);
+        }
+
+        @Override
+        public A update(S lastState, S currentState, A actionPerformed, double reward) {
+            if (lastState != null)
+                learn(lastState.ordinal(), actionPerformed.ordinal(), reward, currentState.ordinal(), false);
+            return nextAction(currentState);
+        }
+
+        /**
+         * Chooses an action epsilon-greedily.
+         *
+         * @param state The current state.
+         *
+         * @return The action.
+         */
+        public A nextAction(S state) {
+            if (this.random.nextDouble() > this.epsilon)
+                return possibleActions[bestAction(state.ordinal(), this.random)];
+            return possibleActions[this.random.nextInt(actionCount)];
+        }
+
+        /**
+         * Retrieves the probability of choosing a random action instead of the greedy one.
+         *
+         * @return The exploration rate.
+         */
+        public double getEpsilon() {
+            return this.epsilon;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package mdp;
+
+import torcs.Constants;
+import torcs.SensorModel;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import static torcs.Constants.DISCOUNT_FACTOR;
+import static torcs.Constants.LEARNING_RATE;
+
+/**
+ * The SparseQLearning class implements tabular Q-learning over joint states, such as the steering and acceleration
+ * states together or a state conditioned on speed and gear, whose cross product is too large for the dense table of
+ * {@link QLearning}.
+ * States are {@code long} keys packed by a {@link StateKey}, and the values live in a {@link SparseQStore}, so memory
+ * grows with the states actually visited, up to a budget set up front. Updates and greedy selection work as in
+ * {@link QLearning}: the TD target bootstraps from the best value of the next state, and ties are broken uniformly
+ * at random. As a {@link SensorQAgent}, it builds the joint state of every tick with a {@link JointStateEncoder}.
+ * <p>
+ * The table is saved in the binary format of {@link QTableFile}, one row per visited state named after its key, with
+ * the visits of the state as the update count of each of its values. Loading restores the visits, so eviction keeps
+ * judging states by their whole history; a file with more states than the budget allows keeps the most visited ones.
+ *
+ * @param <A> The enum of the actions.
+ */
+public class SparseQLearning<A extends Enum<A>> implements SensorQAgent<A> {
+
+    private final SparseQStore store;
+    private final JointStateEncoder encoder;
+    private final A[] possibleActions; // Every action, in ordinal order
+    private final String system;
+    private final String path;
+    private final Random random = new Random(System.currentTimeMillis());
+    private double epsilon;
+    private long previousState = -1; // The key of the state of the previous tick, -1 at the start of an episode
+
+    /**
+     * Constructs a new SparseQLearning, loading its table if it has been saved before.
+     *
+     * @param system     The name of the control system, saved with the table.
+     * @param encoder    The encoder of the joint states of the sensors.
+     * @param actionType The enum of the actions.
+     * @param maxBytes   The memory budget of the table.
+     * @param path       The file of the table.
+     */
+    public SparseQLearning(String system, JointStateEncoder encoder, Class<A> actionType, long maxBytes,
+                           String path) {
+        this.system = system;
+        this.encoder = encoder;
+        this.possibleActions = actionType.getEnumConstants();
+        this.store = new SparseQStore(this.possibleActions.length, maxBytes);
+        this.path = path;
+        if (new File(path).exists())
+            this.loadTable();
+    }
+
+    private void loadTable() {
+        try {
+            QTableFile.MappedTable table = QTableFile.mapBinary(this.path);
+            int[] columns = new int[table.actions.length]; // The action ordinal of each column, -1 if unknown
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = -1;
+                for (A action : this.possibleActions) {
+                    if (action.name().equals(table.actions[i]))
+                        columns[i] = action.ordinal();
+                }
+            }
+            // The visits of a state, saved with each of its values; merged tables may count them per value
+            long[] stateVisits = new long[table.states.length];
+            Integer[] order = new Integer[table.states.length];
+            for (int s = 0; s < order.length; s++) {
+                order[s] = s;
+                for (int i = 0; i < columns.length; i++)
+                    stateVisits[s] = Math.max(stateVisits[s], table.visits(s * columns.length + i));
+            }
+            int loaded = Math.min(order.length, this.store.getCapacity());
+            if (loaded < order.length) {
+                // Creating a row in a full store would evict a state at random: keep the most visited ones instead
+                System.out.println("WARNING!!! -> Sparse tablaQ holds " + order.length + " states, only the "
+                        + loaded + " most visited fit in its memory budget...");
+                Arrays.sort(order, Comparator.comparingLong((Integer s) -> stateVisits[s]).reversed());
+            }
+            for (int n = 0; n < loaded; n++) {
+                int s = order[n];
+                int row = this.store.visit(Long.parseLong(table.states[s]));
+                this.store.setVisits(row, stateVisits[s]);
+                for (int i = 0; i < columns.length; i++) {
+                    if (columns[i] >= 0)
+                        this.store.set(row, columns[i], table.value(s * columns.length + i));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.out.println("ERROR!!! -> Could not load sparse tablaQ from binary file...");
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public A update(SensorModel sensors, A actionPerformed, double reward) {
+        long state = this.encoder.encode(sensors);
+        A action = this.update(this.previousState, state, actionPerformed, reward);
+        this.previousState = state;
+        return action;
+    }
+
+    @Override
+    public A nextOnlyBestAction(SensorModel sensors) {
+        return this.possibleActions[this.bestAction(this.encoder.encode(sensors))];
+    }
+
+    @Override
+    public void endEpisode() {
+        this.previousState = -1;
+    }
+
+    /**
+     * Learns from the last transition and chooses the action for the current state, epsilon-greedily.
+     *
+     * @param lastState       The key of the state the action was performed in, or -1 on the first tick.
+     * @param currentState    The key of the state reached.
+     * @param actionPerformed The action performed.
+     * @param reward          The reward received.
+     *
+     * @return The action to perform in the current state.
+     */
+    public A update(long lastState, long currentState, A actionPerformed, double reward) {
+        if (lastState >= 0)
+            this.learn(lastState, actionPerformed.ordinal(), reward, currentState, false);
+        if (this.random.nextDouble() > this.epsilon)
+            return this.possibleActions[this.bestAction(currentState)];
+        return this.possibleActions[this.random.nextInt(this.possibleActions.length)];
+    }
+
+    /**
+     * Applies one Q-learning update to a transition.
+     *
+     * @param state     The key of the state the action was performed in.
+     * @param action    The ordinal of the action performed.
+     * @param reward    The reward received.
+     * @param nextState The key of the state reached.
+     * @param terminal  True if the episode ended with this transition, so the next state is not bootstrapped.
+     */
+    public void learn(long state, int action, double reward, long nextState, boolean terminal) {
+        // Read the next state first: creating the row of the state may evict it
+        double target = terminal ? reward : reward + DISCOUNT_FACTOR * this.getMaxQValue(nextState);
+        int row = this.store.visit(state);
+        double oldQValue = this.store.get(row, action);
+        double newQValue = oldQValue + LEARNING_RATE * (target - oldQValue);
+        this.store.set(row, action, Constants.fastRound(newQValue, 8));
+    }
+
+    private double getMaxQValue(long state) {
+        int row = this.store.find(state);
+        if (row < 0)
+            return 0.0;
+        double maxValue = this.store.get(row, 0);
+        for (int i = 1; i < this.possibleActions.length; i++)
+            maxValue = Math.max(maxValue, this.store.get(row, i));
+        return maxValue;
+    }
+
+    /**
+     * Finds the greedy action of a state, choosing uniformly among ties with reservoir sampling.
+     *
+     * @param state The key of the state.
+     *
+     * @return The ordinal of the action, random if the state has never been updated.
+     */
+    public int bestAction(long state) {
+        int row = this.store.find(state);
+        if (row < 0)
+            return this.random.nextInt(this.possibleActions.length);
+        double maxValue = this.store.get(row, 0);
+        int best = 0;
+        int ties = 1;
+        for (int i = 1; i < this.possibleActions.length; i++) {
+            double value = this.store.get(row, i);
+            if (value > maxValue) {
+                maxValue = value;
+                best = i;
+                ties = 1;
+            } else if (value == maxValue && this.random.nextInt(++ties) == 0) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Sets the probability of choosing a random action instead of the greedy one.
+     *
+     * @param epsilon The exploration rate.
+     */
+    public void setEpsilon(double epsilon) {
+        this.epsilon = epsilon;
+    }
+
+    /**
+     * Retrieves the store of the values, for instance to report its size and evictions.
+     *
+     * @return The store.
+     */
+    public SparseQStore getStore() {
+        return this.store;
+    }
+
+    /**
+     * Saves the visited states in the binary format, replacing the previous file atomically.
+     */
+    public void saveTable() {
+        int rows = this.store.size();
+        int actions = this.possibleActions.length;
+        String[] stateNames = new String[rows];
+        double[] values = new double[rows * actions];
+        long[] visits = new long[values.length];
+        for (int row = 0; row < rows; row++) {
+            stateNames[row] = Long.toString(this.store.getKey(row));
+            for (int action = 0; action < actions; action++) {
+                values[row * actions + action] = this.store.get(row, action);
+                visits[row * actions + action] = this.store.getVisits(row);
+            }
+        }
+        String[] actionNames = new String[actions];
+        for (A action : this.possibleActions)
+            actionNames[action.ordinal()] = action.name();
+        try {
+            QTableFile.writeBinary(this.path, new QTableFile.Table(this.system, stateNames, actionNames, values,
+                    visits));
+        } catch (IOException e) {
+            System.out.println("ERROR!!! -> Could not save sparse tableQ in binary file...");
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package mdp;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The SparseQStore class holds the Q-values of the states actually visited, for state spaces too large for a dense
+ * table, keyed by a non-negative {@code long} such as a {@link StateKey}.
+ * <p>
+ * Keys are found with open addressing and linear probing over primitive arrays, so nothing is boxed. Each state gets
+ * a row of one value per action the first time it is updated; reading a state that has no row returns 0 for every
+ * action, without allocating one. The arrays start small and double as states are added, so memory grows with the
+ * states actually visited, up to a budget set up front that counts every array of the store. When the store is full,
+ * the row of a least-visited state is evicted to make room, chosen among a few sampled rows so that eviction stays
+ * constant time.
+ */
+public class SparseQStore {
+
+    private static final long EMPTY = -1L; // The key of a free slot
+    private static final int EVICTION_SAMPLES = 8; // Rows sampled to find a least-visited one
+    private static final int SLOT_BYTES = 8 + 4; // A key and a row index
+    private static final int INITIAL_ROWS = 16;
+
+    private final int actions;
+    private final int maxRows;
+    private int mask; // The number of slots minus 1
+    private long[] slotKeys; // The key of each slot, EMPTY if the slot is free
+    private int[] slotRows; // The row of each slot
+    private long[] rowKeys; // The key of each row, as long as the number of rows allocated
+    private long[] rowVisits; // The number of updates of each row
+    private double[] values; // The values of a row and action are at row * actions + action
+    private final Random random = new Random(0);
+    private int rows; // The number of rows in use
+    private long evictions;
+
+    /**
+     * Constructs a new empty SparseQStore.
+     *
+     * @param actions  The number of actions of every state.
+     * @param maxBytes The memory budget of the store, which caps the number of rows once every array is full grown.
+     */
+    public SparseQStore(int actions, long maxBytes) {
+        this.actions = actions;
+        this.maxRows = maxRows(actions, maxBytes);
+        int rows = Math.min(INITIAL_ROWS, this.maxRows);
+        this.rowKeys = new long[rows];
+        this.rowVisits = new long[rows];
+        this.values = new double[rows * actions];
+        this.allocateSlots(slotsFor(rows));
+    }
+
+    /**
+     * Computes the most rows whose arrays fit in a memory budget, the slots included.
+     *
+     * @param actions  The number of actions of every state.
+     * @param maxBytes The memory budget.
+     *
+     * @return The number of rows, at least 1.
+     */
+    private static int maxRows(int actions, long maxBytes) {
+        long rowBytes = actions * 8L + 8 + 8; // Values, key and visits
+        long best = 1;
+        // Every power of two of slots holds up to half as many rows; keep the one leaving room for the most rows
+        for (long slots = 2; slots <= 1L << 30; slots <<= 1) {
+            long rows = Math.min(slots / 2, (maxBytes - slots * SLOT_BYTES) / rowBytes);
+            if (rows <= 0)
+                break;
+            best = Math.max(best, rows);
+        }
+        return (int) Math.min(best, 1 << 28);
+    }
+
+    /**
+     * Computes the number of slots of a table holding a number of rows, so that it is at most half full.
+     *
+     * @param rows The number of rows.
+     *
+     * @return The number of slots, a power of two.
+     */
+    private static int slotsFor(int rows) {
+        return Integer.highestOneBit(Math.max(1, 2 * rows - 1)) << 1;
+    }
+
+    private void allocateSlots(int slots) {
+        this.mask = slots - 1;
+        this.slotKeys = new long[slots];
+        Arrays.fill(this.slotKeys, EMPTY);
+        this.slotRows = new int[slots];
+    }
+
+    /**
+     * Doubles the arrays of the rows, up to the capacity, and grows the slots along with them.
+     */
+    private void grow() {
+        int capacity = (int) Math.min(this.maxRows, 2L * this.rowKeys.length);
+        this.rowKeys = Arrays.copyOf(this.rowKeys, capacity);
+        this.rowVisits = Arrays.copyOf(this.rowVisits, capacity);
+        this.values = Arrays.copyOf(this.values, capacity * this.actions);
+        int slots = slotsFor(capacity);
+        if (slots == this.slotKeys.length)
+            return;
+        this.allocateSlots(slots);
+        for (int row = 0; row < this.rows; row++) {
+            int slot = slotOf(this.rowKeys[row]);
+            while (this.slotKeys[slot] != EMPTY)
+                slot = (slot + 1) & this.mask;
+            this.slotKeys[slot] = this.rowKeys[row];
+            this.slotRows[slot] = row;
+        }
+    }
+
+    /**
+     * Finds the row of a state.
+     *
+     * @param key The key of the state.
+     *
+     * @return The row, or -1 if the state has no row.
+     */
+    public int find(long key) {
+        for (int slot = slotOf(key); ; slot = (slot + 1) & mask) {
+            long slotKey = slotKeys[slot];
+            if (slotKey == key)
+                return slotRows[slot];
+            if (slotKey == EMPTY)
+                return -1;
+        }
+    }
+
+    /**
+     * Finds the row of a state, creating it with every value at 0 if the state has none, and counts one visit.
+     * Creating a row in a full store evicts the row of a least-visited state.
+     *
+     * @param key The key of the state, not negative.
+     *
+     * @return The row.
+     */
+    public int visit(long key) {
+        if (key < 0)
+            throw new IllegalArgumentException("Negative key " + key);
+        int slot = slotOf(key);
+        while (slotKeys[slot] != EMPTY) {
+            if (slotKeys[slot] == key) {
+                int row = slotRows[slot];
+                rowVisits[row]++;
+                return row;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int row;
+        if (rows < maxRows) {
+            if (rows == rowKeys.length) {
+                grow();
+                // The slots may have been rehashed
+                slot = slotOf(key);
+                while (slotKeys[slot] != EMPTY)
+                    slot = (slot + 1) & mask;
+            }
+            row = rows++;
+        } else {
+            row = leastVisitedRow();
+            remove(rowKeys[row]);
+            evictions++;
+            // The removal may have shifted the free slot found above
+            slot = slotOf(key);
+            while (slotKeys[slot] != EMPTY)
+                slot = (slot + 1) & mask;
+        }
+        slotKeys[slot] = key;
+        slotRows[slot] = row;
+        rowKeys[row] = key;
+        rowVisits[row] = 1;
+        Arrays.fill(values, row * actions, (row + 1) * actions, 0.0);
+        return row;
+    }
+
+    private int leastVisitedRow() {
+        int best = random.nextInt(rows);
+        for (int i = 1; i < EVICTION_SAMPLES; i++) {
+            int row = random.nextInt(rows);
+            if (rowVisits[row] < rowVisits[best])
+                best = row;
+        }
+        return best;
+    }
+
+    /**
+     * Removes the slot of a key, shifting back the slots of its probe sequence so that no lookup stops early.
+     *
+     * @param key The key, which must be present.
+     */
+    private void remove(long key) {
+        int slot = slotOf(key);
+        while (slotKeys[slot] != key)
+            slot = (slot + 1) & mask;
+        int hole = slot;
+        for (slot = (slot + 1) & mask; slotKeys[slot] != EMPTY; slot = (slot + 1) & mask) {
+            int home = slotOf(slotKeys[slot]);
+            // Move the slot into the hole unless its home lies cyclically after the hole
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                slotKeys[hole] = slotKeys[slot];
+                slotRows[hole] = slotRows[slot];
+                hole = slot;
+            }
+        }
+        slotKeys[hole] = EMPTY;
+    }
+
+    private int slotOf(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * Retrieves a value.
+     *
+     * @param row    The row of the state.
+     * @param action The ordinal of the action.
+     *
+     * @return The value.
+     */
+    public double get(int row, int action) {
+        return values[row * actions + action];
+    }
+
+    /**
+     * Sets a value.
+     *
+     * @param row    The row of the state.
+     * @param action The ordinal of the action.
+     * @param value  The value.
+     */
+    public void set(int row, int action, double value) {
+        values[row * actions + action] = value;
+    }
+
+    /**
+     * Retrieves the key of the state of a row.
+     *
+     * @param row The row, below {@link #size()}.
+     *
+     * @return The key.
+     */
+    public long getKey(int row) {
+        return rowKeys[row];
+    }
+
+    /**
+     * Retrieves the number of updates of the state of a row.
+     *
+     * @param row The row, below {@link #size()}.
+     *
+     * @return The number of visits.
+     */
+    public long getVisits(int row) {
+        return rowVisits[row];
+    }
+
+    /**
+     * Sets the number of updates of the state of a row, for instance to restore the count saved with a table, which
+     * decides what is evicted first.
+     *
+     * @param row    The row, below {@link #size()}.
+     * @param visits The number of visits.
+     */
+    public void setVisits(int row, long visits) {
+        rowVisits[row] = visits;
+    }
+
+    /**
+     * Retrieves the number of states with a row. Rows are numbered from 0 to this number, in no particular order.
+     *
+     * @return The number of rows in use.
+     */
+    public int size() {
+        return rows;
+    }
+
+    /**
+     * Retrieves the maximum number of rows allowed by the memory budget.
+     *
+     * @return The capacity in rows.
+     */
+    public int getCapacity() {
+        return maxRows;
+    }
+
+    /**
+     * Retrieves the memory taken by the arrays of the store as they are now, at most the budget.
+     *
+     * @return The size in bytes.
+     */
+    public long getAllocatedBytes() {
+        return (long) slotKeys.length * SLOT_BYTES + rowKeys.length * 16L + values.length * 8L;
+    }
+
+    /**
+     * Retrieves the number of rows evicted to make room for new states.
+     *
+     * @return The number of evictions.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Retrieves the number of actions of every state.
+     *
+     * @return The number of actions.
+     */
+    public int getActionCount() {
+        return actions;
+    }
+}
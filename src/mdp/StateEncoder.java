@@ -0,0 +1,33 @@
+package mdp;
+
+import torcs.SensorModel;
+
+/**
+ * The StateEncoder interface maps the sensors of one tick to the discrete state of a control system and computes the
+ * reward of that tick in the same pass.
+ * An encoder keeps whatever {@link #encode} computed that the reward needs, so the sensors are only read and
+ * quantized once per tick. Encoders are stateful and belong to a single controller.
+ *
+ * @param <S> The enum of the states of the control system.
+ * @param <A> The enum of the actions of the control system.
+ */
+public interface StateEncoder<S extends Enum<S>, A extends Enum<A>> {
+
+    /**
+     * Computes the state of the control system for the current tick.
+     *
+     * @param sensors The current sensor model of the car.
+     *
+     * @return The state.
+     */
+    S encode(SensorModel sensors);
+
+    /**
+     * Computes the reward of the last encoded tick.
+     *
+     * @param action The action performed on the previous tick.
+     *
+     * @return The reward value.
+     */
+    double reward(A action);
+}
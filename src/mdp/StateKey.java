@@ -0,0 +1,76 @@
+package mdp;
+
+/**
+ * The StateKey class packs the states of several control systems into one {@code long}, so a joint state can key a
+ * {@link SparseQStore} without allocating.
+ * Each component gets just enough bits for the ordinals of its enum, in the order given.
+ */
+public class StateKey {
+
+    private final int[] shifts; // The position of the lowest bit of each component
+    private final long[] masks; // The mask of each component, before shifting
+    private final int[] sizes; // The number of constants of each component
+
+    /**
+     * Constructs a new StateKey.
+     *
+     * @param components The enums of the components.
+     *
+     * @throws IllegalArgumentException If the components need more than 63 bits.
+     */
+    public StateKey(Class<?>... components) {
+        this.shifts = new int[components.length];
+        this.masks = new long[components.length];
+        this.sizes = new int[components.length];
+        int shift = 0;
+        for (int i = 0; i < components.length; i++) {
+            Object[] constants = components[i].getEnumConstants();
+            if (constants == null)
+                throw new IllegalArgumentException(components[i].getName() + " is not an enum");
+            int bits = 64 - Long.numberOfLeadingZeros(Math.max(1, constants.length - 1));
+            this.shifts[i] = shift;
+            this.masks[i] = (1L << bits) - 1;
+            this.sizes[i] = constants.length;
+            shift += bits;
+        }
+        if (shift > 63)
+            throw new IllegalArgumentException("The components need " + shift + " bits, at most 63 fit in a key");
+    }
+
+    /**
+     * Sets one component of a key.
+     *
+     * @param key       The key.
+     * @param component The index of the component.
+     * @param ordinal   The ordinal of the state of the component.
+     *
+     * @return The new key.
+     */
+    public long set(long key, int component, int ordinal) {
+        return key & ~(masks[component] << shifts[component]) | ((long) ordinal << shifts[component]);
+    }
+
+    /**
+     * Retrieves one component of a key.
+     *
+     * @param key       The key.
+     * @param component The index of the component.
+     *
+     * @return The ordinal of the state of the component.
+     */
+    public int get(long key, int component) {
+        return (int) (key >>> shifts[component] & masks[component]);
+    }
+
+    /**
+     * Computes the number of joint states, that is the product of the sizes of the components.
+     *
+     * @return The number of joint states.
+     */
+    public long getStateCount() {
+        long count = 1;
+        for (int size : sizes)
+            count *= size;
+        return count;
+    }
+}
@@ -0,0 +1,136 @@
+package mdp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The StatisticsSink class appends {@link EpisodeStatistics} rows to a CSV file through one channel kept open for the
+ * whole training, so logging an episode costs the same however long the file already is.
+ * <p>
+ * Rows are buffered in memory and written at the end of every episode, optionally followed by an fsync. When the file
+ * would grow beyond the size limit it is rotated: {@code file} becomes {@code file.1}, {@code file.1} becomes
+ * {@code file.2} and so on, the oldest one being deleted, and a new file is started with the header line.
+ */
+public class StatisticsSink {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final boolean sync; // Indicates whether to fsync at the end of every episode
+    private final long maxBytes; // The size after which the file is rotated, 0 for no limit
+    private final int maxFiles; // The number of rotated files kept
+    private final byte[] row = new byte[EpisodeStatistics.MAX_ROW_SIZE];
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private FileChannel channel;
+    private long size; // The size of the file, including the buffered rows
+
+    /**
+     * Opens a sink, appending to the file if it already exists.
+     *
+     * @param path     The path of the CSV file.
+     * @param sync     True to fsync the file at the end of every episode.
+     * @param maxBytes The size after which the file is rotated, 0 for no limit.
+     * @param maxFiles The number of rotated files kept.
+     *
+     * @throws IOException If the file cannot be opened.
+     */
+    public StatisticsSink(String path, boolean sync, long maxBytes, int maxFiles) throws IOException {
+        this.path = Paths.get(path);
+        this.sync = sync;
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+        open();
+    }
+
+    /**
+     * Appends one row.
+     *
+     * @param statistics The row.
+     */
+    public void append(EpisodeStatistics statistics) {
+        int length = statistics.write(row, 0);
+        try {
+            if (maxBytes > 0 && size + length > maxBytes)
+                rotate();
+            if (buffer.remaining() < length)
+                flush();
+            buffer.put(row, 0, length);
+            size += length;
+        } catch (IOException e) {
+            System.out.println("ERROR!!! -> Could not save statistics in " + path);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes the buffered rows and, if the sink was opened with sync, forces them to the disk.
+     */
+    public void endEpisode() {
+        try {
+            flush();
+            if (sync)
+                channel.force(false);
+        } catch (IOException e) {
+            System.out.println("ERROR!!! -> Could not save statistics in " + path);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes the buffered rows and closes the file.
+     */
+    public void close() {
+        endEpisode();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        size = channel.size();
+        if (size == 0) {
+            byte[] header = (EpisodeStatistics.HEADER + "\n").getBytes(StandardCharsets.US_ASCII);
+            buffer.put(header);
+            size = header.length;
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    private void rotate() throws IOException {
+        flush();
+        if (sync)
+            channel.force(false);
+        channel.close();
+        Files.deleteIfExists(rotated(maxFiles));
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            if (Files.exists(rotated(i)))
+                Files.move(rotated(i), rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (maxFiles > 0)
+            Files.move(path, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+        else
+            Files.delete(path);
+        open();
+    }
+
+    private Path rotated(int index) {
+        return path.resolveSibling(path.getFileName() + "." + index);
+    }
+}
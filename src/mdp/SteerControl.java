@@ -4,19 +4,17 @@ import torcs.SensorModel;
 
 public class SteerControl {
 
+    /* Track position thresholds, from the right edge to the left edge; the borders include 0.5 and -0.5, the center
+     * 0.15 and -0.15, and both edges of the track are off it */
+    private static final Quantizer TRACK_POSITION = new Quantizer(-1.0, 1.0, 0.05,
+            new double[]{-1.0, -0.5, -0.15, 0.15, 0.5, 1.0},
+            new boolean[]{false, false, true, false, true, true},
+            new int[]{States.CENTER.ordinal(), States.RIGHT_BORDER.ordinal(), States.RIGHT_MIDDLE.ordinal(),
+                    States.CENTER.ordinal(), States.LEFT_MIDDLE.ordinal(), States.LEFT_BORDER.ordinal(),
+                    States.CENTER.ordinal()});
+
     public static States evaluateSteerState(SensorModel current) {
-        double distanceToEdge = current.getTrackPosition();
-        if (distanceToEdge < 0.5d && distanceToEdge > 0.15d) {
-            return States.LEFT_MIDDLE;
-        } else if (distanceToEdge >= 0.5d && distanceToEdge < 1.0d) {
-            return States.LEFT_BORDER;
-        } else if (distanceToEdge > -0.5d && distanceToEdge < -0.15d) {
-            return States.RIGHT_MIDDLE;
-        } else if (distanceToEdge <= -0.5d && distanceToEdge > -1.0d) {
-            return States.RIGHT_BORDER;
-        } else {
-            return States.CENTER;
-        }
+        return States.values[TRACK_POSITION.quantize(current.getTrackPosition())];
     }
 
     public static double steerAction2Double(Actions action) {
@@ -27,6 +25,51 @@ public class SteerControl {
         return 1 - Math.abs(current.getTrackPosition());
     }
 
+    /**
+     * Creates the tile coder of {@link TileCodedQLearning} for the steering: the track position, the angle to the
+     * track axis and the speed, which the 6 states cannot tell apart.
+     *
+     * @return The tile coder, with 8 tilings hashed into 4096 tiles.
+     */
+    public static TileCoder newTileCoder() {
+        return new TileCoder(new TileCoder.Feature[]{
+                new TileCoder.Feature("TRACK_POSITION", SensorModel::getTrackPosition, -1.0, 1.0, 8),
+                new TileCoder.Feature("ANGLE", SensorModel::getAngleToTrackAxis, -0.5, 0.5, 8),
+                new TileCoder.Feature("SPEED", SensorModel::getSpeed, 0.0, 200.0, 4)
+        }, 8, 4096);
+    }
+
+    /**
+     * Creates the discretizer of {@link AdaptiveQLearning} for the steering: the track position and the angle to the
+     * track axis, refined from a single state down to cells of 1/32 of the track width and 1/32 rad.
+     *
+     * @param maxStates The maximum number of states.
+     *
+     * @return The discretizer.
+     */
+    public static AdaptiveDiscretizer newAdaptiveDiscretizer(int maxStates) {
+        return new AdaptiveDiscretizer(new TileCoder.Feature[]{
+                new TileCoder.Feature("TRACK_POSITION", SensorModel::getTrackPosition, -1.0, 1.0, 64),
+                new TileCoder.Feature("ANGLE", SensorModel::getAngleToTrackAxis, -0.5, 0.5, 32)
+        }, maxStates);
+    }
+
+    /**
+     * The StateEncoder of the steering, which reads the track position once per tick.
+     */
+    public static class Encoder implements StateEncoder<States, Actions> {
+        private double trackPosition; // The track position of the last encoded tick
+
+        public States encode(SensorModel sensors) {
+            trackPosition = sensors.getTrackPosition();
+            return States.values[TRACK_POSITION.quantize(trackPosition)];
+        }
+
+        public double reward(Actions action) {
+            return 1 - Math.abs(trackPosition);
+        }
+    }
+
     public enum Actions {
 
         TURN_L_HARD(0.4d),
@@ -49,6 +92,8 @@ public class SteerControl {
         CENTER,
         RIGHT_MIDDLE,
         RIGHT_BORDER,
-        OFFTRACK
+        OFFTRACK;
+
+        private static final States[] values = values(); // Shared copy, values() clones the array on every call
     }
 }
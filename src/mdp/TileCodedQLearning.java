@@ -0,0 +1,199 @@
+package mdp;
+
+import torcs.Constants;
+import torcs.SensorModel;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static torcs.Constants.DISCOUNT_FACTOR;
+import static torcs.Constants.LEARNING_RATE;
+
+/**
+ * The TileCodedQLearning class is Q-learning with a linear approximation of the Q-function over tile-coded sensor
+ * readings, an alternative to the Q-table of {@link QLearning} when the states would need many features or fine bins.
+ * <p>
+ * The value of an action is the sum of one weight per tiling, the weight of the active tile of that tiling. Weights
+ * are stored tile by tile, with the weights of every action of a tile next to each other, in an array whose size is
+ * fixed by the {@link TileCoder}. A tick costs O(tilings * actions), whatever the resolution of the features.
+ * <p>
+ * The weights are saved in the binary format of {@link QTableFile}, one row per tile, so they can be checkpointed,
+ * converted and merged like any Q-table.
+ *
+ * @param <A> The enum of the actions of the control system.
+ */
+public class TileCodedQLearning<A extends Enum<A>> implements QTable, SensorQAgent<A> {
+
+    private final TileCoder coder;
+    private final A[] possibleActions; // Every action, in ordinal order
+    private final int actionCount;
+    private final double[] weights; // The weight of a tile and action is at tile * actions + action
+    private final long[] visits; // The number of updates of each weight, in the same order
+    private final double stepSize; // The learning rate shared among the tilings
+    private final String path;
+    private final String system;
+
+    private final int[] previousTiles; // The active tiles of the previous tick
+    private final int[] currentTiles; // The active tiles of the current tick
+    private final double[] values; // Scratch space for the values of every action
+    private boolean hasPrevious; // Indicates whether the previous tiles belong to this episode
+    private double epsilon;
+    private final Random random = new Random(System.currentTimeMillis());
+
+    /**
+     * Constructs a new TileCodedQLearning, loading its weights if they have been saved before.
+     *
+     * @param system     The name of the control system, saved with the weights.
+     * @param coder      The tile coder of the sensors.
+     * @param actionType The enum of the actions.
+     * @param path       The file of the weights.
+     */
+    public TileCodedQLearning(String system, TileCoder coder, Class<A> actionType, String path) {
+        this.system = system;
+        this.coder = coder;
+        this.possibleActions = actionType.getEnumConstants();
+        this.actionCount = this.possibleActions.length;
+        this.weights = new double[coder.getTileCount() * this.actionCount];
+        this.visits = new long[this.weights.length];
+        this.stepSize = LEARNING_RATE / coder.getTilings();
+        this.path = path;
+        this.previousTiles = new int[coder.getTilings()];
+        this.currentTiles = new int[coder.getTilings()];
+        this.values = new double[this.actionCount];
+        if (new File(path).exists())
+            this.loadWeights();
+    }
+
+    private void loadWeights() {
+        try {
+            QTableFile.Table table = QTableFile.readBinary(this.path);
+            if (table.values.length != this.weights.length) {
+                System.out.println("WARNING!!! -> " + this.path + " was saved with another tile coding, ignoring it");
+                return;
+            }
+            System.arraycopy(table.values, 0, this.weights, 0, this.weights.length);
+            System.arraycopy(table.visits, 0, this.visits, 0, this.visits.length);
+        } catch (IOException e) {
+            System.out.println("ERROR!!! -> Could not load weights from binary file...");
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public A update(SensorModel sensors, A actionPerformed, double reward) {
+        this.coder.encode(sensors, this.currentTiles);
+        this.evaluate(this.currentTiles);
+        int best = this.argMax();
+
+        if (this.hasPrevious) {
+            double target = reward + DISCOUNT_FACTOR * this.values[best];
+            int action = actionPerformed.ordinal();
+            double delta = target - this.value(this.previousTiles, action);
+            for (int tile : this.previousTiles) {
+                int index = tile * this.actionCount + action;
+                this.weights[index] = Constants.fastRound(this.weights[index] + this.stepSize * delta, 8);
+                this.visits[index]++;
+            }
+            // The update may have moved the values of the current tiles if they share a tile with the previous ones
+            this.evaluate(this.currentTiles);
+            best = this.argMax();
+        }
+        System.arraycopy(this.currentTiles, 0, this.previousTiles, 0, this.currentTiles.length);
+        this.hasPrevious = true;
+
+        if (this.random.nextDouble() > this.epsilon)
+            return this.possibleActions[best];
+        return this.possibleActions[this.random.nextInt(this.actionCount)];
+    }
+
+    @Override
+    public A nextOnlyBestAction(SensorModel sensors) {
+        this.coder.encode(sensors, this.currentTiles);
+        this.evaluate(this.currentTiles);
+        return this.possibleActions[this.argMax()];
+    }
+
+    @Override
+    public void endEpisode() {
+        this.hasPrevious = false;
+    }
+
+    private double value(int[] tiles, int action) {
+        double value = 0;
+        for (int tile : tiles)
+            value += this.weights[tile * this.actionCount + action];
+        return value;
+    }
+
+    private void evaluate(int[] tiles) {
+        for (int action = 0; action < this.actionCount; action++)
+            this.values[action] = 0;
+        for (int tile : tiles) {
+            int row = tile * this.actionCount;
+            for (int action = 0; action < this.actionCount; action++)
+                this.values[action] += this.weights[row + action];
+        }
+    }
+
+    private int argMax() {
+        double maxValue = this.values[0];
+        int best = 0;
+        int ties = 1;
+        for (int i = 1; i < this.actionCount; i++) {
+            double value = this.values[i];
+            if (value > maxValue) {
+                maxValue = value;
+                best = i;
+                ties = 1;
+            } else if (value == maxValue && this.random.nextInt(++ties) == 0) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Sets the probability of choosing a random action instead of the greedy one.
+     *
+     * @param epsilon The exploration rate.
+     */
+    public void setEpsilon(double epsilon) {
+        this.epsilon = epsilon;
+    }
+
+    /**
+     * Saves the weights in the binary format, replacing the previous file atomically.
+     */
+    public void saveTable() {
+        this.saveSnapshot(this.weights.clone(), this.visits.clone());
+    }
+
+    @Override
+    public int getTableSize() {
+        return this.weights.length;
+    }
+
+    @Override
+    public void snapshot(double[] values, long[] visits) {
+        System.arraycopy(this.weights, 0, values, 0, this.weights.length);
+        System.arraycopy(this.visits, 0, visits, 0, this.visits.length);
+    }
+
+    @Override
+    public void saveSnapshot(double[] values, long[] visits) {
+        String[] tileNames = new String[this.coder.getTileCount()];
+        for (int i = 0; i < tileNames.length; i++)
+            tileNames[i] = "TILE_" + i;
+        String[] actionNames = new String[this.actionCount];
+        for (A action : this.possibleActions)
+            actionNames[action.ordinal()] = action.name();
+        try {
+            QTableFile.writeBinary(this.path, new QTableFile.Table(this.system, tileNames, actionNames, values,
+                    visits));
+        } catch (IOException e) {
+            System.out.println("ERROR!!! -> Could not save weights in binary file...");
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package mdp;
+
+import torcs.SensorModel;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * The TileCoder class maps continuous sensor readings to a fixed number of active tiles.
+ * Every tiling is a uniform grid over the chosen features, shifted by a fraction of a tile with an asymmetric offset
+ * per feature, so the tilings together resolve much finer than any one of them. The grid coordinates of each tiling
+ * are hashed into a fixed number of tiles, so memory is set up front whatever the number and resolution of the
+ * features, at the cost of some collisions between distant cells.
+ * <p>
+ * Encoding costs O(tilings * features) and does not allocate.
+ */
+public class TileCoder {
+
+    private final Feature[] features;
+    private final int tilings;
+    private final int mask; // The number of tiles minus 1, the number of tiles being a power of two
+    private final double[] scales; // Tilings per unit of each feature
+    private final int[] coordinates; // Scratch space for the quantized features
+
+    /**
+     * Constructs a new TileCoder.
+     *
+     * @param features The features the tiles cover.
+     * @param tilings  The number of tilings, that is of active tiles per encoding.
+     * @param tiles    The number of tiles to hash into, rounded up to a power of two.
+     */
+    public TileCoder(Feature[] features, int tilings, int tiles) {
+        this.features = features.clone();
+        this.tilings = tilings;
+        this.mask = Integer.highestOneBit(Math.max(2, tiles - 1)) * 2 - 1;
+        this.scales = new double[features.length];
+        for (int i = 0; i < features.length; i++)
+            this.scales[i] = features[i].tiles * tilings / (features[i].max - features[i].min);
+        this.coordinates = new int[features.length];
+    }
+
+    /**
+     * Computes the active tile of every tiling.
+     *
+     * @param sensors The current sensor model of the car.
+     * @param tiles   The tile indices, one per tiling.
+     */
+    public void encode(SensorModel sensors, int[] tiles) {
+        for (int i = 0; i < features.length; i++) {
+            coordinates[i] = (int) ((features[i].read(sensors) - features[i].min) * scales[i]);
+        }
+        for (int tiling = 0; tiling < tilings; tiling++) {
+            int hash = tiling;
+            for (int i = 0; i < coordinates.length; i++)
+                hash = hash * 31 + Math.floorDiv(coordinates[i] + tiling * (2 * i + 1), tilings);
+            tiles[tiling] = mix(hash) & mask;
+        }
+    }
+
+    private static int mix(int hash) {
+        // Finalizer of MurmurHash3, so that neighbouring grid cells land far apart
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    /**
+     * Retrieves the number of tilings.
+     *
+     * @return The number of active tiles per encoding.
+     */
+    public int getTilings() {
+        return tilings;
+    }
+
+    /**
+     * Retrieves the number of tiles the grids are hashed into.
+     *
+     * @return The number of tiles.
+     */
+    public int getTileCount() {
+        return mask + 1;
+    }
+
+    /**
+     * The Feature class is one continuous reading covered by the tiles, or by the cells of an
+     * {@link AdaptiveDiscretizer}, which never splits a cell narrower than one tile.
+     */
+    public static class Feature {
+        private final String name;
+        private final ToDoubleFunction<SensorModel> reading;
+        private final double min; // Lower readings are clamped
+        private final double max; // Higher readings are clamped
+        private final int tiles; // Tiles across the range, per tiling
+
+        /**
+         * Constructs a new Feature.
+         *
+         * @param name    The name of the feature.
+         * @param reading Reads the feature from the sensors.
+         * @param min     The lowest reading.
+         * @param max     The highest reading.
+         * @param tiles   The number of tiles across the range, per tiling, or of the narrowest adaptive cells.
+         */
+        public Feature(String name, ToDoubleFunction<SensorModel> reading, double min, double max, int tiles) {
+            this.name = name;
+            this.reading = reading;
+            this.min = min;
+            this.max = max;
+            this.tiles = tiles;
+        }
+
+        /**
+         * Creates the feature of one track edge sensor.
+         *
+         * @param index The index of the sensor, from 0 to 18.
+         * @param tiles The number of tiles across the range, per tiling.
+         *
+         * @return The feature.
+         */
+        public static Feature trackEdge(int index, int tiles) {
+            return new Feature("TRACK_" + index, sensors -> sensors.getTrackEdgeSensors()[index], 0, 200, tiles);
+        }
+
+        /**
+         * Retrieves the name of the feature.
+         *
+         * @return The name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Reads the feature from the sensors, clamped to its range.
+         *
+         * @param sensors The current sensor model of the car.
+         *
+         * @return The reading, between the lowest and the highest one.
+         */
+        double read(SensorModel sensors) {
+            return Math.max(min, Math.min(max, reading.applyAsDouble(sensors)));
+        }
+
+        double getMin() {
+            return min;
+        }
+
+        double getMax() {
+            return max;
+        }
+
+        int getTiles() {
+            return tiles;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package server;
+
+/**
+ * The KinematicCar class is a simple bicycle model of a car driving on a {@link SyntheticTrack}.
+ * It has a six speed gearbox with an idealised engine, aerodynamic drag, brakes, a lateral grip limit and extra
+ * rolling resistance off the track. It is only meant to produce plausible sensor readings, not realistic dynamics.
+ */
+public class KinematicCar {
+
+    public static final double STEER_LOCK = 0.785398; // Wheel angle at full steering, in radians
+    private static final double WHEELBASE = 2.6;
+    private static final double WHEEL_RADIUS = 0.32;
+    private static final double MASS = 1150;
+    private static final double ENGINE_TORQUE = 250;
+    private static final double[] GEAR_RATIOS = {-3.5, 0, 3.8, 2.4, 1.75, 1.35, 1.1, 0.9}; // From R to 6th
+    private static final double FINAL_DRIVE = 4.5;
+    private static final double IDLE_RPM = 1000;
+    private static final double MAX_RPM = 9000;
+    private static final double DRAG = 2.0; // Aerodynamic drag coefficient, in kg/m
+    private static final double BRAKE_DECELERATION = 12;
+    private static final double GRIP = 14; // Maximum lateral acceleration, in m/s^2
+    private static final double GRASS_RESISTANCE = 2.5;
+
+    private final SyntheticTrack track;
+
+    public double x;
+    public double y;
+    public double yaw;
+    public double speed; // Longitudinal speed in m/s
+    public double lateralSpeed; // Lateral speed in m/s
+    public double rpm;
+    public int gear;
+    public int index; // Closest sample of the track
+    public double distRaced;
+    public double fuel;
+
+    /**
+     * Constructs a new car on a track, placed at the starting position.
+     *
+     * @param track The track the car drives on.
+     */
+    public KinematicCar(SyntheticTrack track) {
+        this.track = track;
+        reset();
+    }
+
+    /**
+     * Places the car back at the starting position, a few meters before the start line, standing still.
+     */
+    public void reset() {
+        index = (int) (track.getLength() - 20);
+        x = track.x(index);
+        y = track.y(index);
+        yaw = track.heading(index);
+        speed = 0;
+        lateralSpeed = 0;
+        rpm = IDLE_RPM;
+        gear = 0;
+        distRaced = 0;
+        fuel = 94;
+    }
+
+    /**
+     * Advances the simulation by one time step.
+     *
+     * @param accelerate The throttle, between 0 and 1.
+     * @param brake      The brake, between 0 and 1.
+     * @param steering   The steering, between -1 (full right) and 1 (full left).
+     * @param gear       The requested gear, between -1 and 6.
+     * @param dt         The time step in seconds.
+     */
+    public void step(double accelerate, double brake, double steering, int gear, double dt) {
+        this.gear = Math.max(-1, Math.min(6, gear));
+        double ratio = GEAR_RATIOS[this.gear + 1] * FINAL_DRIVE;
+
+        // Engine
+        rpm = Math.max(IDLE_RPM, Math.abs(speed) / WHEEL_RADIUS * Math.abs(ratio) * 60 / (2 * Math.PI));
+        double force = 0;
+        if (ratio != 0 && rpm < MAX_RPM)
+            force = accelerate * ENGINE_TORQUE * ratio / WHEEL_RADIUS;
+        rpm = Math.min(rpm, MAX_RPM);
+        double acceleration = (force - DRAG * speed * Math.abs(speed)) / MASS;
+
+        // Brakes and resistance always act against the motion
+        double resistance = brake * BRAKE_DECELERATION;
+        double lateral = track.lateral(x, y, index);
+        if (Math.abs(lateral) > track.getHalfWidth())
+            resistance += GRASS_RESISTANCE + 0.5 * Math.abs(speed);
+        double newSpeed = speed + acceleration * dt;
+        if (newSpeed > 0)
+            newSpeed = Math.max(0, newSpeed - resistance * dt);
+        else if (newSpeed < 0)
+            newSpeed = Math.min(0, newSpeed + resistance * dt);
+        speed = newSpeed;
+
+        // Steering, limited by the available grip
+        double yawRate = speed * Math.tan(steering * STEER_LOCK) / WHEELBASE;
+        double maxYawRate = GRIP / Math.max(1, Math.abs(speed));
+        double limited = Math.max(-maxYawRate, Math.min(maxYawRate, yawRate));
+        lateralSpeed = (yawRate - limited) * WHEELBASE * 0.5;
+        yaw += limited * dt;
+
+        double previousDistance = track.distance(index);
+        x += Math.cos(yaw) * speed * dt;
+        y += Math.sin(yaw) * speed * dt;
+        index = track.locate(x, y, index);
+
+        // Distance raced follows the center line, wrapping around the start line
+        double delta = track.distance(index) - previousDistance;
+        if (delta < -track.getLength() / 2)
+            delta += track.getLength();
+        else if (delta > track.getLength() / 2)
+            delta -= track.getLength();
+        distRaced += delta;
+        fuel = Math.max(0, fuel - Math.abs(force) * 1e-7);
+    }
+
+    /**
+     * Computes the angle between the track axis and the car direction, as the SCR server does.
+     *
+     * @return The angle in radians, between -PI and PI.
+     */
+    public double angleToTrackAxis() {
+        double angle = track.heading(index) - yaw;
+        return Math.atan2(Math.sin(angle), Math.cos(angle));
+    }
+
+    /**
+     * Computes the position of the car across the track.
+     *
+     * @return 0 on the center line, 1 on the left edge and -1 on the right edge.
+     */
+    public double trackPosition() {
+        return track.lateral(x, y, index) / track.getHalfWidth();
+    }
+
+    /**
+     * Computes the spin velocity of a wheel, assuming no slip.
+     *
+     * @return The wheel spin velocity in rad/s.
+     */
+    public double wheelSpinVelocity() {
+        return speed / WHEEL_RADIUS;
+    }
+}
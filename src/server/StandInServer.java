@@ -0,0 +1,394 @@
+package server;
+
+import torcs.ActionEncoder;
+import torcs.SensorPacketParser;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+
+/**
+ * The StandInServer class is a small Java replacement for the SCR server of TORCS, meant for headless load and
+ * regression testing of clients.
+ * It speaks the same UDP protocol: it answers {@code (init ...)} with {@code ***identified***}, streams sensor
+ * packets computed from a {@link KinematicCar} on a {@link SyntheticTrack}, applies the returned actions, answers a
+ * restart request with {@code ***restart***} and ends the race with {@code ***shutdown***}.
+ * <p>
+ * In lockstep mode the simulation advances as soon as the client replies, so clients run as fast as they can; in
+ * real-time mode a packet is sent every 20 ms and the latest action received is applied, as in the real server.
+ * <p>
+ * Usage: {@code StandInServer [port:3001] [cars:1] [mode:lockstep|realtime] [laps:3] [maxTicks:0] [verbose:on]}
+ */
+public class StandInServer implements Runnable {
+
+    private static final double DT = 0.02; // Simulation step, in seconds
+    private static final int PERIOD_MILLIS = 20; // Period of the real-time mode
+    private static final int CLIENT_TIMEOUT = 10000; // How long lockstep mode waits for a reply, in milliseconds
+
+    private static final byte[] IDENTIFIED = "***identified***".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RESTART = "***restart***".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SHUTDOWN = "***shutdown***".getBytes(StandardCharsets.US_ASCII);
+
+    private final int port;
+    private final boolean realtime;
+    private final int laps;
+    private final long maxTicks;
+    private final boolean verbose;
+
+    private final SyntheticTrack track = new SyntheticTrack();
+    private final KinematicCar car = new KinematicCar(track);
+    private final SensorPacketParser numberParser = new SensorPacketParser();
+    private final double[] angles = new double[19]; // Directions of the track edge sensors, in radians
+    private final byte[] inBuffer = new byte[1024];
+    private final byte[] outBuffer = new byte[2048];
+    private DatagramSocket socket;
+    private DatagramPacket inPacket;
+    private DatagramPacket outPacket;
+
+    /* Last action received */
+    private double accelerate;
+    private double brake;
+    private double steering;
+    private int gear;
+    private boolean restartRequested;
+
+    /* Race state */
+    private long ticks;
+    private double curLapTime;
+    private double lastLapTime;
+    private int lapsStarted;
+
+    /**
+     * Constructs a new StandInServer for one car.
+     *
+     * @param port     The UDP port to listen on.
+     * @param realtime True to send a packet every 20 ms, false to advance as soon as the client replies.
+     * @param laps     The number of laps of the race, 0 for no limit.
+     * @param maxTicks The number of ticks after which the server shuts down, 0 for no limit.
+     * @param verbose  True to enable verbose output, false otherwise.
+     */
+    public StandInServer(int port, boolean realtime, int laps, long maxTicks, boolean verbose) {
+        this.port = port;
+        this.realtime = realtime;
+        this.laps = laps;
+        this.maxTicks = maxTicks;
+        this.verbose = verbose;
+    }
+
+    /**
+     * The main entry point of the stand-in server.
+     *
+     * @param args The command-line arguments.
+     */
+    public static void main(String[] args) {
+        int port = 3001;
+        int cars = 1;
+        boolean realtime = false;
+        int laps = 3;
+        long maxTicks = 0;
+        boolean verbose = false;
+        for (String arg : args) {
+            StringTokenizer st = new StringTokenizer(arg, ":");
+            String entity = st.nextToken();
+            String value = st.nextToken();
+            if (entity.equals("port"))
+                port = Integer.parseInt(value);
+            if (entity.equals("cars"))
+                cars = Integer.parseInt(value);
+            if (entity.equals("mode"))
+                realtime = value.equals("realtime");
+            if (entity.equals("laps"))
+                laps = Integer.parseInt(value);
+            if (entity.equals("maxTicks"))
+                maxTicks = Long.parseLong(value);
+            if (entity.equals("verbose"))
+                verbose = value.equals("on");
+        }
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < cars; i++) {
+            Thread thread = new Thread(new StandInServer(port + i, realtime, laps, maxTicks, verbose),
+                    "stand-in-" + (port + i));
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Serves one client until the race ends.
+     */
+    public void run() {
+        try {
+            socket = new DatagramSocket(port);
+        } catch (SocketException e) {
+            e.printStackTrace();
+            return;
+        }
+        inPacket = new DatagramPacket(inBuffer, inBuffer.length);
+        System.out.println("Stand-in server waiting on port " + port);
+        try {
+            boolean running = true;
+            while (running) {
+                waitForClient();
+                running = drive();
+            }
+            send(SHUTDOWN, SHUTDOWN.length);
+            System.out.println("Port " + port + ": race over after " + ticks + " ticks");
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Waits for an init message, identifies the client and starts a new episode.
+     *
+     * @throws IOException If the socket fails.
+     */
+    private void waitForClient() throws IOException {
+        socket.setSoTimeout(0);
+        while (true) {
+            inPacket.setLength(inBuffer.length);
+            socket.receive(inPacket);
+            int init = indexOf(inBuffer, inPacket.getLength(), "(init");
+            if (init >= 0) {
+                parseAngles(init + 5, inPacket.getLength());
+                outPacket = new DatagramPacket(outBuffer, 0, inPacket.getAddress(), inPacket.getPort());
+                send(IDENTIFIED, IDENTIFIED.length);
+                if (verbose)
+                    System.out.println("Port " + port + ": client identified");
+                break;
+            }
+        }
+        car.reset();
+        accelerate = 0;
+        brake = 0;
+        steering = 0;
+        gear = 0;
+        restartRequested = false;
+        curLapTime = 0;
+        lastLapTime = 0;
+        lapsStarted = 0;
+    }
+
+    /**
+     * Runs one episode.
+     *
+     * @return True if the client asked for a restart, false if the race is over.
+     *
+     * @throws IOException If the socket fails.
+     */
+    private boolean drive() throws IOException {
+        long nextTick = System.currentTimeMillis();
+        while (true) {
+            send(outBuffer, writeSensors());
+
+            if (realtime) {
+                nextTick += PERIOD_MILLIS;
+                long wait;
+                while ((wait = nextTick - System.currentTimeMillis()) > 0) {
+                    if (receiveAction((int) wait) && restartRequested)
+                        break;
+                }
+            } else {
+                receiveAction(CLIENT_TIMEOUT);
+            }
+
+            if (restartRequested) {
+                send(RESTART, RESTART.length);
+                if (verbose)
+                    System.out.println("Port " + port + ": restart requested");
+                return true;
+            }
+
+            int previousIndex = car.index;
+            car.step(accelerate, brake, steering, gear, DT);
+            ticks++;
+            curLapTime += DT;
+            double half = track.getLength() / 2;
+            if (previousIndex > half && car.index < half) {
+                if (lapsStarted > 0)
+                    lastLapTime = curLapTime;
+                curLapTime = 0;
+                lapsStarted++;
+                if (laps > 0 && lapsStarted > laps)
+                    return false;
+            }
+            if (maxTicks > 0 && ticks >= maxTicks)
+                return false;
+        }
+    }
+
+    /**
+     * Receives and applies one action.
+     *
+     * @param timeout How long to wait, in milliseconds.
+     *
+     * @return True if an action was received.
+     *
+     * @throws IOException If the socket fails.
+     */
+    private boolean receiveAction(int timeout) throws IOException {
+        socket.setSoTimeout(Math.max(1, timeout));
+        inPacket.setLength(inBuffer.length);
+        try {
+            socket.receive(inPacket);
+        } catch (SocketTimeoutException e) {
+            return false;
+        }
+        int length = inPacket.getLength();
+        if (verbose)
+            System.out.println("Port " + port + " received: " + new String(inBuffer, 0, length, StandardCharsets.US_ASCII));
+        int i = 0;
+        while (i < length) {
+            if (inBuffer[i++] != '(')
+                continue;
+            int nameStart = i;
+            while (i < length && inBuffer[i] != ' ' && inBuffer[i] != ')')
+                i++;
+            int valueStart = ++i;
+            while (i < length && inBuffer[i] != ')')
+                i++;
+            if (valueStart >= i)
+                continue;
+            double value = numberParser.parseNumber(inBuffer, valueStart, i);
+            switch (inBuffer[nameStart]) {
+                case 'a':
+                    accelerate = Math.max(0, Math.min(1, value));
+                    break;
+                case 'b':
+                    brake = Math.max(0, Math.min(1, value));
+                    break;
+                case 'g':
+                    gear = (int) value;
+                    break;
+                case 's':
+                    steering = Math.max(-1, Math.min(1, value));
+                    break;
+                case 'm':
+                    restartRequested = value == 1;
+                    break;
+                default:
+                    // clutch and focus are not simulated
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the sensor packet of the current state of the car into the output buffer.
+     *
+     * @return The length of the packet.
+     */
+    private int writeSensors() {
+        byte[] b = outBuffer;
+        int pos = 0;
+        pos = reading(b, pos, "(angle ", car.angleToTrackAxis());
+        pos = reading(b, pos, "(curLapTime ", curLapTime);
+        pos = reading(b, pos, "(damage ", 0);
+        pos = reading(b, pos, "(distFromStart ", track.distance(car.index));
+        pos = reading(b, pos, "(distRaced ", car.distRaced);
+        pos = reading(b, pos, "(fuel ", car.fuel);
+        pos = put(b, pos, "(gear ");
+        pos = ActionEncoder.writeLong(car.gear, b, pos);
+        b[pos++] = ')';
+        pos = reading(b, pos, "(lastLapTime ", lastLapTime);
+        pos = put(b, pos, "(opponents");
+        for (int i = 0; i < 36; i++)
+            pos = put(b, pos, " 200");
+        b[pos++] = ')';
+        pos = reading(b, pos, "(racePos ", 1);
+        pos = reading(b, pos, "(rpm ", car.rpm);
+        pos = reading(b, pos, "(speedX ", car.speed * 3.6);
+        pos = reading(b, pos, "(speedY ", car.lateralSpeed * 3.6);
+        pos = reading(b, pos, "(speedZ ", 0);
+        pos = put(b, pos, "(track");
+        int index = car.index;
+        boolean onTrack = Math.abs(car.trackPosition()) <= 1;
+        for (double angle : angles) {
+            b[pos++] = ' ';
+            double distance = onTrack ? track.rayToEdge(car.x, car.y, car.yaw - angle, index) : -1;
+            pos = ActionEncoder.writeDouble(distance, b, pos);
+        }
+        b[pos++] = ')';
+        pos = reading(b, pos, "(trackPos ", car.trackPosition());
+        pos = put(b, pos, "(wheelSpinVel");
+        for (int i = 0; i < 4; i++) {
+            b[pos++] = ' ';
+            pos = ActionEncoder.writeDouble(car.wheelSpinVelocity(), b, pos);
+        }
+        b[pos++] = ')';
+        pos = reading(b, pos, "(z ", 0.345);
+        pos = put(b, pos, "(focus -1 -1 -1 -1 -1)");
+        return pos;
+    }
+
+    /**
+     * Reads the sensor angles of an init message, keeping the default ones if they are missing.
+     *
+     * @param start The position after {@code (init}.
+     * @param end   The end of the message.
+     */
+    private void parseAngles(int start, int end) {
+        for (int i = 0; i < angles.length; i++)
+            angles[i] = Math.toRadians(-90 + i * 10);
+        int i = start;
+        int n = 0;
+        while (i < end && inBuffer[i] != ')' && n < angles.length) {
+            if (inBuffer[i] == ' ') {
+                i++;
+                continue;
+            }
+            int tokenStart = i;
+            while (i < end && inBuffer[i] != ' ' && inBuffer[i] != ')')
+                i++;
+            angles[n++] = Math.toRadians(numberParser.parseNumber(inBuffer, tokenStart, i));
+        }
+    }
+
+    private void send(byte[] data, int length) throws IOException {
+        if (outPacket == null)
+            return;
+        outPacket.setData(data, 0, length);
+        socket.send(outPacket);
+    }
+
+    private static int reading(byte[] buffer, int pos, String name, double value) {
+        pos = put(buffer, pos, name);
+        pos = ActionEncoder.writeDouble(value, buffer, pos);
+        buffer[pos++] = ')';
+        return pos;
+    }
+
+    private static int put(byte[] buffer, int pos, String text) {
+        for (int i = 0; i < text.length(); i++)
+            buffer[pos++] = (byte) text.charAt(i);
+        return pos;
+    }
+
+    private static int indexOf(byte[] data, int length, String pattern) {
+        int n = pattern.length();
+        for (int i = 0; i + n <= length; i++) {
+            int j = 0;
+            while (j < n && data[i + j] == pattern.charAt(j))
+                j++;
+            if (j == n)
+                return i;
+        }
+        return -1;
+    }
+}
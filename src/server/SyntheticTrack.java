@@ -0,0 +1,208 @@
+package server;
+
+/**
+ * The SyntheticTrack class is a closed circuit made of straights and constant radius corners, sampled every meter.
+ * It provides the geometry the stand-in server needs: where a point is along the track, how far it is from the
+ * center line and how far a ray travels before leaving the track.
+ * <p>
+ * The default layout is a rounded rectangle with two fast and two slow corners, about 2.5 km long and 12 m wide.
+ */
+public class SyntheticTrack {
+
+    private static final double STEP = 1.0; // Distance between two samples of the center line, in meters
+    private static final double MAX_RANGE = 200.0; // Range of the track edge sensors, in meters
+
+    private final double halfWidth; // Half of the width of the track, in meters
+    private final double[] x; // X coordinate of each sample
+    private final double[] y; // Y coordinate of each sample
+    private final double[] heading; // Direction of the track at each sample, in radians
+
+    /**
+     * Constructs the default synthetic track.
+     */
+    public SyntheticTrack() {
+        this(6.0, new double[][]{
+                {700, 0}, {120, Math.PI / 2},
+                {250, 0}, {60, Math.PI / 2},
+                {700, 0}, {120, Math.PI / 2},
+                {250, 0}, {60, Math.PI / 2}
+        });
+    }
+
+    /**
+     * Constructs a track from a list of segments.
+     * Each segment is a pair {length, 0} for a straight or {radius, angle} for a corner, with positive angles turning
+     * left. The segments must form a closed loop.
+     *
+     * @param halfWidth Half of the width of the track, in meters.
+     * @param segments  The segments of the track.
+     */
+    public SyntheticTrack(double halfWidth, double[][] segments) {
+        this.halfWidth = halfWidth;
+        double total = 0;
+        for (double[] segment : segments)
+            total += segment[1] == 0 ? segment[0] : segment[0] * Math.abs(segment[1]);
+        int samples = (int) Math.round(total / STEP);
+        this.x = new double[samples];
+        this.y = new double[samples];
+        this.heading = new double[samples];
+
+        double px = 0, py = 0, h = 0;
+        int i = 0;
+        for (double[] segment : segments) {
+            double length = segment[1] == 0 ? segment[0] : segment[0] * Math.abs(segment[1]);
+            double curvature = segment[1] == 0 ? 0 : Math.signum(segment[1]) / segment[0];
+            for (double d = 0; d < length - 1e-9 && i < samples; d += STEP, i++) {
+                x[i] = px;
+                y[i] = py;
+                heading[i] = h;
+                px += Math.cos(h + curvature * STEP / 2) * STEP;
+                py += Math.sin(h + curvature * STEP / 2) * STEP;
+                h += curvature * STEP;
+            }
+        }
+        for (; i < samples; i++) {
+            x[i] = px;
+            y[i] = py;
+            heading[i] = h;
+        }
+    }
+
+    /**
+     * Retrieves the length of the track.
+     *
+     * @return The length in meters.
+     */
+    public double getLength() {
+        return x.length * STEP;
+    }
+
+    /**
+     * Retrieves half of the width of the track.
+     *
+     * @return The half width in meters.
+     */
+    public double getHalfWidth() {
+        return halfWidth;
+    }
+
+    /**
+     * Finds the sample of the center line closest to a point, walking from a nearby sample.
+     *
+     * @param px   The x coordinate of the point.
+     * @param py   The y coordinate of the point.
+     * @param hint A sample close to the point, such as the result of the previous call.
+     *
+     * @return The index of the closest sample.
+     */
+    public int locate(double px, double py, int hint) {
+        int n = x.length;
+        int i = Math.floorMod(hint, n);
+        for (int guard = 0; guard < n; guard++) {
+            double along = (px - x[i]) * Math.cos(heading[i]) + (py - y[i]) * Math.sin(heading[i]);
+            if (along > STEP / 2)
+                i = (i + 1) % n;
+            else if (along < -STEP / 2)
+                i = (i + n - 1) % n;
+            else
+                break;
+        }
+        return i;
+    }
+
+    /**
+     * Computes the signed distance of a point from the center line, positive on the left side.
+     *
+     * @param px    The x coordinate of the point.
+     * @param py    The y coordinate of the point.
+     * @param index The closest sample, as returned by {@link #locate}.
+     *
+     * @return The lateral distance in meters.
+     */
+    public double lateral(double px, double py, int index) {
+        return -(px - x[index]) * Math.sin(heading[index]) + (py - y[index]) * Math.cos(heading[index]);
+    }
+
+    /**
+     * Retrieves the direction of the track at a sample.
+     *
+     * @param index The sample.
+     *
+     * @return The heading in radians.
+     */
+    public double heading(int index) {
+        return heading[index];
+    }
+
+    /**
+     * Retrieves the distance from the start line of a sample.
+     *
+     * @param index The sample.
+     *
+     * @return The distance in meters.
+     */
+    public double distance(int index) {
+        return index * STEP;
+    }
+
+    /**
+     * Retrieves the x coordinate of a sample.
+     *
+     * @param index The sample.
+     *
+     * @return The x coordinate in meters.
+     */
+    public double x(int index) {
+        return x[index];
+    }
+
+    /**
+     * Retrieves the y coordinate of a sample.
+     *
+     * @param index The sample.
+     *
+     * @return The y coordinate in meters.
+     */
+    public double y(int index) {
+        return y[index];
+    }
+
+    /**
+     * Measures how far a ray travels from a point on the track before crossing one of its edges.
+     *
+     * @param px        The x coordinate of the origin.
+     * @param py        The y coordinate of the origin.
+     * @param direction The direction of the ray, in radians.
+     * @param index     The closest sample to the origin.
+     *
+     * @return The distance to the edge in meters, at most 200, or -1 if the origin is outside the track.
+     */
+    public double rayToEdge(double px, double py, double direction, int index) {
+        if (Math.abs(lateral(px, py, index)) > halfWidth)
+            return -1;
+        double dx = Math.cos(direction);
+        double dy = Math.sin(direction);
+        double inside = 0;
+        int hint = index;
+        for (double d = STEP; d <= MAX_RANGE; d += STEP) {
+            double qx = px + dx * d;
+            double qy = py + dy * d;
+            hint = locate(qx, qy, hint);
+            if (Math.abs(lateral(qx, qy, hint)) > halfWidth) {
+                // Refine the crossing between the last point inside and the first point outside
+                double outside = d;
+                for (int k = 0; k < 6; k++) {
+                    double mid = (inside + outside) / 2;
+                    int midIndex = locate(px + dx * mid, py + dy * mid, hint);
+                    if (Math.abs(lateral(px + dx * mid, py + dy * mid, midIndex)) > halfWidth)
+                        outside = mid;
+                    else
+                        inside = mid;
+                }
+                return (inside + outside) / 2;
+            }
+            inside = d;
+        }
+        return MAX_RANGE;
+    }
+}
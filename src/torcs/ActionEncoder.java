@@ -0,0 +1,189 @@
+package torcs;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The ActionEncoder class writes the message sent to the server for an Action straight into a reusable byte buffer.
+ * Values are clamped to their valid ranges as {@link Action#limitValues()} does, but the Action itself is left
+ * untouched, and doubles are written with a fixed number of decimals without creating strings.
+ * <p>
+ * Controllers that only emit a small set of accelerate/brake/steering combinations can register them as templates.
+ * The readings of a registered combination are then copied from a pre-encoded byte array; the server parses readings
+ * by name, so the order in which they are written does not matter.
+ */
+public class ActionEncoder {
+
+    private static final int DECIMALS = 6;
+    private static final long SCALE = 1_000_000L;
+
+    private static final byte[] ACCEL = ascii("(accel ");
+    private static final byte[] BRAKE = ascii(") (brake ");
+    private static final byte[] CLUTCH = ascii(") (clutch ");
+    private static final byte[] GEAR = ascii(") (gear ");
+    private static final byte[] STEER = ascii(") (steer ");
+    private static final byte[] META = ascii(") (meta ");
+    private static final byte[] FOCUS = ascii(") (focus ");
+
+    private double[] templateAccelerate = new double[0]; // The accelerate value of each template
+    private double[] templateBrake = new double[0]; // The brake value of each template
+    private double[] templateSteering = new double[0]; // The steering value of each template
+    private byte[][] templates = new byte[0][]; // The pre-encoded accel, brake and steer readings of each template
+
+    /**
+     * Registers a combination of accelerate, brake and steering values whose readings are encoded once, ahead of
+     * time. The other values of the action are ignored.
+     *
+     * @param action The action holding the combination.
+     */
+    public void addTemplate(Action action) {
+        double accelerate = clamp(action.accelerate, 0, 1);
+        double brake = clamp(action.brake, 0, 1);
+        double steering = clamp(action.steering, -1, 1);
+        if (findTemplate(accelerate, brake, steering) >= 0)
+            return;
+
+        byte[] buffer = new byte[96];
+        int pos = put(ACCEL, buffer, 0);
+        pos = writeDouble(accelerate, buffer, pos);
+        pos = put(BRAKE, buffer, pos);
+        pos = writeDouble(brake, buffer, pos);
+        pos = put(STEER, buffer, pos);
+        pos = writeDouble(steering, buffer, pos);
+        byte[] template = new byte[pos];
+        System.arraycopy(buffer, 0, template, 0, pos);
+
+        int n = templates.length;
+        templateAccelerate = Arrays.copyOf(templateAccelerate, n + 1);
+        templateBrake = Arrays.copyOf(templateBrake, n + 1);
+        templateSteering = Arrays.copyOf(templateSteering, n + 1);
+        templates = Arrays.copyOf(templates, n + 1);
+        templateAccelerate[n] = accelerate;
+        templateBrake[n] = brake;
+        templateSteering[n] = steering;
+        templates[n] = template;
+    }
+
+    /**
+     * Encodes an action into a buffer.
+     *
+     * @param action The action to encode.
+     * @param buffer The buffer to write to, at least 160 bytes long from the offset.
+     * @param offset The position of the first byte to write.
+     *
+     * @return The number of bytes written.
+     */
+    public int encode(Action action, byte[] buffer, int offset) {
+        double accelerate = clamp(action.accelerate, 0, 1);
+        double brake = clamp(action.brake, 0, 1);
+        double clutch = clamp(action.clutch, 0, 1);
+        double steering = clamp(action.steering, -1, 1);
+        int gear = Math.max(-1, Math.min(6, action.gear));
+
+        int pos = offset;
+        int template = findTemplate(accelerate, brake, steering);
+        if (template >= 0) {
+            pos = put(templates[template], buffer, pos);
+            pos = put(CLUTCH, buffer, pos);
+            pos = writeDouble(clutch, buffer, pos);
+            pos = put(GEAR, buffer, pos);
+            pos = writeLong(gear, buffer, pos);
+        } else {
+            pos = put(ACCEL, buffer, pos);
+            pos = writeDouble(accelerate, buffer, pos);
+            pos = put(BRAKE, buffer, pos);
+            pos = writeDouble(brake, buffer, pos);
+            pos = put(CLUTCH, buffer, pos);
+            pos = writeDouble(clutch, buffer, pos);
+            pos = put(GEAR, buffer, pos);
+            pos = writeLong(gear, buffer, pos);
+            pos = put(STEER, buffer, pos);
+            pos = writeDouble(steering, buffer, pos);
+        }
+        pos = put(META, buffer, pos);
+        buffer[pos++] = (byte) (action.restartRace ? '1' : '0');
+        pos = put(FOCUS, buffer, pos);
+        pos = writeLong(action.focus, buffer, pos);
+        buffer[pos++] = ')';
+        return pos - offset;
+    }
+
+    /**
+     * Writes a double with at most six decimals, dropping trailing zeros but keeping at least one decimal.
+     * NaN is written as 0.0.
+     *
+     * @param value  The value to write.
+     * @param buffer The buffer to write to.
+     * @param pos    The position of the first byte to write.
+     *
+     * @return The position after the last byte written.
+     */
+    public static int writeDouble(double value, byte[] buffer, int pos) {
+        boolean negative = value < 0;
+        double magnitude = negative ? -value : value;
+        if (!(magnitude < Long.MAX_VALUE / SCALE))
+            magnitude = magnitude != magnitude ? 0 : Long.MAX_VALUE / SCALE;
+        long scaled = (long) (magnitude * SCALE + 0.5);
+        if (negative && scaled != 0)
+            buffer[pos++] = '-';
+        pos = writeLong(scaled / SCALE, buffer, pos);
+        buffer[pos++] = '.';
+
+        long fraction = scaled % SCALE;
+        int digits = DECIMALS;
+        while (digits > 1 && fraction % 10 == 0) {
+            fraction /= 10;
+            digits--;
+        }
+        for (int i = digits - 1; i >= 0; i--) {
+            buffer[pos + i] = (byte) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        return pos + digits;
+    }
+
+    /**
+     * Writes a long in decimal notation.
+     *
+     * @param value  The value to write.
+     * @param buffer The buffer to write to.
+     * @param pos    The position of the first byte to write.
+     *
+     * @return The position after the last byte written.
+     */
+    public static int writeLong(long value, byte[] buffer, int pos) {
+        if (value < 0) {
+            buffer[pos++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10)
+            digits++;
+        for (int i = digits - 1; i >= 0; i--) {
+            buffer[pos + i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + digits;
+    }
+
+    private int findTemplate(double accelerate, double brake, double steering) {
+        for (int i = 0; i < templates.length; i++) {
+            if (templateSteering[i] == steering && templateAccelerate[i] == accelerate && templateBrake[i] == brake)
+                return i;
+        }
+        return -1;
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static int put(byte[] bytes, byte[] buffer, int pos) {
+        System.arraycopy(bytes, 0, buffer, pos, bytes.length);
+        return pos + bytes.length;
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
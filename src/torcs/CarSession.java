@@ -0,0 +1,309 @@
+package torcs;
+
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+
+/**
+ * The CarSession class holds everything needed to drive one car: its controller, its decoding and encoding buffers
+ * and the state of the identify / drive / restart / shutdown protocol with the server.
+ * It does no I/O itself; the owner passes every received datagram to {@link #handle}, sends whatever it returns and
+ * then calls {@link #sent}, so many sessions can share one thread. It is the only implementation of the protocol,
+ * driven by {@link Client} for one car and by {@link MultiClient} for several.
+ * <p>
+ * A session also measures the latency of every tick, printed per episode and for the whole run, and appends every
+ * datagram and its reply to a {@link PacketRecorder} if one is given.
+ */
+public class CarSession {
+
+    private static final int BUFFER_SIZE = 1024;
+
+    private final int port; // The server port of the car
+    private final String clientId; // The identifier sent in the init message
+    private final Controller driver; // The controller driving the car
+    private final int maxEpisodes; // The number of episodes to run
+    private final int maxSteps; // The maximum number of steps per episode, 0 for no limit
+    private final boolean verbose; // Indicates whether to print verbose output
+
+    private final byte[] initMessage; // The encoded init message
+    private final byte[] inBuffer = new byte[BUFFER_SIZE]; // The buffer for received datagrams
+    private final byte[] outBuffer = new byte[BUFFER_SIZE]; // The buffer for sent datagrams
+    private final SensorPacketParser parser = new SensorPacketParser();
+    private final PrimitiveSensorModel sensors;
+    private final ActionEncoder encoder = new ActionEncoder();
+    private final Action restartAction = new Action();
+    private final TickLatency episodeLatency = new TickLatency();
+    private final TickLatency runLatency = new TickLatency();
+    private PacketRecorder recorder; // Null if the datagrams are not recorded
+
+    private State state = State.IDENTIFYING;
+    private long currStep;
+    private long curEpisode;
+
+    /* The tick whose reply is being sent, see sent() */
+    private boolean pendingTick;
+    private int pendingLength; // The length of the datagram of the tick
+    private int pendingReply; // The length of the reply of the tick
+    private long receivedTime;
+    private long parsedTime;
+    private long computedTime;
+
+    /**
+     * Constructs a new CarSession.
+     *
+     * @param port        The server port of the car.
+     * @param clientId    The identifier sent in the init message.
+     * @param driver      The controller driving the car.
+     * @param maxEpisodes The number of episodes to run.
+     * @param maxSteps    The maximum number of steps per episode, 0 for no limit.
+     * @param verbose     True to enable verbose output, false otherwise.
+     */
+    public CarSession(int port, String clientId, Controller driver, int maxEpisodes, int maxSteps, boolean verbose) {
+        this.port = port;
+        this.clientId = clientId;
+        this.driver = driver;
+        this.maxEpisodes = maxEpisodes;
+        this.maxSteps = maxSteps;
+        this.verbose = verbose;
+
+        /* Build init string */
+        float[] angles = driver.initAngles();
+        StringBuilder initStr = new StringBuilder(clientId).append("(init");
+        for (float angle : angles)
+            initStr.append(' ').append(angle);
+        initStr.append(')');
+        this.initMessage = initStr.toString().getBytes(StandardCharsets.US_ASCII);
+
+        /* Decode only the readings used by the driver */
+        EnumSet<SensorField> fields = driver.sensorFields();
+        if (fields == null) {
+            this.sensors = new LazySensorModel();
+        } else {
+            this.sensors = new PrimitiveSensorModel();
+            this.sensors.setFieldMask(SensorField.maskOf(fields));
+        }
+
+        /* Pre-encode the discrete actions of the driver */
+        Action[] discreteActions = driver.discreteActions();
+        if (discreteActions != null) {
+            for (Action discreteAction : discreteActions)
+                encoder.addTemplate(discreteAction);
+        }
+        this.restartAction.restartRace = true;
+    }
+
+    /**
+     * Records every datagram of the session and its reply from now on. The session closes the recorder when it
+     * finishes.
+     *
+     * @param recorder The recorder.
+     */
+    public void setRecorder(PacketRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Handles one datagram received from the server and prepares the reply, if any.
+     *
+     * @param length       The number of bytes received into {@link #getInBuffer()}.
+     * @param receivedTime When the datagram was received, as returned by {@link System#nanoTime()}.
+     *
+     * @return The number of bytes of the reply written into {@link #getOutBuffer()}, or -1 if nothing has to be sent.
+     */
+    public int handle(int length, long receivedTime) {
+        if (state == State.IDENTIFYING) {
+            if (contains(inBuffer, length, "***identified***")) {
+                state = State.DRIVING;
+                currStep = 0;
+                return -1;
+            }
+            // Not identified yet: ask again at once, as the server expects
+            return initMessage();
+        }
+        if (state != State.DRIVING)
+            return -1;
+
+        /*
+         * Server messages start with '*', sensor packets with '('
+         */
+        if (length > 0 && inBuffer[0] == '*') {
+            if (contains(inBuffer, length, "***shutdown***")) {
+                record(receivedTime, length, 0);
+                System.out.println(clientId + ": server shutdown!");
+                endEpisode();
+                finish();
+                return -1;
+            }
+            if (contains(inBuffer, length, "***restart***")) {
+                record(receivedTime, length, 0);
+                driver.reset();
+                if (verbose)
+                    System.out.println(clientId + ": server restarting!");
+                endEpisode();
+                if (++curEpisode < maxEpisodes) {
+                    state = State.IDENTIFYING;
+                    return initMessage();
+                }
+                finish();
+                return -1;
+            }
+        }
+
+        Action action;
+        long parsed;
+        if (currStep < maxSteps || maxSteps == 0) {
+            sensors.decode(parser, inBuffer, 0, length);
+            parsed = System.nanoTime();
+            action = driver.control(sensors);
+        } else {
+            parsed = System.nanoTime();
+            action = restartAction;
+        }
+        long computed = System.nanoTime();
+
+        currStep++;
+        int reply = encoder.encode(action, outBuffer, 0);
+        pendingTick = true;
+        pendingLength = length;
+        pendingReply = reply;
+        this.receivedTime = receivedTime;
+        this.parsedTime = parsed;
+        this.computedTime = computed;
+        return reply;
+    }
+
+    /**
+     * Tells the session the reply prepared by the last call to {@link #handle} has been sent, so the tick is complete:
+     * its latency is measured and it is recorded. Calling it after sending anything else does nothing.
+     */
+    public void sent() {
+        if (!pendingTick)
+            return;
+        pendingTick = false;
+        episodeLatency.record(receivedTime, parsedTime, computedTime, System.nanoTime());
+        record(receivedTime, pendingLength, pendingReply);
+    }
+
+    /**
+     * Handles a receive that timed out.
+     *
+     * @return The number of bytes of the reply written into {@link #getOutBuffer()}, the init message while the
+     * session is identifying, or -1 if nothing has to be sent.
+     */
+    public int timeout() {
+        if (state == State.IDENTIFYING)
+            return initMessage();
+        if (state == State.DRIVING) {
+            episodeLatency.recordTimeout();
+            System.out.println(clientId + ": server did not respond within the timeout");
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the init message into the output buffer.
+     *
+     * @return The number of bytes of the init message.
+     */
+    public int initMessage() {
+        System.arraycopy(initMessage, 0, outBuffer, 0, initMessage.length);
+        return initMessage.length;
+    }
+
+    /**
+     * Shuts the controller down and prints the summary of the run; the session will not reply to the server anymore.
+     */
+    public void finish() {
+        if (state == State.DONE)
+            return;
+        state = State.DONE;
+        driver.shutdown();
+        runLatency.print(clientId + ": run latency:");
+        if (recorder != null) {
+            recorder.close();
+            System.out.println(clientId + ": recorded " + recorder.getRecordCount() + " packets");
+        }
+        if (parser.getMalformedCount() > 0)
+            System.out.println(clientId + ": malformed sensor values: " + parser.getMalformedCount());
+        if (verbose && sensors instanceof LazySensorModel)
+            System.out.println(clientId + ": sensor fields read: "
+                    + SensorField.fromMask(((LazySensorModel) sensors).getAccessedFields()));
+    }
+
+    /**
+     * Prints the latencies of the episode that just ended and adds them to those of the run.
+     */
+    private void endEpisode() {
+        episodeLatency.print(clientId + ": episode " + (curEpisode + 1) + " latency:");
+        runLatency.add(episodeLatency);
+        episodeLatency.reset();
+    }
+
+    private void record(long receivedTime, int length, int reply) {
+        if (recorder != null)
+            recorder.record(receivedTime, inBuffer, length, outBuffer, reply);
+    }
+
+    private static boolean contains(byte[] data, int length, String pattern) {
+        int n = pattern.length();
+        for (int i = 0; i + n <= length; i++) {
+            int j = 0;
+            while (j < n && data[i + j] == pattern.charAt(j))
+                j++;
+            if (j == n)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Retrieves the server port of the car.
+     *
+     * @return The server port.
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Retrieves the identifier sent in the init message.
+     *
+     * @return The client identifier.
+     */
+    public String getClientId() {
+        return clientId;
+    }
+
+    /**
+     * Retrieves the current phase of the protocol.
+     *
+     * @return The session state.
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Retrieves the buffer datagrams must be received into.
+     *
+     * @return The input buffer.
+     */
+    public byte[] getInBuffer() {
+        return inBuffer;
+    }
+
+    /**
+     * Retrieves the buffer replies are written into.
+     *
+     * @return The output buffer.
+     */
+    public byte[] getOutBuffer() {
+        return outBuffer;
+    }
+
+    /**
+     * The State enum represents the phases of the protocol with the server.
+     */
+    public enum State {
+        IDENTIFYING, DRIVING, DONE
+    }
+}
@@ -0,0 +1,186 @@
+package torcs;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The ChannelSocketHandler class is a Transport built on a connected, non-blocking DatagramChannel.
+ * Each direction uses one preallocated direct buffer, and timeouts are handled by a Selector registered once, so a
+ * round trip with the server makes no heap allocation and no socket option changes.
+ */
+public class ChannelSocketHandler implements Transport {
+
+    private static final int BUFFER_SIZE = 1024;
+
+    private DatagramChannel channel; // The channel connected to the server
+    private Selector selector; // The selector used to wait for incoming datagrams
+    private final ByteBuffer inBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE); // The buffer for received datagrams
+    private final ByteBuffer outBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE); // The buffer for sent datagrams
+    private boolean verbose; // Indicates whether to print verbose output
+
+    /**
+     * Constructs a new ChannelSocketHandler connected to the specified host and port.
+     *
+     * @param host    The remote host address.
+     * @param port    The remote port number.
+     * @param verbose True to enable verbose output, false otherwise.
+     */
+    public ChannelSocketHandler(String host, int port, boolean verbose) {
+        try {
+            channel = DatagramChannel.open();
+            channel.connect(new InetSocketAddress(host, port));
+            channel.configureBlocking(false);
+            selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        this.verbose = verbose;
+    }
+
+    /**
+     * Sends a message over the channel.
+     * The characters are copied one by one into the outgoing buffer, as the protocol is plain ASCII.
+     *
+     * @param msg The message to send.
+     */
+    public void send(String msg) {
+        if (verbose) {
+            System.out.println("Sending: " + msg);
+        }
+        outBuffer.clear();
+        int length = Math.min(msg.length(), outBuffer.capacity());
+        for (int i = 0; i < length; i++) {
+            outBuffer.put((byte) msg.charAt(i));
+        }
+        outBuffer.flip();
+        write();
+    }
+
+    /**
+     * Sends the bytes of an already encoded message over the channel.
+     *
+     * @param buffer The buffer holding the message.
+     * @param offset The position of the first byte of the message.
+     * @param length The number of bytes of the message.
+     */
+    public void send(byte[] buffer, int offset, int length) {
+        if (verbose) {
+            System.out.println("Sending: " + new String(buffer, offset, length, StandardCharsets.US_ASCII));
+        }
+        outBuffer.clear();
+        outBuffer.put(buffer, offset, Math.min(length, outBuffer.capacity()));
+        outBuffer.flip();
+        write();
+    }
+
+    /**
+     * Receives a message from the channel with a specified timeout.
+     *
+     * @param timeout The timeout value in milliseconds, 0 to wait forever.
+     *
+     * @return The received message as a string, or null if no message arrived within the timeout.
+     */
+    public String receive(int timeout) {
+        if (!read(timeout))
+            return null;
+        byte[] bytes = new byte[inBuffer.remaining()];
+        inBuffer.get(bytes);
+        String received = new String(bytes, StandardCharsets.US_ASCII);
+        if (verbose) {
+            System.out.println("Received: " + received);
+        }
+        return received;
+    }
+
+    /**
+     * Receives a message from the channel into the given buffer with a specified timeout.
+     *
+     * @param buffer  The buffer to fill with the received bytes.
+     * @param timeout The timeout value in milliseconds, 0 to wait forever.
+     *
+     * @return The number of bytes received, or -1 if no message arrived within the timeout.
+     */
+    public int receive(byte[] buffer, int timeout) {
+        if (!read(timeout))
+            return -1;
+        int length = Math.min(inBuffer.remaining(), buffer.length);
+        inBuffer.get(buffer, 0, length);
+        if (verbose) {
+            System.out.println("Received: " + new String(buffer, 0, length, StandardCharsets.US_ASCII));
+        }
+        return length;
+    }
+
+    /**
+     * Closes the selector and the channel.
+     */
+    public void close() {
+        try {
+            selector.close();
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes the content of the outgoing buffer as one datagram.
+     */
+    private void write() {
+        try {
+            channel.write(outBuffer);
+        } catch (PortUnreachableException e) {
+            if (verbose) {
+                System.out.println("Server unreachable!");
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Waits for one datagram and leaves it in the incoming buffer, ready to be read.
+     *
+     * @param timeout The timeout value in milliseconds, 0 to wait forever.
+     *
+     * @return True if a datagram was received, false on timeout or error.
+     */
+    private boolean read(int timeout) {
+        long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : 0;
+        inBuffer.clear();
+        try {
+            while (true) {
+                try {
+                    if (channel.read(inBuffer) > 0)
+                        break;
+                } catch (PortUnreachableException e) {
+                    // The server is not listening yet, keep waiting as a plain socket would
+                }
+                long wait = 0;
+                if (timeout > 0) {
+                    wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0) {
+                        if (verbose) {
+                            System.out.println("Socket Timeout!");
+                        }
+                        return false;
+                    }
+                }
+                selector.select(wait);
+                selector.selectedKeys().clear();
+            }
+            inBuffer.flip();
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+}
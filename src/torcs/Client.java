@@ -2,6 +2,7 @@ package torcs;
 
 import torcs.Controller.Stage;
 
+import java.io.IOException;
 import java.util.StringTokenizer;
 
 /**
@@ -16,6 +17,7 @@ import java.util.StringTokenizer;
 public class Client {
 
     private static int UDP_TIMEOUT = 10000;
+    private static final int UDP_BUFFER_SIZE = 1024;
     private static int port;
     private static String host;
     private static String clientId;
@@ -24,6 +26,8 @@ public class Client {
     private static int maxSteps;
     private static Stage stage;
     private static String trackName;
+    private static boolean nioTransport;
+    private static String recordPath;
 
     /**
      * The main entry point of the client.
@@ -32,83 +36,46 @@ public class Client {
      */
     public static void main(String[] args) {
         parseParameters(args);
-        SocketHandler mySocket = new SocketHandler(host, port, verbose);
-        String inMsg;
+        Transport mySocket;
+        if (nioTransport)
+            mySocket = new ChannelSocketHandler(host, port, verbose);
+        else
+            mySocket = new SocketHandler(host, port, verbose);
 
         Controller driver = load(args[0]);
         driver.setStage(stage);
         driver.setTrackName(trackName);
-
-        /* Build init string */
-        float[] angles = driver.initAngles();
-        String initStr = clientId + "(init";
-        for (int i = 0; i < angles.length; i++) {
-            initStr = initStr + " " + angles[i];
-        }
-        initStr = initStr + ")";
-
-        long curEpisode = 0;
-        boolean shutdownOccurred = false;
-        do {
-
-            /*
-             * Client identification
-             */
-
-            do {
-                mySocket.send(initStr);
-                inMsg = mySocket.receive(UDP_TIMEOUT);
-            } while (inMsg == null || inMsg.indexOf("***identified***") < 0);
-
-            /*
-             * Start to drive
-             */
-            long currStep = 0;
-            while (true) {
-                /*
-                 * Receives from TORCS the game state
-                 */
-                inMsg = mySocket.receive(UDP_TIMEOUT);
-
-                if (inMsg != null) {
-
-                    /*
-                     * Check if race is ended (shutdown)
-                     */
-                    if (inMsg.indexOf("***shutdown***") >= 0) {
-                        shutdownOccurred = true;
-                        System.out.println("Server shutdown!");
-                        break;
-                    }
-
-                    /*
-                     * Check if race is restarted
-                     */
-                    if (inMsg.indexOf("***restart***") >= 0) {
-                        driver.reset();
-                        if (verbose)
-                            System.out.println("Server restarting!");
-                        break;
-                    }
-
-                    Action action = new Action();
-                    if (currStep < maxSteps || maxSteps == 0)
-                        action = driver.control(new MessageBasedSensorModel(inMsg));
-                    else
-                        action.restartRace = true;
-
-                    currStep++;
-                    mySocket.send(action.toString());
-                } else
-                    System.out.println("Server did not respond within the timeout");
+        CarSession session = new CarSession(port, clientId, driver, maxEpisodes, maxSteps, verbose);
+
+        if (recordPath != null) {
+            try {
+                PacketRecorder recorder = new PacketRecorder(recordPath, maxSteps);
+                /* Truncate the log even if the client is interrupted or crashes; closing twice does nothing */
+                Runtime.getRuntime().addShutdownHook(new Thread(recorder::close, "packet-recorder"));
+                session.setRecorder(recorder);
+            } catch (IOException e) {
+                System.out.println("ERROR!!! -> Could not create the packet log " + recordPath);
+                e.printStackTrace();
             }
-
-        } while (++curEpisode < maxEpisodes && !shutdownOccurred);
+        }
 
         /*
-         * Shutdown the controller
+         * Identify, drive, restart and shut down as the session decides; it replies to every datagram
          */
-        driver.shutdown();
+        byte[] inBuffer = session.getInBuffer();
+        int reply = session.initMessage();
+        while (session.getState() != CarSession.State.DONE) {
+            if (reply >= 0) {
+                mySocket.send(session.getOutBuffer(), 0, reply);
+                session.sent();
+            }
+            int inLength = mySocket.receive(inBuffer, UDP_TIMEOUT);
+            if (inLength >= 0)
+                reply = session.handle(inLength, System.nanoTime());
+            else
+                reply = session.timeout();
+        }
+
         mySocket.close();
         System.out.println("Client shutdown.");
         System.out.println("Bye, bye!");
@@ -132,6 +99,8 @@ public class Client {
         maxSteps = 0;
         stage = Stage.UNKNOWN;
         trackName = "unknown";
+        nioTransport = false;
+        recordPath = null;
 
         for (int i = 1; i
 
@@ -167,6 +136,20 @@ public class Client {
             if (entity.equals("trackName")) {
                 trackName = value;
             }
+            if (entity.equals("transport")) {
+                if (value.equals("nio"))
+                    nioTransport = true;
+                else if (value.equals("socket"))
+                    nioTransport = false;
+                else {
+                    System.out.println(entity + ":" + value + " is not a valid option");
+                    System.exit(0);
+                }
+            }
+            if (entity.equals("record")) {
+                // The path may contain ':'
+                recordPath = args[i].substring(entity.length() + 1);
+            }
             if (entity.equals("maxEpisodes")) {
                 maxEpisodes = Integer.parseInt(value);
                 if (maxEpisodes <= 0) {
@@ -191,7 +174,7 @@ public class Client {
      *
      * @return The loaded controller instance.
      */
-    private static Controller load(String name) {
+    static Controller load(String name) {
         Controller controller = null;
         try {
             controller = (Controller) (Object) Class.forName(name).newInstance();
@@ -15,16 +15,50 @@ public class Constants {
 
     public static final double LEARNING_RATE = 0.7d;
     public static final double DISCOUNT_FACTOR = 0.95d;
+    public static final double TRACE_DECAY = 0.0d; // Lambda of Q(lambda), 0 for one-step Q-learning
     public static final int MAX_EPOCHS = 99;
     public static final double INITIAL_EPSILON = 1.0d;
     public static final double FINAL_EPSILON = 0.01d;
     public static final double EPSILON_DECAY = 0.005d;
+    public static final int CHECKPOINT_INTERVAL_TICKS = 3000;
+    public static final int CHECKPOINT_INTERVAL_MILLIS = 60000;
+    public static final boolean EXPERIENCE_REPLAY = false;
+    public static final int REPLAY_CAPACITY = 1 << 16;
+    public static final int REPLAY_BATCH_SIZE = 32;
+    public static final int REPLAY_UPDATES_PER_TRANSITION = 4;
+    public static final boolean STEER_TILE_CODING = false; // Steer with TileCodedQLearning instead of the Q-table
+    public static final boolean STEER_ADAPTIVE_STATES = false; // Steer with AdaptiveQLearning instead of the Q-table
+    public static final int ADAPTIVE_MAX_STATES = 24;
+    public static final double ADAPTIVE_SPLIT_VARIANCE = 0.05; // Of the TD errors of a state
+    public static final long ADAPTIVE_SPLIT_VISITS = 5000;
+    public static final double ADAPTIVE_MERGE_TOLERANCE = 0.05;
+    public static final boolean JOINT_STATES = false; // Steer and accelerate with SparseQLearning on joint states
+    public static final long JOINT_MAX_BYTES = 128L << 10; // Per joint-state table, room for all its 960 states
+    public static final int NEURAL_HIDDEN_UNITS = 64; // Per hidden layer, of the two of NeuralTrainer
+    public static final double NEURAL_LEARNING_RATE = 0.001d;
+    public static final int NEURAL_TRAIN_INTERVAL = 4; // Ticks between two minibatches
+    public static final int NEURAL_TARGET_SYNC_TICKS = 2000; // Ticks between two refreshes of the target network
+    public static final QValuePrecision Q_VALUE_PRECISION = QValuePrecision.DOUBLE; // The storage of the Q-tables
 
     public static final String STEER_Q_TABLE_PATH = System.getProperty("user.dir") + "/mdp/resources/QTable_Steer.csv";
     public static final String ACCEL_Q_TABLE_PATH = System.getProperty("user.dir") + "/mdp/resources/QTable_Accel.csv";
     public static final String GEAR_Q_TABLE_PATH = System.getProperty("user.dir") + "/mdp/resources/QTable_Gear.csv";
+    public static final String STEER_Q_TABLE_BINARY_PATH = System.getProperty("user.dir") + "/mdp/resources/QTable_Steer.qtable";
+    public static final String ACCEL_Q_TABLE_BINARY_PATH = System.getProperty("user.dir") + "/mdp/resources/QTable_Accel.qtable";
+    public static final String GEAR_Q_TABLE_BINARY_PATH = System.getProperty("user.dir") + "/mdp/resources/QTable_Gear.qtable";
+    public static final String STEER_TILES_PATH = System.getProperty("user.dir") + "/mdp/resources/Tiles_Steer.qtable";
+    public static final String STEER_ADAPTIVE_PATH = System.getProperty("user.dir") + "/mdp/resources/Adaptive_Steer.qtable";
+    public static final String STEER_JOINT_PATH = System.getProperty("user.dir") + "/mdp/resources/Joint_Steer.qtable";
+    public static final String ACCEL_JOINT_PATH = System.getProperty("user.dir") + "/mdp/resources/Joint_Accel.qtable";
+    public static final String NEURAL_NETWORK_PATH = System.getProperty("user.dir") + "/mdp/resources/Network.qtable";
+    public static final String STATISTICS_NEURAL_PATH = System.getProperty("user.dir") + "/mdp/resources/StatisticsNeural.csv";
     public static final String STATISTICS_TRAIN_PATH = System.getProperty("user.dir") + "/mdp/resources/StatisticsTrain.csv";
     public static final String STATISTICS_TEST_PATH = System.getProperty("user.dir") + "/mdp/resources/StatisticsTest.csv";
+    public static final long STATISTICS_MAX_BYTES = 16L << 20;
+    public static final int STATISTICS_MAX_FILES = 5;
+
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15};
 
     public static double round(double number, int dec) {
         BigDecimal bd = new BigDecimal(number);
@@ -32,6 +66,32 @@ public class Constants {
         return bd.doubleValue();
     }
 
+    /**
+     * Rounds a number half away from zero with plain arithmetic, without the allocations of {@link #round}.
+     * It can differ from {@link #round} only for numbers that lie within one ulp of a rounding tie.
+     *
+     * @param number The number to round.
+     * @param dec    The number of decimals to keep, between 0 and 15.
+     *
+     * @return The rounded number.
+     */
+    public static double fastRound(double number, int dec) {
+        double scale = POWERS_OF_TEN[dec];
+        double scaled = Math.abs(number) * scale;
+        if (!(scaled < 0x1p52))
+            return number; // Already integral at this scale, or NaN / infinite
+        return Math.copySign(Math.floor(scaled + 0.5) / scale, number);
+    }
+
+    /**
+     * The precision the Q-values of a {@code QLearning} table are stored with.
+     */
+    public enum QValuePrecision {
+        DOUBLE, // 8 bytes per value
+        FLOAT, // 4 bytes per value, about 7 significant digits
+        INT16 // 2 bytes per value, 65535 steps between the lowest and highest value of the table
+    }
+
     public enum ControlSystems {
         STEERING_CONTROL_SYSTEM, ACCELERATION_CONTROL_SYSTEM, GEAR_CONTROL_SYSTEM
     }
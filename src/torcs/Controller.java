@@ -1,5 +1,7 @@
 package torcs;
 
+import java.util.EnumSet;
+
 /**
  * The Controller class is an abstract class that serves as the base for implementing TORCS controllers.
  * It provides common methods and properties for controlling the car's behavior in different stages of the race.
@@ -62,8 +64,31 @@ public abstract class Controller {
         this.trackName = trackName;
     }
 
+    /**
+     * Declares the sensor readings used by the controller.
+     * Only these readings are decoded from each packet, the others keep stale values. When null is returned, the
+     * client decodes every reading lazily on its first access instead.
+     *
+     * @return The readings used by the controller, or null if they are not known.
+     */
+    public EnumSet<SensorField> sensorFields() {
+        return null;
+    }
+
+    /**
+     * Declares the accelerate, brake and steering combinations emitted by the controller, if it only emits a small
+     * discrete set of them. The client pre-encodes these combinations once instead of formatting them on every tick.
+     *
+     * @return The discrete actions of the controller, or null if its actions are continuous.
+     */
+    public Action[] discreteActions() {
+        return null;
+    }
+
     /**
      * Controls the car's behavior based on the sensor readings.
+     * The client recycles the same SensorModel instance on every tick, so readings that must outlive the call have
+     * to be copied.
      *
      * @param sensors The sensor readings from the car.
      *
@@ -0,0 +1,131 @@
+package torcs;
+
+import java.util.Arrays;
+
+/**
+ * The LatencyHistogram class records durations in nanoseconds into a fixed set of logarithmic buckets, in the style
+ * of an HDR histogram. Values below 64 ns are counted exactly and larger values land in one of 32 sub-buckets per
+ * power of two, so every recorded value is known within about 3%.
+ * <p>
+ * All the memory is allocated up front and {@link #record} only increments a counter, so the histogram can be used
+ * on every tick of the control loop.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+    private static final int BUCKETS = LINEAR_LIMIT + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final String name; // The name printed with the summary
+    private final long[] counts = new long[BUCKETS]; // The number of values recorded in each bucket
+    private long count; // The number of values recorded
+    private long max; // The largest value recorded
+
+    /**
+     * Constructs a new empty LatencyHistogram.
+     *
+     * @param name The name printed with the summary.
+     */
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos The duration in nanoseconds; negative values are recorded as 0.
+     */
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        counts[bucketOf(nanos)]++;
+        count++;
+        if (nanos > max)
+            max = nanos;
+    }
+
+    /**
+     * Adds every value recorded by another histogram to this one.
+     *
+     * @param other The histogram to add.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++)
+            counts[i] += other.counts[i];
+        count += other.count;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Removes every recorded value.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        max = 0;
+    }
+
+    /**
+     * Retrieves the value below which a given percentage of the recorded values fall.
+     *
+     * @param percentile The percentage, between 0 and 100.
+     *
+     * @return The upper bound of the bucket holding the percentile, in nanoseconds, or 0 if nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+        if (count == 0)
+            return 0;
+        long target = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target)
+                return Math.min(max, highestValueOf(i));
+        }
+        return max;
+    }
+
+    /**
+     * Retrieves the number of recorded values.
+     *
+     * @return The number of values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Retrieves the largest recorded value.
+     *
+     * @return The largest value in nanoseconds.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Builds a one-line summary with the p50, p99, p99.9 and max values in microseconds.
+     *
+     * @return The summary.
+     */
+    public String summary() {
+        return String.format("%-16s n=%d p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus", name, count,
+                getPercentile(50) / 1e3, getPercentile(99) / 1e3, getPercentile(99.9) / 1e3, max / 1e3);
+    }
+
+    private static int bucketOf(long value) {
+        if (value < LINEAR_LIMIT)
+            return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    private static long highestValueOf(int bucket) {
+        if (bucket < LINEAR_LIMIT)
+            return bucket;
+        int shift = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+        long mantissa = (bucket - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,159 @@
+package torcs;
+
+/**
+ * The LazySensorModel class is a PrimitiveSensorModel that decodes each reading only when it is first read.
+ * Decoding a packet only scans it to find where every reading is; the values of a reading are parsed on the first
+ * call to its getter, so readings the controller never looks at, such as the opponents array, cost nothing.
+ * <p>
+ * The fields read by the controller are recorded across ticks and can be retrieved with {@link #getAccessedFields}
+ * to declare them in {@link Controller#sensorFields()}.
+ */
+public class LazySensorModel extends PrimitiveSensorModel {
+
+    private final int[] starts = new int[SensorField.values().length]; // Where the values of each reading start
+    private final int[] ends = new int[SensorField.values().length]; // Where the values of each reading end
+    private SensorPacketParser parser; // The parser used to decode the values on demand
+    private byte[] data; // The buffer holding the current packet
+    private int pendingMask; // The readings present in the packet and not decoded yet
+    private int accessedMask; // The readings read by the controller since this instance was created
+
+    @Override
+    public void decode(SensorPacketParser parser, byte[] data, int offset, int length) {
+        wrap(data, offset, length);
+        this.parser = parser;
+        this.data = data;
+        this.pendingMask = parser.index(data, offset, length, starts, ends);
+    }
+
+    /**
+     * Retrieves the fields read by the controller since this instance was created.
+     *
+     * @return The mask of the accessed fields.
+     */
+    public int getAccessedFields() {
+        return accessedMask;
+    }
+
+    private void load(SensorField field) {
+        int bit = field.mask();
+        accessedMask |= bit;
+        if ((pendingMask & bit) != 0) {
+            pendingMask &= ~bit;
+            parser.parseValues(data, starts[field.ordinal()], ends[field.ordinal()], field, this);
+        }
+    }
+
+    @Override
+    public double getSpeed() {
+        load(SensorField.SPEED_X);
+        return speedX;
+    }
+
+    @Override
+    public double getAngleToTrackAxis() {
+        load(SensorField.ANGLE);
+        return angle;
+    }
+
+    @Override
+    public double[] getTrackEdgeSensors() {
+        load(SensorField.TRACK);
+        return track;
+    }
+
+    @Override
+    public double[] getFocusSensors() {
+        load(SensorField.FOCUS);
+        return focus;
+    }
+
+    @Override
+    public double getTrackPosition() {
+        load(SensorField.TRACK_POS);
+        return trackPos;
+    }
+
+    @Override
+    public int getGear() {
+        load(SensorField.GEAR);
+        return gear;
+    }
+
+    @Override
+    public double[] getOpponentSensors() {
+        load(SensorField.OPPONENTS);
+        return opponents;
+    }
+
+    @Override
+    public int getRacePosition() {
+        load(SensorField.RACE_POS);
+        return racePos;
+    }
+
+    @Override
+    public double getLateralSpeed() {
+        load(SensorField.SPEED_Y);
+        return speedY;
+    }
+
+    @Override
+    public double getCurrentLapTime() {
+        load(SensorField.CUR_LAP_TIME);
+        return curLapTime;
+    }
+
+    @Override
+    public double getDamage() {
+        load(SensorField.DAMAGE);
+        return damage;
+    }
+
+    @Override
+    public double getDistanceFromStartLine() {
+        load(SensorField.DIST_FROM_START);
+        return distFromStart;
+    }
+
+    @Override
+    public double getDistanceRaced() {
+        load(SensorField.DIST_RACED);
+        return distRaced;
+    }
+
+    @Override
+    public double getFuelLevel() {
+        load(SensorField.FUEL);
+        return fuel;
+    }
+
+    @Override
+    public double getLastLapTime() {
+        load(SensorField.LAST_LAP_TIME);
+        return lastLapTime;
+    }
+
+    @Override
+    public double getRPM() {
+        load(SensorField.RPM);
+        return rpm;
+    }
+
+    @Override
+    public double[] getWheelSpinVelocity() {
+        load(SensorField.WHEEL_SPIN_VEL);
+        return wheelSpinVel;
+    }
+
+    @Override
+    public double getZSpeed() {
+        load(SensorField.SPEED_Z);
+        return speedZ;
+    }
+
+    @Override
+    public double getZ() {
+        load(SensorField.Z);
+        return z;
+    }
+}
@@ -0,0 +1,236 @@
+package torcs;
+
+import torcs.Controller.Stage;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.function.Consumer;
+
+/**
+ * The MultiClient class drives several cars from one JVM and one thread.
+ * Every car gets its own connected DatagramChannel and {@link CarSession}, and all channels are multiplexed through a
+ * single Selector, so dozens of controllers share one warm heap instead of running one process each.
+ * <p>
+ * Usage: {@code MultiClient car:<port>:<id>:<controller class> [car:...] [host:..] [maxEpisodes:..] [maxSteps:..]
+ * [stage:..] [trackName:..] [verbose:on]}
+ */
+public class MultiClient {
+
+    private static final int UDP_TIMEOUT = 10000;
+
+    private final Selector selector;
+    private final ByteBuffer inBuffer = ByteBuffer.allocateDirect(1024); // Shared buffer for received datagrams
+    private final ByteBuffer outBuffer = ByteBuffer.allocateDirect(1024); // Shared buffer for sent datagrams
+    private final List<CarSession> sessions = new ArrayList<>();
+    private final List<DatagramChannel> channels = new ArrayList<>();
+    private long[] deadlines = new long[0]; // When each car times out, in milliseconds
+    private int active; // The number of cars still driving
+    private final boolean verbose;
+    private final Consumer<SelectionKey> readHandler = this::onReadable;
+
+    /**
+     * Constructs a new MultiClient.
+     *
+     * @param verbose True to enable verbose output, false otherwise.
+     *
+     * @throws IOException If the selector cannot be opened.
+     */
+    public MultiClient(boolean verbose) throws IOException {
+        this.selector = Selector.open();
+        this.verbose = verbose;
+    }
+
+    /**
+     * The main entry point of the multi-car client.
+     *
+     * @param args The command-line arguments.
+     */
+    public static void main(String[] args) {
+        String host = "localhost";
+        boolean verbose = false;
+        int maxEpisodes = 1;
+        int maxSteps = 0;
+        Stage stage = Stage.UNKNOWN;
+        String trackName = "unknown";
+        List<String[]> cars = new ArrayList<>();
+
+        for (String arg : args) {
+            StringTokenizer st = new StringTokenizer(arg, ":");
+            String entity = st.nextToken();
+            if (entity.equals("car")) {
+                if (st.countTokens() != 3) {
+                    System.out.println(arg + " is not a valid option, use car:<port>:<id>:<controller class>");
+                    System.exit(0);
+                }
+                cars.add(new String[]{st.nextToken(), st.nextToken(), st.nextToken()});
+                continue;
+            }
+            String value = st.nextToken();
+            if (entity.equals("host"))
+                host = value;
+            if (entity.equals("verbose"))
+                verbose = value.equals("on");
+            if (entity.equals("stage"))
+                stage = Stage.fromInt(Integer.parseInt(value));
+            if (entity.equals("trackName"))
+                trackName = value;
+            if (entity.equals("maxEpisodes"))
+                maxEpisodes = Integer.parseInt(value);
+            if (entity.equals("maxSteps"))
+                maxSteps = Integer.parseInt(value);
+        }
+        if (cars.isEmpty() || maxEpisodes <= 0 || maxSteps < 0) {
+            System.out.println("Usage: MultiClient car:<port>:<id>:<controller class> [car:...] [host:..] "
+                    + "[maxEpisodes:..] [maxSteps:..] [stage:..] [trackName:..] [verbose:on]");
+            System.exit(0);
+        }
+
+        try {
+            MultiClient client = new MultiClient(verbose);
+            for (String[] car : cars) {
+                Controller driver = Client.load(car[2]);
+                driver.setStage(stage);
+                driver.setTrackName(trackName);
+                client.addCar(host, new CarSession(Integer.parseInt(car[0]), car[1], driver, maxEpisodes, maxSteps,
+                        verbose));
+            }
+            client.run();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        System.out.println("Client shutdown.");
+        System.out.println("Bye, bye!");
+    }
+
+    /**
+     * Opens the channel of a car and sends its first init message.
+     *
+     * @param host    The server host.
+     * @param session The session of the car.
+     *
+     * @throws IOException If the channel cannot be opened.
+     */
+    public void addCar(String host, CarSession session) throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        channel.connect(new InetSocketAddress(host, session.getPort()));
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ, sessions.size());
+        sessions.add(session);
+        channels.add(channel);
+        deadlines = Arrays.copyOf(deadlines, sessions.size());
+        active++;
+        send(sessions.size() - 1, session.initMessage());
+    }
+
+    /**
+     * Runs the selector loop until every car has finished.
+     *
+     * @throws IOException If the selector fails.
+     */
+    public void run() throws IOException {
+        while (active > 0) {
+            long now = System.currentTimeMillis();
+            long wait = Long.MAX_VALUE;
+            for (int i = 0; i < sessions.size(); i++) {
+                if (sessions.get(i).getState() != CarSession.State.DONE)
+                    wait = Math.min(wait, deadlines[i] - now);
+            }
+            selector.select(readHandler, Math.max(1, wait));
+
+            now = System.currentTimeMillis();
+            for (int i = 0; i < sessions.size(); i++) {
+                CarSession session = sessions.get(i);
+                if (session.getState() == CarSession.State.DONE || now < deadlines[i])
+                    continue;
+                int reply = session.timeout();
+                if (reply >= 0)
+                    send(i, reply);
+                else
+                    deadlines[i] = now + UDP_TIMEOUT;
+            }
+        }
+        selector.close();
+    }
+
+    /**
+     * Drains the datagrams waiting on a ready channel and replies to each of them.
+     *
+     * @param key The selection key of the channel.
+     */
+    private void onReadable(SelectionKey key) {
+        int index = (Integer) key.attachment();
+        CarSession session = sessions.get(index);
+        DatagramChannel channel = channels.get(index);
+        long receivedTime;
+        try {
+            while (session.getState() != CarSession.State.DONE) {
+                inBuffer.clear();
+                int length;
+                try {
+                    length = channel.read(inBuffer);
+                    receivedTime = System.nanoTime();
+                } catch (PortUnreachableException e) {
+                    // The server of this car is not listening yet
+                    continue;
+                }
+                if (length <= 0)
+                    break;
+                inBuffer.flip();
+                length = Math.min(length, session.getInBuffer().length);
+                inBuffer.get(session.getInBuffer(), 0, length);
+                deadlines[index] = System.currentTimeMillis() + UDP_TIMEOUT;
+                if (verbose)
+                    System.out.println(session.getClientId() + " received: " + new String(session.getInBuffer(), 0, length));
+
+                int reply = session.handle(length, receivedTime);
+                if (reply >= 0)
+                    send(index, reply);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            session.finish();
+        }
+        if (session.getState() == CarSession.State.DONE) {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            active--;
+        }
+    }
+
+    /**
+     * Sends the content of the output buffer of a car and restarts its timeout.
+     *
+     * @param index  The index of the car.
+     * @param length The number of bytes to send.
+     */
+    private void send(int index, int length) {
+        CarSession session = sessions.get(index);
+        if (verbose)
+            System.out.println(session.getClientId() + " sending: " + new String(session.getOutBuffer(), 0, length));
+        outBuffer.clear();
+        outBuffer.put(session.getOutBuffer(), 0, length);
+        outBuffer.flip();
+        try {
+            channels.get(index).write(outBuffer);
+        } catch (PortUnreachableException e) {
+            // The server of this car is not listening yet, the init message will be sent again
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        session.sent();
+        deadlines[index] = System.currentTimeMillis() + UDP_TIMEOUT;
+    }
+}
@@ -0,0 +1,125 @@
+package torcs;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The PacketRecorder class appends every datagram received from the server, with its arrival time and the reply sent
+ * back, to a compact binary log that {@link PacketReplayer} can stream through any controller offline.
+ * <p>
+ * The log starts with a 12 byte header, the ASCII magic {@code SCRLOG}, a little-endian short version and the int
+ * {@code maxSteps} of the client, 0 for none, followed by one record per datagram:
+ * <pre>
+ *   long  time       nanoseconds since the recorder was opened
+ *   short inLength   length of the received datagram
+ *   short outLength  length of the reply, 0 for the restart and shutdown messages
+ *   byte[inLength]   the received datagram
+ *   byte[outLength]  the reply
+ * </pre>
+ * The file is written through a memory mapped window that moves forward as it fills, so recording a tick is a plain
+ * memory copy; the file is truncated to the written length when the recorder is closed. A log that was not closed,
+ * because the client was killed, ends with the zeros of its last window: since every datagram has a length, the first
+ * record with an {@code inLength} of 0 marks the end of the log.
+ * <p>
+ * Recording and closing are synchronized, so the recorder can be closed from a shutdown hook while the client loop is
+ * still running; records after the close are dropped.
+ */
+public class PacketRecorder {
+
+    static final byte[] MAGIC = {'S', 'C', 'R', 'L', 'O', 'G'};
+    static final short VERSION = 2;
+    static final int HEADER_SIZE = 12;
+    static final int RECORD_HEADER_SIZE = 12;
+    private static final int WINDOW_SIZE = 8 << 20; // Size of the mapped window, in bytes
+
+    private final FileChannel channel;
+    private final long startTime; // When the recorder was opened, in nanoseconds
+    private MappedByteBuffer window; // The mapped part of the file being written
+    private long windowStart; // The position of the window in the file
+    private long records; // The number of records written
+
+    /**
+     * Creates a new log, replacing any existing file.
+     *
+     * @param path     The path of the log.
+     * @param maxSteps The number of ticks after which the client asks for a restart, 0 for none.
+     *
+     * @throws IOException If the file cannot be created.
+     */
+    public PacketRecorder(String path, int maxSteps) throws IOException {
+        Path file = Paths.get(path);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.startTime = System.nanoTime();
+        map(0);
+        window.put(MAGIC);
+        window.putShort(VERSION);
+        window.putInt(maxSteps);
+    }
+
+    /**
+     * Appends one record to the log.
+     *
+     * @param receivedTime When the datagram was received, as returned by {@link System#nanoTime()}.
+     * @param in           The buffer holding the received datagram.
+     * @param inLength     The length of the received datagram; empty datagrams are not recorded.
+     * @param out          The buffer holding the reply.
+     * @param outLength    The length of the reply, 0 if nothing was sent.
+     */
+    public synchronized void record(long receivedTime, byte[] in, int inLength, byte[] out, int outLength) {
+        if (window == null || inLength == 0)
+            return; // Closed, or a record that would read as the end of the log
+        try {
+            int size = RECORD_HEADER_SIZE + inLength + outLength;
+            if (window.remaining() < size)
+                map(windowStart + window.position());
+            window.putLong(receivedTime - startTime);
+            window.putShort((short) inLength);
+            window.putShort((short) outLength);
+            window.put(in, 0, inLength);
+            window.put(out, 0, outLength);
+            records++;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Retrieves the number of records written.
+     *
+     * @return The number of records.
+     */
+    public synchronized long getRecordCount() {
+        return records;
+    }
+
+    /**
+     * Flushes the log and truncates it to the written length. Closing a closed recorder does nothing.
+     */
+    public synchronized void close() {
+        if (window == null)
+            return;
+        try {
+            long length = windowStart + window.position();
+            window.force();
+            window = null;
+            channel.truncate(length);
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void map(long position) throws IOException {
+        if (window != null)
+            window.force();
+        windowStart = position;
+        window = channel.map(FileChannel.MapMode.READ_WRITE, position, WINDOW_SIZE);
+        window.order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
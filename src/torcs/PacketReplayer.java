@@ -0,0 +1,209 @@
+package torcs;
+
+import torcs.Controller.Stage;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.StringTokenizer;
+
+/**
+ * The PacketReplayer class streams a log written by {@link PacketRecorder} through a controller as fast as possible,
+ * without a simulator, and reports the number of ticks per second.
+ * The packets are decoded and the actions encoded exactly as the client does. With {@code diff:on} every produced
+ * action is compared with the recorded one, which shows whether a controller still behaves as it did during the race.
+ * <p>
+ * Like the client, the replayer answers the ticks of an episode past the {@code maxSteps} saved in the log with a
+ * restart request, without calling the controller; those ticks are not counted in the throughput. The log ends at its
+ * end of file or at the first empty record, where the zeros of a log that was not closed begin.
+ * <p>
+ * Usage: {@code PacketReplayer <controller class> file:<log> [diff:on] [repeat:N] [stage:..] [trackName:..]}
+ */
+public class PacketReplayer {
+
+    private static final int MAX_REPORTED_DIFFS = 10;
+
+    /**
+     * The main entry point of the replayer.
+     *
+     * @param args The command-line arguments.
+     */
+    public static void main(String[] args) {
+        String file = null;
+        boolean diff = false;
+        int repeat = 1;
+        Stage stage = Stage.UNKNOWN;
+        String trackName = "unknown";
+        for (int i = 1; i < args.length; i++) {
+            StringTokenizer st = new StringTokenizer(args[i], ":");
+            String entity = st.nextToken();
+            String value = args[i].substring(entity.length() + 1);
+            if (entity.equals("file"))
+                file = value;
+            if (entity.equals("diff"))
+                diff = value.equals("on");
+            if (entity.equals("repeat"))
+                repeat = Integer.parseInt(value);
+            if (entity.equals("stage"))
+                stage = Stage.fromInt(Integer.parseInt(value));
+            if (entity.equals("trackName"))
+                trackName = value;
+        }
+        if (args.length == 0 || file == null || repeat <= 0) {
+            System.out.println("Usage: PacketReplayer <controller class> file:<log> [diff:on] [repeat:N] [stage:..] "
+                    + "[trackName:..]");
+            System.exit(0);
+        }
+
+        Controller driver = Client.load(args[0]);
+        driver.setStage(stage);
+        driver.setTrackName(trackName);
+        try {
+            new PacketReplayer(driver, diff).replay(file, repeat);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        driver.shutdown();
+    }
+
+    private final Controller driver;
+    private final boolean diff; // Indicates whether to compare the produced actions with the recorded ones
+    private final byte[] inBuffer = new byte[1024];
+    private final byte[] outBuffer = new byte[1024];
+    private final byte[] recordedBuffer = new byte[1024];
+    private final SensorPacketParser parser = new SensorPacketParser();
+    private final PrimitiveSensorModel sensors;
+    private final ActionEncoder encoder = new ActionEncoder();
+    private final Action restartAction = new Action();
+    private int maxSteps; // The number of ticks of an episode after which the client asked for a restart, 0 for none
+    private long steps; // The number of ticks of the current episode
+    private long ticks; // The number of packets passed to the controller
+    private long restarts; // The number of packets answered with a restart request, without the controller
+    private long mismatches; // The number of actions different from the recorded ones
+
+    /**
+     * Constructs a new PacketReplayer.
+     *
+     * @param driver The controller to replay the log through.
+     * @param diff   True to compare the produced actions with the recorded ones.
+     */
+    public PacketReplayer(Controller driver, boolean diff) {
+        this.driver = driver;
+        this.diff = diff;
+        this.restartAction.restartRace = true;
+        EnumSet<SensorField> fields = driver.sensorFields();
+        if (fields == null) {
+            this.sensors = new LazySensorModel();
+        } else {
+            this.sensors = new PrimitiveSensorModel();
+            this.sensors.setFieldMask(SensorField.maskOf(fields));
+        }
+        Action[] discreteActions = driver.discreteActions();
+        if (discreteActions != null) {
+            for (Action discreteAction : discreteActions)
+                encoder.addTemplate(discreteAction);
+        }
+    }
+
+    /**
+     * Replays a log through the controller and prints the throughput.
+     *
+     * @param path   The path of the log.
+     * @param repeat The number of passes over the log; the controller is reset between passes.
+     *
+     * @throws IOException If the log cannot be read or is not a valid log.
+     */
+    public void replay(String path, int repeat) throws IOException {
+        MappedByteBuffer log;
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        log.order(ByteOrder.LITTLE_ENDIAN);
+        byte[] magic = new byte[PacketRecorder.MAGIC.length];
+        if (log.remaining() < PacketRecorder.HEADER_SIZE)
+            throw new IOException(path + " is not a packet log");
+        log.get(magic);
+        short version = log.getShort();
+        if (!Arrays.equals(magic, PacketRecorder.MAGIC) || version < 1 || version > PacketRecorder.VERSION)
+            throw new IOException(path + " is not a packet log of version " + PacketRecorder.VERSION);
+        // Version 1 had no maxSteps in its 8 byte header
+        int headerSize = version == 1 ? 8 : PacketRecorder.HEADER_SIZE;
+        maxSteps = version == 1 ? 0 : log.getInt();
+
+        long start = System.nanoTime();
+        for (int pass = 0; pass < repeat; pass++) {
+            if (pass > 0)
+                driver.reset();
+            steps = 0;
+            log.position(headerSize);
+            while (log.remaining() >= PacketRecorder.RECORD_HEADER_SIZE) {
+                log.getLong();
+                int inLength = log.getShort();
+                int outLength = log.getShort();
+                if (inLength <= 0 || outLength < 0 || log.remaining() < inLength + outLength)
+                    break; // The zeros after the last record of a log that was not closed
+                log.get(inBuffer, 0, inLength);
+                log.get(recordedBuffer, 0, outLength);
+                replayTick(inLength, outLength);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println("Replayed " + ticks + " ticks in " + String.format("%.3f", seconds) + " s: "
+                + String.format("%.0f", ticks / seconds) + " ticks/s");
+        if (restarts > 0)
+            System.out.println("Ticks answered with a restart past maxSteps " + maxSteps + ": " + restarts);
+        if (diff)
+            System.out.println("Actions different from the recorded ones: " + mismatches);
+    }
+
+    /**
+     * Passes one recorded datagram to the controller.
+     *
+     * @param inLength  The length of the datagram in the input buffer.
+     * @param outLength The length of the recorded reply.
+     */
+    private void replayTick(int inLength, int outLength) {
+        /*
+         * Server messages start with '*', sensor packets with '('. Restart and shutdown messages are recorded without
+         * a reply; any other message was answered by the controller like a sensor packet.
+         */
+        if (inLength > 0 && inBuffer[0] == '*') {
+            String message = new String(inBuffer, 0, inLength, StandardCharsets.US_ASCII);
+            if (message.contains("***restart***")) {
+                driver.reset();
+                steps = 0;
+                return;
+            }
+            if (message.contains("***shutdown***") || outLength == 0)
+                return;
+        }
+
+        Action action;
+        if (steps < maxSteps || maxSteps == 0) {
+            sensors.decode(parser, inBuffer, 0, inLength);
+            action = driver.control(sensors);
+            ticks++;
+        } else {
+            action = restartAction;
+            restarts++;
+        }
+        steps++;
+        int length = encoder.encode(action, outBuffer, 0);
+
+        if (diff && outLength > 0 && !Arrays.equals(outBuffer, 0, length, recordedBuffer, 0, outLength)) {
+            mismatches++;
+            if (mismatches <= MAX_REPORTED_DIFFS) {
+                System.out.println("Tick " + (ticks + restarts) + ":");
+                System.out.println("  recorded: " + new String(recordedBuffer, 0, outLength, StandardCharsets.US_ASCII));
+                System.out.println("  produced: " + new String(outBuffer, 0, length, StandardCharsets.US_ASCII));
+            }
+        }
+    }
+}
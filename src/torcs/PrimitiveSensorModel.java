@@ -0,0 +1,240 @@
+package torcs;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The PrimitiveSensorModel class implements the SensorModel interface on top of the primitive fields of
+ * {@link SensorReadings}, so every getter is a plain field load.
+ * <p>
+ * A single instance is meant to be refilled on every tick with {@link #decode}. The arrays returned by the getters
+ * are the internal buffers and are overwritten by the next packet, so controllers must copy any value they want to
+ * keep across ticks.
+ */
+public class PrimitiveSensorModel extends SensorReadings implements SensorModel {
+
+    private byte[] data; // The buffer holding the last decoded packet
+    private int offset; // The position of the packet in the buffer
+    private int length; // The length of the packet
+    private String message; // The packet as a string, built on demand
+    private int fieldMask = SensorField.ALL; // The readings decoded from each packet
+
+    /**
+     * Restricts decoding to a subset of the readings.
+     * Readings outside the mask are skipped by {@link #decode} and their getters keep returning stale values.
+     *
+     * @param fieldMask The fields to decode, as built by {@link SensorField#maskOf}.
+     */
+    public void setFieldMask(int fieldMask) {
+        this.fieldMask = fieldMask;
+    }
+
+    /**
+     * Decodes a sensor packet into this instance, replacing the previous readings.
+     *
+     * @param parser The parser used to decode the packet.
+     * @param data   The buffer holding the packet.
+     * @param offset The position of the first byte of the packet.
+     * @param length The number of bytes of the packet.
+     */
+    public void decode(SensorPacketParser parser, byte[] data, int offset, int length) {
+        wrap(data, offset, length);
+        parser.parse(data, offset, length, this, fieldMask);
+    }
+
+    /**
+     * Records the packet the current readings come from, so that {@link #getMessage} can rebuild it.
+     *
+     * @param data   The buffer holding the packet.
+     * @param offset The position of the first byte of the packet.
+     * @param length The number of bytes of the packet.
+     */
+    protected void wrap(byte[] data, int offset, int length) {
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+        this.message = null;
+    }
+
+    /**
+     * Retrieves the current speed of the car.
+     *
+     * @return The car's speed in units per second.
+     */
+    public double getSpeed() {
+        return speedX;
+    }
+
+    /**
+     * Retrieves the angle between the car's orientation and the track's axis.
+     *
+     * @return The angle to the track's axis in radians.
+     */
+    public double getAngleToTrackAxis() {
+        return angle;
+    }
+
+    /**
+     * Retrieves an array of sensor readings representing the track's edge distances.
+     *
+     * @return An array of track edge sensor readings.
+     */
+    public double[] getTrackEdgeSensors() {
+        return track;
+    }
+
+    /**
+     * Retrieves an array of sensor readings representing the focus on specific objects in the environment.
+     *
+     * @return An array of focus sensor readings.
+     */
+    public double[] getFocusSensors() {
+        return focus;
+    }
+
+    /**
+     * Retrieves the car's position on the track.
+     *
+     * @return The car's track position as a value between -1.0 (left) and 1.0 (right).
+     */
+    public double getTrackPosition() {
+        return trackPos;
+    }
+
+    /**
+     * Retrieves the current gear of the car.
+     *
+     * @return The car's gear as an integer value.
+     */
+    public int getGear() {
+        return gear;
+    }
+
+    /**
+     * Retrieves an array of sensor readings representing other cars on the track.
+     *
+     * @return An array of opponent sensor readings.
+     */
+    public double[] getOpponentSensors() {
+        return opponents;
+    }
+
+    /**
+     * Retrieves the current race position of the car.
+     *
+     * @return The car's race position as an integer value.
+     */
+    public int getRacePosition() {
+        return racePos;
+    }
+
+    /**
+     * Retrieves the lateral speed of the car.
+     *
+     * @return The car's lateral speed in units per second.
+     */
+    public double getLateralSpeed() {
+        return speedY;
+    }
+
+    /**
+     * Retrieves the current lap time of the car.
+     *
+     * @return The car's current lap time in seconds.
+     */
+    public double getCurrentLapTime() {
+        return curLapTime;
+    }
+
+    /**
+     * Retrieves the damage level of the car.
+     *
+     * @return The car's damage level as a value between 0.0 (no damage) and 1.0 (severe damage).
+     */
+    public double getDamage() {
+        return damage;
+    }
+
+    /**
+     * Retrieves the distance from the start line to the car's current position.
+     *
+     * @return The car's distance from the start line in meters.
+     */
+    public double getDistanceFromStartLine() {
+        return distFromStart;
+    }
+
+    /**
+     * Retrieves the total distance raced by the car.
+     *
+     * @return The car's total distance raced in meters.
+     */
+    public double getDistanceRaced() {
+        return distRaced;
+    }
+
+    /**
+     * Retrieves the current fuel level of the car.
+     *
+     * @return The car's fuel level as a percentage.
+     */
+    public double getFuelLevel() {
+        return fuel;
+    }
+
+    /**
+     * Retrieves the time taken to complete the last lap.
+     *
+     * @return The car's last lap time in seconds.
+     */
+    public double getLastLapTime() {
+        return lastLapTime;
+    }
+
+    /**
+     * Retrieves the current RPM (Revolutions Per Minute) of the car's engine.
+     *
+     * @return The car's current RPM.
+     */
+    public double getRPM() {
+        return rpm;
+    }
+
+    /**
+     * Retrieves an array of sensor readings representing the wheel spin velocities.
+     *
+     * @return An array of wheel spin velocity sensor readings.
+     */
+    public double[] getWheelSpinVelocity() {
+        return wheelSpinVel;
+    }
+
+    /**
+     * Retrieves the speed of the car along the z-axis (vertical axis).
+     *
+     * @return The car's z-axis speed in units per second.
+     */
+    public double getZSpeed() {
+        return speedZ;
+    }
+
+    /**
+     * Retrieves the z-coordinate of the car's position.
+     *
+     * @return The car's z-coordinate.
+     */
+    public double getZ() {
+        return z;
+    }
+
+    /**
+     * Retrieves the last decoded packet as a string.
+     * The string is only built when this method is called.
+     *
+     * @return The original message as a string, or null if no packet has been decoded.
+     */
+    public String getMessage() {
+        if (message == null && data != null)
+            message = new String(data, offset, length, StandardCharsets.US_ASCII);
+        return message;
+    }
+}
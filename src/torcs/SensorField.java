@@ -0,0 +1,129 @@
+package torcs;
+
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The SensorField enum lists every reading sent by the SCR server in a sensor packet.
+ * Each field knows the name used on the wire and how many values it carries, so that packets can be decoded
+ * directly from their bytes without building intermediate strings.
+ */
+public enum SensorField {
+
+    ANGLE("angle", 1),
+    CUR_LAP_TIME("curLapTime", 1),
+    DAMAGE("damage", 1),
+    DIST_FROM_START("distFromStart", 1),
+    DIST_RACED("distRaced", 1),
+    FOCUS("focus", 5),
+    FUEL("fuel", 1),
+    GEAR("gear", 1),
+    LAST_LAP_TIME("lastLapTime", 1),
+    OPPONENTS("opponents", 36),
+    RACE_POS("racePos", 1),
+    RPM("rpm", 1),
+    SPEED_X("speedX", 1),
+    SPEED_Y("speedY", 1),
+    SPEED_Z("speedZ", 1),
+    TRACK("track", 19),
+    TRACK_POS("trackPos", 1),
+    WHEEL_SPIN_VEL("wheelSpinVel", 4),
+    Z("z", 1);
+
+    private static final SensorField[] VALUES = values();
+
+    /**
+     * The mask selecting every field.
+     */
+    public static final int ALL = (1 << VALUES.length) - 1;
+
+    private final String key; // The name of the reading in the message
+    private final byte[] keyBytes; // The ASCII bytes of the name
+    private final int size; // The number of values of the reading
+
+    SensorField(String key, int size) {
+        this.key = key;
+        this.keyBytes = key.getBytes(StandardCharsets.US_ASCII);
+        this.size = size;
+    }
+
+    /**
+     * Builds the mask selecting a set of fields.
+     *
+     * @param fields The fields to select.
+     *
+     * @return The mask with the bit of every field set.
+     */
+    public static int maskOf(Set<SensorField> fields) {
+        int mask = 0;
+        for (SensorField field : fields)
+            mask |= field.mask();
+        return mask;
+    }
+
+    /**
+     * Builds the set of fields selected by a mask.
+     *
+     * @param mask The mask to read.
+     *
+     * @return The selected fields.
+     */
+    public static EnumSet<SensorField> fromMask(int mask) {
+        EnumSet<SensorField> fields = EnumSet.noneOf(SensorField.class);
+        for (SensorField field : VALUES)
+            if ((mask & field.mask()) != 0)
+                fields.add(field);
+        return fields;
+    }
+
+    /**
+     * Looks up the field whose name matches the given bytes.
+     *
+     * @param data   The buffer holding the name.
+     * @param offset The position of the first byte of the name.
+     * @param length The number of bytes of the name.
+     *
+     * @return The matching field, or null if the name is not a known reading.
+     */
+    public static SensorField lookup(byte[] data, int offset, int length) {
+        for (SensorField field : VALUES) {
+            byte[] name = field.keyBytes;
+            if (name.length != length || name[0] != data[offset])
+                continue;
+            int i = 1;
+            while (i < length && name[i] == data[offset + i])
+                i++;
+            if (i == length)
+                return field;
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves the name of the reading as it appears in the message.
+     *
+     * @return The name of the reading.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Retrieves the bit of this field in a field mask.
+     *
+     * @return The mask selecting only this field.
+     */
+    public int mask() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * Retrieves the number of values carried by the reading.
+     *
+     * @return 1 for scalar readings, the array length otherwise.
+     */
+    public int getSize() {
+        return size;
+    }
+}
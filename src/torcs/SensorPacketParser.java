@@ -0,0 +1,246 @@
+package torcs;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The SensorPacketParser class decodes sensor packets received from the server bot directly from their bytes.
+ * A packet is a sequence of readings in the form {@code (name v1 v2 ...)}; every value is parsed in place and stored
+ * into a reusable {@link SensorReadings} instance, so no strings, tokenizers or boxed values are created per tick.
+ * <p>
+ * Values that cannot be parsed are stored as 0.0, as {@link MessageParser} does, and are counted instead of being
+ * printed.
+ */
+public class SensorPacketParser {
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final int MAX_MANTISSA_DIGITS = 18;
+
+    private long malformedCount; // The number of values that could not be parsed
+
+    /**
+     * Parses a sensor packet and stores its readings.
+     * Readings with unknown names are skipped, and values beyond the capacity of a reading are ignored.
+     *
+     * @param data     The buffer holding the packet.
+     * @param offset   The position of the first byte of the packet.
+     * @param length   The number of bytes of the packet.
+     * @param readings The container to fill.
+     *
+     * @return The number of readings stored.
+     */
+    public int parse(byte[] data, int offset, int length, SensorReadings readings) {
+        return parse(data, offset, length, readings, SensorField.ALL);
+    }
+
+    /**
+     * Parses a sensor packet and stores only the readings selected by a field mask.
+     * The values of the other readings are skipped without being decoded, and the matching fields of the container
+     * keep whatever value they had before.
+     *
+     * @param data     The buffer holding the packet.
+     * @param offset   The position of the first byte of the packet.
+     * @param length   The number of bytes of the packet.
+     * @param readings The container to fill.
+     * @param mask     The fields to decode, as built by {@link SensorField#maskOf}.
+     *
+     * @return The number of readings stored.
+     */
+    public int parse(byte[] data, int offset, int length, SensorReadings readings, int mask) {
+        int end = offset + length;
+        int stored = 0;
+        int i = offset;
+        while (i < end) {
+            if (data[i++] != '(')
+                continue;
+
+            // Reading name
+            int nameStart = i;
+            while (i < end && data[i] != ' ' && data[i] != ')')
+                i++;
+            SensorField field = SensorField.lookup(data, nameStart, i - nameStart);
+
+            // Reading values
+            int valuesStart = i;
+            while (i < end && data[i] != ')')
+                i++;
+            if (field != null && (mask & field.mask()) != 0 && parseValues(data, valuesStart, i, field, readings) > 0)
+                stored++;
+        }
+        return stored;
+    }
+
+    /**
+     * Scans a sensor packet and records where the values of each reading are, without decoding them.
+     * The recorded ranges can later be decoded one reading at a time with {@link #parseValues}.
+     *
+     * @param data   The buffer holding the packet.
+     * @param offset The position of the first byte of the packet.
+     * @param length The number of bytes of the packet.
+     * @param starts The start position of the values of each reading, indexed by field ordinal.
+     * @param ends   The end position of the values of each reading, indexed by field ordinal.
+     *
+     * @return The mask of the fields found in the packet.
+     */
+    public int index(byte[] data, int offset, int length, int[] starts, int[] ends) {
+        int end = offset + length;
+        int found = 0;
+        int i = offset;
+        while (i < end) {
+            if (data[i++] != '(')
+                continue;
+
+            int nameStart = i;
+            while (i < end && data[i] != ' ' && data[i] != ')')
+                i++;
+            SensorField field = SensorField.lookup(data, nameStart, i - nameStart);
+
+            int valuesStart = i;
+            while (i < end && data[i] != ')')
+                i++;
+            if (field != null) {
+                starts[field.ordinal()] = valuesStart;
+                ends[field.ordinal()] = i;
+                found |= field.mask();
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Parses the space separated values of one reading and stores them.
+     *
+     * @param data     The buffer holding the values.
+     * @param start    The position of the first byte of the values.
+     * @param end      The position after the last byte of the values.
+     * @param field    The reading the values belong to.
+     * @param readings The container to fill.
+     *
+     * @return The number of values found.
+     */
+    public int parseValues(byte[] data, int start, int end, SensorField field, SensorReadings readings) {
+        int position = 0;
+        int i = start;
+        while (i < end) {
+            if (data[i] == ' ') {
+                i++;
+                continue;
+            }
+            int tokenStart = i;
+            while (i < end && data[i] != ' ')
+                i++;
+            if (position < field.getSize())
+                readings.store(field, position, parseNumber(data, tokenStart, i));
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Parses an ASCII decimal number such as {@code -12}, {@code 0.0315} or {@code 7.06e-05}.
+     * Numbers whose digits fit in a double mantissa are converted exactly with a single multiplication or division;
+     * longer ones fall back to {@link Double#parseDouble(String)}.
+     *
+     * @param data  The buffer holding the number.
+     * @param start The position of the first byte of the number.
+     * @param end   The position after the last byte of the number.
+     *
+     * @return The parsed value, or 0.0 if the bytes are not a valid number.
+     */
+    public double parseNumber(byte[] data, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (data[i] == '-' || data[i] == '+')) {
+            negative = data[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean anyDigit = false;
+        boolean truncated = false;
+        while (i < end && isDigit(data[i])) {
+            if (digits < MAX_MANTISSA_DIGITS) {
+                mantissa = mantissa * 10 + (data[i] - '0');
+                if (mantissa != 0)
+                    digits++;
+            } else {
+                truncated = true;
+                scale++;
+            }
+            anyDigit = true;
+            i++;
+        }
+        if (i < end && data[i] == '.') {
+            i++;
+            while (i < end && isDigit(data[i])) {
+                if (digits < MAX_MANTISSA_DIGITS) {
+                    mantissa = mantissa * 10 + (data[i] - '0');
+                    if (mantissa != 0)
+                        digits++;
+                    scale--;
+                } else {
+                    truncated = true;
+                }
+                anyDigit = true;
+                i++;
+            }
+        }
+        if (!anyDigit)
+            return malformed();
+
+        if (i < end && (data[i] == 'e' || data[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (data[i] == '-' || data[i] == '+')) {
+                negativeExponent = data[i] == '-';
+                i++;
+            }
+            int exponent = 0;
+            boolean anyExponentDigit = false;
+            while (i < end && isDigit(data[i])) {
+                if (exponent < 10000)
+                    exponent = exponent * 10 + (data[i] - '0');
+                anyExponentDigit = true;
+                i++;
+            }
+            if (!anyExponentDigit)
+                return malformed();
+            scale += negativeExponent ? -exponent : exponent;
+        }
+        if (i != end)
+            return malformed();
+
+        double value;
+        if (mantissa == 0) {
+            value = 0.0;
+        } else if (!truncated && mantissa <= MAX_EXACT_MANTISSA && scale >= -22 && scale <= 22) {
+            value = scale >= 0 ? mantissa * POW10[scale] : mantissa / POW10[-scale];
+        } else {
+            return Double.parseDouble(new String(data, start, end - start, StandardCharsets.US_ASCII));
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Retrieves the number of values that could not be parsed since this parser was created.
+     *
+     * @return The number of malformed values.
+     */
+    public long getMalformedCount() {
+        return malformedCount;
+    }
+
+    private double malformed() {
+        malformedCount++;
+        return 0.0;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+}
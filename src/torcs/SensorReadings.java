@@ -0,0 +1,99 @@
+package torcs;
+
+/**
+ * The SensorReadings class is a reusable, primitive container for the readings of one sensor packet.
+ * Scalars are kept in plain fields and multi-valued readings in preallocated arrays, so refilling an instance on
+ * every tick does not allocate.
+ */
+public class SensorReadings {
+
+    public double angle;
+    public double curLapTime;
+    public double damage;
+    public double distFromStart;
+    public double distRaced;
+    public double fuel;
+    public int gear;
+    public double lastLapTime;
+    public int racePos;
+    public double rpm;
+    public double speedX;
+    public double speedY;
+    public double speedZ;
+    public double trackPos;
+    public double z;
+
+    public final double[] focus = new double[SensorField.FOCUS.getSize()];
+    public final double[] opponents = new double[SensorField.OPPONENTS.getSize()];
+    public final double[] track = new double[SensorField.TRACK.getSize()];
+    public final double[] wheelSpinVel = new double[SensorField.WHEEL_SPIN_VEL.getSize()];
+
+    /**
+     * Stores one value of a reading.
+     *
+     * @param field The reading the value belongs to.
+     * @param index The position of the value inside the reading, 0 for scalars.
+     * @param value The decoded value.
+     */
+    public void store(SensorField field, int index, double value) {
+        switch (field) {
+            case ANGLE:
+                angle = value;
+                break;
+            case CUR_LAP_TIME:
+                curLapTime = value;
+                break;
+            case DAMAGE:
+                damage = value;
+                break;
+            case DIST_FROM_START:
+                distFromStart = value;
+                break;
+            case DIST_RACED:
+                distRaced = value;
+                break;
+            case FOCUS:
+                focus[index] = value;
+                break;
+            case FUEL:
+                fuel = value;
+                break;
+            case GEAR:
+                gear = (int) value;
+                break;
+            case LAST_LAP_TIME:
+                lastLapTime = value;
+                break;
+            case OPPONENTS:
+                opponents[index] = value;
+                break;
+            case RACE_POS:
+                racePos = (int) value;
+                break;
+            case RPM:
+                rpm = value;
+                break;
+            case SPEED_X:
+                speedX = value;
+                break;
+            case SPEED_Y:
+                speedY = value;
+                break;
+            case SPEED_Z:
+                speedZ = value;
+                break;
+            case TRACK:
+                track[index] = value;
+                break;
+            case TRACK_POS:
+                trackPos = value;
+                break;
+            case WHEEL_SPIN_VEL:
+                wheelSpinVel[index] = value;
+                break;
+            case Z:
+                z = value;
+                break;
+        }
+    }
+}
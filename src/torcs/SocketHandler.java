@@ -9,12 +9,14 @@ import java.net.*;
  *
  * @author Daniele Loiacono
  */
-public class SocketHandler {
+public class SocketHandler implements Transport {
 
     private InetAddress address; // The remote address to send and receive datagrams
     private int port; // The port number to send and receive datagrams
     private DatagramSocket socket; // The socket for sending and receiving datagrams
     private boolean verbose; // Indicates whether to print verbose output
+    private DatagramPacket inPacket; // The packet reused by receive(byte[], int)
+    private DatagramPacket outPacket; // The packet reused by send(byte[], int, int)
 
     /**
      * Constructs a new SocketHandler with the specified host, port, and verbosity.
@@ -55,6 +57,29 @@ public class SocketHandler {
         }
     }
 
+    /**
+     * Sends the bytes of an already encoded message over the socket.
+     * The packet object is reused across calls, so no allocation is made per message.
+     *
+     * @param buffer The buffer holding the message.
+     * @param offset The position of the first byte of the message.
+     * @param length The number of bytes of the message.
+     */
+    public void send(byte[] buffer, int offset, int length) {
+        if (verbose) {
+            System.out.println("Sending: " + new String(buffer, offset, length));
+        }
+        try {
+            if (outPacket == null)
+                outPacket = new DatagramPacket(buffer, offset, length, address, port);
+            else
+                outPacket.setData(buffer, offset, length);
+            socket.send(outPacket);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Receives a message from the socket.
      *
@@ -99,6 +124,38 @@ public class SocketHandler {
         return null;
     }
 
+    /**
+     * Receives a message from the socket into the given buffer with a specified timeout.
+     * The packet object is reused across calls, so no allocation is made per message.
+     *
+     * @param buffer  The buffer to fill with the received bytes.
+     * @param timeout The timeout value in milliseconds.
+     *
+     * @return The number of bytes received, or -1 if no message arrived within the timeout.
+     */
+    public int receive(byte[] buffer, int timeout) {
+        try {
+            if (inPacket == null || inPacket.getData() != buffer)
+                inPacket = new DatagramPacket(buffer, buffer.length);
+            else
+                inPacket.setLength(buffer.length);
+            socket.setSoTimeout(timeout);
+            socket.receive(inPacket);
+            socket.setSoTimeout(0);
+            if (verbose) {
+                System.out.println("Received: " + new String(buffer, 0, inPacket.getLength()));
+            }
+            return inPacket.getLength();
+        } catch (SocketTimeoutException se) {
+            if (verbose) {
+                System.out.println("Socket Timeout!");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+
     /**
      * Closes the socket.
      */
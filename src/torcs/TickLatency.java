@@ -0,0 +1,75 @@
+package torcs;
+
+/**
+ * The TickLatency class groups the latency histograms of the client control loop.
+ * Each tick is split into receive to parse, parse to control and control to send, plus the total time between
+ * receiving the sensor packet and sending the action. Ticks in which the server did not answer are counted apart.
+ */
+public class TickLatency {
+
+    private final LatencyHistogram parse = new LatencyHistogram("receive->parse");
+    private final LatencyHistogram control = new LatencyHistogram("parse->control");
+    private final LatencyHistogram send = new LatencyHistogram("control->send");
+    private final LatencyHistogram total = new LatencyHistogram("total");
+    private long timeouts; // The number of times the server did not respond within the timeout
+
+    /**
+     * Records the timestamps of one tick, as returned by {@link System#nanoTime()}.
+     *
+     * @param received When the sensor packet was received.
+     * @param parsed   When the sensor packet was decoded.
+     * @param computed When the controller returned its action.
+     * @param sent     When the action was sent.
+     */
+    public void record(long received, long parsed, long computed, long sent) {
+        parse.record(parsed - received);
+        control.record(computed - parsed);
+        send.record(sent - computed);
+        total.record(sent - received);
+    }
+
+    /**
+     * Counts one receive that timed out.
+     */
+    public void recordTimeout() {
+        timeouts++;
+    }
+
+    /**
+     * Adds every tick and timeout recorded by another instance to this one.
+     *
+     * @param other The latencies to add.
+     */
+    public void add(TickLatency other) {
+        parse.add(other.parse);
+        control.add(other.control);
+        send.add(other.send);
+        total.add(other.total);
+        timeouts += other.timeouts;
+    }
+
+    /**
+     * Removes every recorded tick and timeout.
+     */
+    public void reset() {
+        parse.reset();
+        control.reset();
+        send.reset();
+        total.reset();
+        timeouts = 0;
+    }
+
+    /**
+     * Prints the percentiles of every phase and the number of timeouts.
+     *
+     * @param title The title printed before the summary.
+     */
+    public void print(String title) {
+        System.out.println(title);
+        System.out.println("  " + parse.summary());
+        System.out.println("  " + control.summary());
+        System.out.println("  " + send.summary());
+        System.out.println("  " + total.summary());
+        System.out.println("  timeouts: " + timeouts);
+    }
+}
@@ -0,0 +1,48 @@
+package torcs;
+
+/**
+ * The Transport interface defines how the client exchanges datagrams with the TORCS server.
+ * Implementations differ in the underlying socket API but share the same send and receive contract.
+ */
+public interface Transport {
+
+    /**
+     * Sends a message to the server.
+     *
+     * @param msg The message to send.
+     */
+    public void send(String msg);
+
+    /**
+     * Sends the bytes of an already encoded message to the server.
+     *
+     * @param buffer The buffer holding the message.
+     * @param offset The position of the first byte of the message.
+     * @param length The number of bytes of the message.
+     */
+    public void send(byte[] buffer, int offset, int length);
+
+    /**
+     * Receives a message from the server with a specified timeout.
+     *
+     * @param timeout The timeout value in milliseconds, 0 to wait forever.
+     *
+     * @return The received message as a string, or null if no message arrived within the timeout.
+     */
+    public String receive(int timeout);
+
+    /**
+     * Receives a message from the server into the given buffer with a specified timeout.
+     *
+     * @param buffer  The buffer to fill with the received bytes.
+     * @param timeout The timeout value in milliseconds, 0 to wait forever.
+     *
+     * @return The number of bytes received, or -1 if no message arrived within the timeout.
+     */
+    public int receive(byte[] buffer, int timeout);
+
+    /**
+     * Closes the transport.
+     */
+    public void close();
+}